@@ -1,9 +1,22 @@
 package com.pw.analyticsservice;
 
+import com.pw.analyticsservice.config.ActiveUserProperties;
+import com.pw.analyticsservice.config.AggregationProperties;
+import com.pw.analyticsservice.config.BackfillProperties;
+import com.pw.analyticsservice.config.DedupeProperties;
+import com.pw.analyticsservice.config.IdGeneratorProperties;
+import com.pw.analyticsservice.config.RawEventPartitionProperties;
+import com.pw.analyticsservice.config.TopUserProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@EnableConfigurationProperties({IdGeneratorProperties.class, AggregationProperties.class, DedupeProperties.class,
+        BackfillProperties.class, RawEventPartitionProperties.class, ActiveUserProperties.class,
+        TopUserProperties.class})
 public class AnalyticsServiceApplication {
 
     public static void main(String[] args) {
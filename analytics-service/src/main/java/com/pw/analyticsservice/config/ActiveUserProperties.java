@@ -0,0 +1,23 @@
+package com.pw.analyticsservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * DAU/WAU/MAU from per-day HyperLogLog sketches.
+ */
+@ConfigurationProperties(prefix = "analytics.active-users")
+public class ActiveUserProperties {
+
+    // How long a day's merged sketch (all instances) is reused by queries
+    private Duration cacheTtl = Duration.ofSeconds(30);
+
+    // Longest date range one query may union
+    private int maxRangeDays = 366;
+
+    public Duration getCacheTtl() { return cacheTtl; }
+    public void setCacheTtl(Duration cacheTtl) { this.cacheTtl = cacheTtl; }
+    public int getMaxRangeDays() { return maxRangeDays; }
+    public void setMaxRangeDays(int maxRangeDays) { this.maxRangeDays = maxRangeDays; }
+}
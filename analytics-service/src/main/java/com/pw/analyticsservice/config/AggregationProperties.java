@@ -0,0 +1,23 @@
+package com.pw.analyticsservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * In-memory pre-aggregation of summary deltas between database flushes.
+ */
+@ConfigurationProperties(prefix = "analytics.aggregation")
+public class AggregationProperties {
+
+    // Buffered deltas (and their raw events) are written at least this often
+    private Duration flushInterval = Duration.ofMillis(500);
+
+    // ...or as soon as this many events are buffered
+    private int maxEvents = 5_000;
+
+    public Duration getFlushInterval() { return flushInterval; }
+    public void setFlushInterval(Duration flushInterval) { this.flushInterval = flushInterval; }
+    public int getMaxEvents() { return maxEvents; }
+    public void setMaxEvents(int maxEvents) { this.maxEvents = maxEvents; }
+}
@@ -0,0 +1,34 @@
+package com.pw.analyticsservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Rebuilding the summary tables from raw_events.
+ */
+@ConfigurationProperties(prefix = "analytics.backfill")
+public class BackfillProperties {
+
+    // Date ranges replayed at once; each holds a database connection
+    private int parallelism = 4;
+
+    // Days aggregated in memory by one task
+    private int chunkDays = 1;
+
+    // raw_events rows fetched per round trip
+    private int fetchSize = 5_000;
+
+    // Rows with ids from this long before the start are replayed again at the
+    // swap, covering transactions that were still open when it began
+    private Duration cutoffMargin = Duration.ofMinutes(5);
+
+    public int getParallelism() { return parallelism; }
+    public void setParallelism(int parallelism) { this.parallelism = parallelism; }
+    public int getChunkDays() { return chunkDays; }
+    public void setChunkDays(int chunkDays) { this.chunkDays = chunkDays; }
+    public int getFetchSize() { return fetchSize; }
+    public void setFetchSize(int fetchSize) { this.fetchSize = fetchSize; }
+    public Duration getCutoffMargin() { return cutoffMargin; }
+    public void setCutoffMargin(Duration cutoffMargin) { this.cutoffMargin = cutoffMargin; }
+}
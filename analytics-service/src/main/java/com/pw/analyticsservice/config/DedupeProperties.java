@@ -0,0 +1,32 @@
+package com.pw.analyticsservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * In-memory filter of recently stored eventIds in front of the raw_events
+ * duplicate check.
+ */
+@ConfigurationProperties(prefix = "analytics.dedupe")
+public class DedupeProperties {
+
+    // When off, every event is checked against raw_events as before
+    private boolean enabled = true;
+
+    // Most recent eventIds kept exactly; a hit is dropped without a query
+    private int recentIds = 100_000;
+
+    // Events per Bloom filter generation; the filter covers the last one to two windows
+    private int windowEvents = 1_000_000;
+
+    // Target false-positive rate of a full generation
+    private double falsePositiveRate = 0.001;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public int getRecentIds() { return recentIds; }
+    public void setRecentIds(int recentIds) { this.recentIds = recentIds; }
+    public int getWindowEvents() { return windowEvents; }
+    public void setWindowEvents(int windowEvents) { this.windowEvents = windowEvents; }
+    public double getFalsePositiveRate() { return falsePositiveRate; }
+    public void setFalsePositiveRate(double falsePositiveRate) { this.falsePositiveRate = falsePositiveRate; }
+}
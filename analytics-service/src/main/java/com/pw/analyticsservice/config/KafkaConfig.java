@@ -1,20 +1,31 @@
 package com.pw.analyticsservice.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.MicrometerConsumerListener;
 import org.springframework.kafka.listener.ContainerProperties;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
 public class KafkaConfig {
+    private static final Logger log = LoggerFactory.getLogger(KafkaConfig.class);
+
+    private static final Duration PARTITION_LOOKUP_TIMEOUT = Duration.ofSeconds(5);
 
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrap;
@@ -22,8 +33,19 @@ public class KafkaConfig {
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
+    // Records handed to the batch listener per poll
+    @Value("${analytics.consumer.max-poll-records:500}")
+    private int maxPollRecords;
+
+    // Consumer threads; 0 means one per partition of the largest subscribed topic
+    @Value("${analytics.consumer.concurrency:0}")
+    private int concurrency;
+
+    @Value("${analytics.topics.user},${analytics.topics.wallet},${analytics.topics.transaction},${analytics.topics.auth}")
+    private String[] topics;
+
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public ConsumerFactory<String, String> consumerFactory(MeterRegistry meterRegistry) {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
@@ -31,14 +53,42 @@ public class KafkaConfig {
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        return new DefaultKafkaConsumerFactory<>(props);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        DefaultKafkaConsumerFactory<String, String> factory = new DefaultKafkaConsumerFactory<>(props);
+        // Client metrics per consumer, including kafka.consumer.fetch.manager.records.lag
+        // tagged by topic and partition
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory(
+            ConsumerFactory<String, String> consumerFactory) {
         ConcurrentKafkaListenerContainerFactory<String, String> f = new ConcurrentKafkaListenerContainerFactory<>();
-        f.setConsumerFactory(consumerFactory());
+        f.setConsumerFactory(consumerFactory);
+        f.setBatchListener(true);
+        f.setConcurrency(resolveConcurrency(consumerFactory));
         f.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
         return f;
     }
+
+    /**
+     * One consumer thread per partition: with the range assignor, thread i
+     * then owns partition i of every topic. More threads would sit idle.
+     */
+    private int resolveConcurrency(ConsumerFactory<String, String> consumerFactory) {
+        if (concurrency > 0) return concurrency;
+        try (Consumer<String, String> consumer = consumerFactory.createConsumer()) {
+            int partitions = 1;
+            for (String topic : topics) {
+                List<PartitionInfo> info = consumer.partitionsFor(topic, PARTITION_LOOKUP_TIMEOUT);
+                if (info != null) partitions = Math.max(partitions, info.size());
+            }
+            log.info("Consuming {} with {} threads", List.of(topics), partitions);
+            return partitions;
+        } catch (Exception e) {
+            log.warn("Could not look up partition counts, consuming with one thread: {}", e.getMessage());
+            return 1;
+        }
+    }
 }
@@ -0,0 +1,21 @@
+package com.pw.analyticsservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Daily partition maintenance for the {@code raw_events} table.
+ */
+@ConfigurationProperties(prefix = "analytics.raw-events.partitions")
+public class RawEventPartitionProperties {
+
+    // Partitions created ahead of today (UTC) so inserts never hit the default partition
+    private int daysAhead = 3;
+
+    // Partitions older than this many days are dropped; 0 keeps everything
+    private int retentionDays = 90;
+
+    public int getDaysAhead() { return daysAhead; }
+    public void setDaysAhead(int daysAhead) { this.daysAhead = daysAhead; }
+    public int getRetentionDays() { return retentionDays; }
+    public void setRetentionDays(int retentionDays) { this.retentionDays = retentionDays; }
+}
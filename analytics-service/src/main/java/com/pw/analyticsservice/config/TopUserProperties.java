@@ -0,0 +1,16 @@
+package com.pw.analyticsservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Daily top users by volume and count (Space-Saving summaries).
+ */
+@ConfigurationProperties(prefix = "analytics.top")
+public class TopUserProperties {
+
+    // Counters per day and metric; a count is off by at most that day's total / capacity
+    private int capacity = 1000;
+
+    public int getCapacity() { return capacity; }
+    public void setCapacity(int capacity) { this.capacity = capacity; }
+}
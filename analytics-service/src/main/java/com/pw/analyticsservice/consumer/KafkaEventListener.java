@@ -6,11 +6,13 @@ import com.pw.analyticsservice.service.EventProcessor;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Component
 public class KafkaEventListener {
     private static final Logger log = LoggerFactory.getLogger(KafkaEventListener.class);
@@ -23,6 +25,17 @@ public class KafkaEventListener {
         this.processor = processor;
     }
 
+    /**
+     * Receives a whole poll (up to max.poll.records) at once and hands it to
+     * the processor's buffer; offsets are acknowledged once the buffer holding
+     * the batch has been flushed and committed.
+     * <p>
+     * Producers key records by userId, so a user's events stay on one
+     * partition in order. Parallelism comes from the container's concurrency
+     * (one consumer thread per partition); within a poll the records are
+     * parsed and submitted in offset order, since dedupe and the offset
+     * acknowledgement need the whole batch.
+     */
     @KafkaListener(topics = {
             "${analytics.topics.user}",
             "${analytics.topics.wallet}",
@@ -30,18 +43,37 @@ public class KafkaEventListener {
             "${analytics.topics.auth}"
     },
             containerFactory = "kafkaListenerContainerFactory")
-    public void onMessage(ConsumerRecord<String, String> record, Acknowledgment ack) {
-        try {
+    public void onMessages(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        List<EventEnvelope> events = parse(records);
 
-            String value = record.value();
-            EventEnvelope env = objectMapper.readValue(value, EventEnvelope.class);
-            log.info("Received event: " + env.toString());
-            processor.process(env);
-
-            ack.acknowledge();
+        try {
+            processor.submit(events, ack::acknowledge);
         } catch (Exception ex) {
-            // DO NOT ack; let it retry (or configure DLT in Kafka if needed)
-            log.error("Failed to process message at offset {}: {}", record.offset(), ex.getMessage(), ex);
+            log.error("Batch of {} records failed, retrying events individually: {}", records.size(), ex.getMessage(), ex);
+            for (EventEnvelope env : events) {
+                try {
+                    processor.process(env);
+                } catch (Exception e) {
+                    // Skipped, as before batching; configure a DLT in Kafka if needed
+                    log.error("Failed to process event {}: {}", env.getEventId(), e.getMessage(), e);
+                }
+            }
+            // Still acknowledged after the next flush, so offsets of earlier
+            // buffered batches are not committed ahead of them
+            processor.submit(List.of(), ack::acknowledge);
+        }
+    }
+
+    private List<EventEnvelope> parse(List<ConsumerRecord<String, String>> records) {
+        List<EventEnvelope> events = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                events.add(objectMapper.readValue(record.value(), EventEnvelope.class));
+            } catch (Exception ex) {
+                log.error("Failed to parse message at {}-{}@{}: {}",
+                        record.topic(), record.partition(), record.offset(), ex.getMessage());
+            }
         }
+        return events;
     }
 }
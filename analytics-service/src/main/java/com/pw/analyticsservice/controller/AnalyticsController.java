@@ -4,14 +4,30 @@ import com.pw.analyticsservice.entity.DailySystemSummary;
 import com.pw.analyticsservice.entity.DailyUserSummary;
 import com.pw.analyticsservice.repository.DailySystemSummaryRepository;
 import com.pw.analyticsservice.repository.DailyUserSummaryRepository;
+import com.pw.analyticsservice.model.AmountKind;
+import com.pw.analyticsservice.model.TopMetric;
+import com.pw.analyticsservice.service.ActiveUserCount;
+import com.pw.analyticsservice.service.ActiveUsers;
+import com.pw.analyticsservice.service.AmountDistributions;
+import com.pw.analyticsservice.service.AmountPercentiles;
+import com.pw.analyticsservice.service.BackfillProgress;
+import com.pw.analyticsservice.service.LiveMetricsStream;
+import com.pw.analyticsservice.service.SummaryBackfill;
+import com.pw.analyticsservice.service.TopUsers;
+import com.pw.analyticsservice.service.TopUsersResult;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.TypedQuery;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.List;
 
 @RestController
@@ -21,13 +37,28 @@ public class AnalyticsController {
     private final EntityManager em;
     private final DailyUserSummaryRepository userRepo;
     private final DailySystemSummaryRepository sysRepo;
+    private final SummaryBackfill backfill;
+    private final LiveMetricsStream liveMetrics;
+    private final ActiveUsers activeUsers;
+    private final AmountDistributions amountDistributions;
+    private final TopUsers topUsers;
 
     public AnalyticsController(EntityManager em,
                                DailyUserSummaryRepository userRepo,
-                               DailySystemSummaryRepository sysRepo) {
+                               DailySystemSummaryRepository sysRepo,
+                               SummaryBackfill backfill,
+                               LiveMetricsStream liveMetrics,
+                               ActiveUsers activeUsers,
+                               AmountDistributions amountDistributions,
+                               TopUsers topUsers) {
         this.em = em;
         this.userRepo = userRepo;
         this.sysRepo = sysRepo;
+        this.backfill = backfill;
+        this.liveMetrics = liveMetrics;
+        this.activeUsers = activeUsers;
+        this.amountDistributions = amountDistributions;
+        this.topUsers = topUsers;
     }
 
     @GetMapping("/users/{userId}/daily")
@@ -60,6 +91,115 @@ public class AnalyticsController {
         return ResponseEntity.ok(q.getResultList());
     }
 
+    /**
+     * Recomputes the summaries for [from, to] (default: all of raw_events)
+     * in the background; poll GET /analytics/backfill for progress. A
+     * refused range gets 400 with the reason as a problem detail.
+     */
+    @PostMapping("/backfill")
+    public ResponseEntity<?> startBackfill(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.accepted().body(backfill.start(from, to));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(backfill.progress());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+    }
+
+    @GetMapping("/backfill")
+    public ResponseEntity<BackfillProgress> backfillProgress() {
+        BackfillProgress progress = backfill.progress();
+        return progress != null ? ResponseEntity.ok(progress) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Server-Sent Events stream of transactions per second, failure rate and
+     * volume over the last 1, 5 and 15 minutes, one "metrics" event per
+     * second. Served from memory.
+     */
+    @GetMapping(path = "/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter live() {
+        return liveMetrics.subscribe();
+    }
+
+    /**
+     * Distinct users with any event in [from, to] (UTC days, inclusive),
+     * estimated from per-day HyperLogLog sketches.
+     */
+    @GetMapping("/active-users")
+    public ResponseEntity<ActiveUserCount> activeUsers(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return countActiveUsers(from, to);
+    }
+
+    @GetMapping("/active-users/dau")
+    public ResponseEntity<ActiveUserCount> dau(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        LocalDate day = date != null ? date : LocalDate.now(ZoneOffset.UTC);
+        return countActiveUsers(day, day);
+    }
+
+    // Rolling 7 days ending on date
+    @GetMapping("/active-users/wau")
+    public ResponseEntity<ActiveUserCount> wau(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        LocalDate day = date != null ? date : LocalDate.now(ZoneOffset.UTC);
+        return countActiveUsers(day.minusDays(6), day);
+    }
+
+    // Rolling 30 days ending on date
+    @GetMapping("/active-users/mau")
+    public ResponseEntity<ActiveUserCount> mau(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        LocalDate day = date != null ? date : LocalDate.now(ZoneOffset.UTC);
+        return countActiveUsers(day.minusDays(29), day);
+    }
+
+    private ResponseEntity<ActiveUserCount> countActiveUsers(LocalDate from, LocalDate to) {
+        try {
+            return ResponseEntity.ok(activeUsers.count(from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * p50/p90/p99 of successful amounts over [from, to] (UTC days,
+     * inclusive), per kind (CREDIT, DEBIT, TRANSFER) or for the given one.
+     */
+    @GetMapping("/amounts/percentiles")
+    public ResponseEntity<List<AmountPercentiles>> amountPercentiles(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) AmountKind kind) {
+        try {
+            return ResponseEntity.ok(amountDistributions.percentiles(from, to, kind));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Heaviest users of a UTC day (default today) by VOLUME or COUNT, from
+     * the in-memory heavy-hitters summaries; values carry their error bound.
+     */
+    @GetMapping("/top")
+    public ResponseEntity<TopUsersResult> top(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "VOLUME") TopMetric by,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(topUsers.top(date != null ? date : LocalDate.now(ZoneOffset.UTC), by, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("OK");
@@ -0,0 +1,73 @@
+package com.pw.analyticsservice.dedupe;
+
+/**
+ * Fixed-size Bloom filter over strings, sized for {@code expected} insertions
+ * at false-positive rate {@code fpp}. Not thread-safe.
+ */
+final class BloomFilter {
+
+    private final long[] words;
+    private final long bits;
+    private final int hashes;
+    private int inserted;
+
+    BloomFilter(int expected, double fpp) {
+        long m = (long) Math.ceil(-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.words = new long[(int) Math.max(1, (m + 63) >>> 6)];
+        this.bits = (long) words.length << 6;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expected * Math.log(2)));
+    }
+
+    void add(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        inserted++;
+    }
+
+    boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int inserted() {
+        return inserted;
+    }
+
+    /**
+     * False-positive rate at the current fill, (1 - e^(-kn/m))^k.
+     */
+    double expectedFpp() {
+        return Math.pow(1 - Math.exp(-(double) hashes * inserted / bits), hashes);
+    }
+
+    long sizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    // 64-bit FNV-1a over the chars, finished with a mixer to spread short ids
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
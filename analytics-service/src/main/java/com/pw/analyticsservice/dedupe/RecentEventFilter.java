@@ -0,0 +1,216 @@
+package com.pw.analyticsservice.dedupe;
+
+import com.pw.analyticsservice.config.DedupeProperties;
+import com.pw.analyticsservice.repository.RawEventBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers eventIds stored in raw_events so that only possible duplicates
+ * are looked up there. Almost every event is new, and a Bloom filter can say
+ * so without a query.
+ * <p>
+ * Two tiers: an exact LRU of the most recent ids, whose hits are known
+ * duplicates, and a Bloom filter in two generations of {@code window-events}
+ * each. When the current generation is full the older one is dropped, so the
+ * filter always covers the last one to two windows and never fills up. An id
+ * is recorded only once its row is committed.
+ * <p>
+ * "New" means new to this instance since the filter was loaded from
+ * raw_events at startup. Events stored meanwhile by another consumer (after
+ * a rebalance) still hit the unique constraint on (event_id, event_time),
+ * since a redelivered event carries the same timestamp.
+ */
+@Component
+public class RecentEventFilter {
+    private static final Logger log = LoggerFactory.getLogger(RecentEventFilter.class);
+
+    // Rough heap cost of one LRU entry excluding the id's characters
+    private static final long ENTRY_OVERHEAD = 96;
+
+    public enum Verdict {
+        /** Stored recently; drop without a query. */
+        RECENT,
+        /** Possibly stored; check raw_events. */
+        POSSIBLE,
+        /** Not stored; no check needed. */
+        NEW
+    }
+
+    private final boolean enabled;
+    private final int recentIds;
+    private final int windowEvents;
+    private final double fpp;
+    private final RawEventBatchRepository rawEventBatchRepository;
+
+    private final LinkedHashMap<String, Boolean> recent;
+    private long recentChars;
+    private BloomFilter current;
+    private BloomFilter previous;
+
+    private final Counter recentHits;
+    private final Counter possible;
+    private final Counter fresh;
+    private final Counter possibleStored;
+
+    public RecentEventFilter(DedupeProperties props, RawEventBatchRepository rawEventBatchRepository,
+                             MeterRegistry meterRegistry) {
+        this.enabled = props.isEnabled();
+        this.recentIds = props.getRecentIds();
+        this.windowEvents = props.getWindowEvents();
+        this.fpp = props.getFalsePositiveRate();
+        this.rawEventBatchRepository = rawEventBatchRepository;
+
+        this.recent = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                if (size() <= recentIds) return false;
+                recentChars -= eldest.getKey().length();
+                return true;
+            }
+        };
+        this.current = enabled ? new BloomFilter(windowEvents, fpp) : null;
+
+        this.recentHits = Counter.builder("analytics.dedupe.filter.checks").tag("result", "recent")
+                .register(meterRegistry);
+        this.possible = Counter.builder("analytics.dedupe.filter.checks").tag("result", "possible")
+                .register(meterRegistry);
+        this.fresh = Counter.builder("analytics.dedupe.filter.checks").tag("result", "new")
+                .register(meterRegistry);
+        this.possibleStored = Counter.builder("analytics.dedupe.filter.possible.stored")
+                .description("Possible duplicates that raw_events confirmed")
+                .register(meterRegistry);
+        Gauge.builder("analytics.dedupe.filter.false.positive.rate", this, RecentEventFilter::falsePositiveRate)
+                .description("Share of new events sent to raw_events for a duplicate check")
+                .register(meterRegistry);
+        Gauge.builder("analytics.dedupe.filter.false.positive.rate.expected", this, RecentEventFilter::expectedFalsePositiveRate)
+                .description("False-positive rate implied by the current Bloom filter fill")
+                .register(meterRegistry);
+        Gauge.builder("analytics.dedupe.filter.memory", this, RecentEventFilter::memoryUsed)
+                .description("Estimated heap used by the LRU and both Bloom filter generations")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the latest window of stored ids, so events redelivered after a
+     * restart are still recognised.
+     */
+    @PostConstruct
+    void load() {
+        if (!enabled) return;
+        try {
+            List<String> ids = rawEventBatchRepository.findRecentEventIds(windowEvents);
+            synchronized (this) {
+                // Oldest first, so the newest end up in the LRU
+                for (int i = ids.size() - 1; i >= 0; i--) {
+                    add(ids.get(i));
+                }
+            }
+            log.info("Loaded {} recent eventIds into the dedupe filter", ids.size());
+        } catch (Exception ex) {
+            // Starting empty is safe: the batch insert still skips stored rows
+            log.warn("Could not load recent eventIds, starting with an empty dedupe filter: {}", ex.getMessage());
+        }
+    }
+
+    public Verdict screen(String eventId) {
+        if (!enabled) return Verdict.POSSIBLE;
+        Verdict verdict;
+        synchronized (this) {
+            if (recent.get(eventId) != null) {
+                verdict = Verdict.RECENT;
+            } else if (current.mightContain(eventId) || (previous != null && previous.mightContain(eventId))) {
+                verdict = Verdict.POSSIBLE;
+            } else {
+                verdict = Verdict.NEW;
+            }
+        }
+        switch (verdict) {
+            case RECENT -> recentHits.increment();
+            case POSSIBLE -> possible.increment();
+            case NEW -> fresh.increment();
+        }
+        return verdict;
+    }
+
+    /**
+     * Reports how many POSSIBLE ids raw_events actually held; the rest were
+     * false positives.
+     */
+    public void confirmStored(int count) {
+        if (count > 0) possibleStored.increment(count);
+    }
+
+    /**
+     * Records ids whose rows are committed.
+     */
+    public void record(Collection<String> eventIds) {
+        if (!enabled || eventIds.isEmpty()) return;
+        synchronized (this) {
+            for (String id : eventIds) {
+                add(id);
+            }
+        }
+    }
+
+    /**
+     * Records an id once the surrounding transaction commits, or right away
+     * if there is none.
+     */
+    public void recordAfterCommit(String eventId) {
+        if (!enabled) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(List.of(eventId));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(List.of(eventId));
+            }
+        });
+    }
+
+    public double falsePositiveRate() {
+        double falsePositives = possible.count() - possibleStored.count();
+        double negatives = falsePositives + fresh.count();
+        return negatives == 0 ? 0 : falsePositives / negatives;
+    }
+
+    public synchronized double expectedFalsePositiveRate() {
+        if (!enabled) return 0;
+        double miss = 1 - current.expectedFpp();
+        if (previous != null) miss *= 1 - previous.expectedFpp();
+        return 1 - miss;
+    }
+
+    public synchronized long memoryUsed() {
+        if (!enabled) return 0;
+        long bytes = recent.size() * ENTRY_OVERHEAD + recentChars + current.sizeInBytes();
+        return previous != null ? bytes + previous.sizeInBytes() : bytes;
+    }
+
+    private void add(String eventId) {
+        if (recent.put(eventId, Boolean.TRUE) == null) {
+            recentChars += eventId.length();
+        }
+        if (current.inserted() >= windowEvents) {
+            previous = current;
+            current = new BloomFilter(windowEvents, fpp);
+        }
+        current.add(eventId);
+    }
+}
@@ -1,52 +1,66 @@
 package com.pw.analyticsservice.entity;
 
+import com.pw.analyticsservice.id.SnowflakeId;
 import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 @Entity
 @Table(name = "raw_events")
 public class RawEvent {
+    // Assigned before insert, so saves can be JDBC-batched (IDENTITY cannot)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     @Column(name = "event_type", nullable = false, length = 50)
     private String eventType;
 
-    @Column(name = "event_id", nullable = false, unique = true)
-    private UUID eventId;
+    // Producer-assigned; time-ordered ids from the services, name-based UUIDs from transaction-service.
+    // Unique together with event_time, the partition key
+    @Column(name = "event_id", nullable = false, length = 64)
+    private String eventId;
 
     @Column(name = "user_id")
     private Long userId;
 
-    @Lob
-    @Column(name = "payload", nullable = false, columnDefinition = "text")
-    private String payload; // store JSON string (simple, no extra deps)
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "payload", nullable = false, columnDefinition = "jsonb")
+    private String payload; // JSON string, stored as JSONB
+
+    // Event timestamp in UTC, the time the summaries are bucketed by and the partition key
+    @Column(name = "event_time", nullable = false)
+    private LocalDateTime eventTime;
 
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
     public RawEvent() { }
 
-    public RawEvent(String eventType, UUID eventId, Long userId, String payload) {
+    public RawEvent(String eventType, String eventId, Long userId, String payload, LocalDateTime eventTime) {
         this.eventType = eventType;
         this.eventId = eventId;
         this.userId = userId;
         this.payload = payload;
+        this.eventTime = eventTime;
     }
 
     // getters/setters omitted for brevity
     // ...
     public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
     public String getEventType() { return eventType; }
     public void setEventType(String eventType) { this.eventType = eventType; }
-    public UUID getEventId() { return eventId; }
-    public void setEventId(UUID eventId) { this.eventId = eventId; }
+    public String getEventId() { return eventId; }
+    public void setEventId(String eventId) { this.eventId = eventId; }
     public Long getUserId() { return userId; }
     public void setUserId(Long userId) { this.userId = userId; }
     public String getPayload() { return payload; }
     public void setPayload(String payload) { this.payload = payload; }
+    public LocalDateTime getEventTime() { return eventTime; }
+    public void setEventTime(LocalDateTime eventTime) { this.eventTime = eventTime; }
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 }
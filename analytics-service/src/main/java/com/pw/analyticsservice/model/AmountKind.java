@@ -0,0 +1,10 @@
+package com.pw.analyticsservice.model;
+
+/**
+ * Kind of money movement an amount distribution is kept for.
+ */
+public enum AmountKind {
+    CREDIT,
+    DEBIT,
+    TRANSFER
+}
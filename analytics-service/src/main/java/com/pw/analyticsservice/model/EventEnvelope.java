@@ -11,7 +11,7 @@ import java.util.Map;
  * Example JSON:
  * {
  *   "eventType": "WALLET_CREDITED",
- *   "eventId": "uuid",
+ *   "eventId": "unique string (time-ordered id or UUID)",
  *   "timestamp": "2025-08-31T12:30:00Z",
  *   "userId": 101,
  *   "payload": { "amount": 200, "balanceAfter": 800, "requestId": "..." }
@@ -0,0 +1,9 @@
+package com.pw.analyticsservice.model;
+
+/**
+ * What users are ranked by in the daily heavy-hitters summaries.
+ */
+public enum TopMetric {
+    VOLUME,
+    COUNT
+}
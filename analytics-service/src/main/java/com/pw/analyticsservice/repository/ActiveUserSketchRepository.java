@@ -0,0 +1,54 @@
+package com.pw.analyticsservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serialized HyperLogLog sketches of active userIds, one row per day and
+ * consumer instance.
+ */
+@Repository
+public class ActiveUserSketchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ActiveUserSketchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public byte[] find(LocalDate date, int nodeId) {
+        List<byte[]> rows = jdbcTemplate.query(
+                "SELECT sketch FROM active_user_sketches WHERE date = ? AND node_id = ?",
+                (rs, i) -> rs.getBytes(1), Date.valueOf(date), nodeId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Every instance's sketch for each day in [from, to].
+     */
+    public Map<LocalDate, List<byte[]>> findRange(LocalDate from, LocalDate to) {
+        Map<LocalDate, List<byte[]>> sketches = new HashMap<>();
+        jdbcTemplate.query("SELECT date, sketch FROM active_user_sketches WHERE date BETWEEN ? AND ?",
+                (RowCallbackHandler) rs -> sketches
+                        .computeIfAbsent(rs.getObject(1, LocalDate.class), d -> new ArrayList<>())
+                        .add(rs.getBytes(2)),
+                Date.valueOf(from), Date.valueOf(to));
+        return sketches;
+    }
+
+    public void save(LocalDate date, int nodeId, byte[] sketch) {
+        jdbcTemplate.update("""
+            INSERT INTO active_user_sketches (date, node_id, sketch, last_updated)
+            VALUES (?, ?, ?, NOW())
+            ON CONFLICT (date, node_id) DO UPDATE SET sketch = EXCLUDED.sketch, last_updated = NOW()
+            """, Date.valueOf(date), nodeId, sketch);
+    }
+}
@@ -0,0 +1,39 @@
+package com.pw.analyticsservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Reads daily_amount_histogram; rows are written with the summaries by
+ * {@link SummaryBatchRepository#upsertAmountDeltas}.
+ */
+@Repository
+public class AmountHistogramRepository {
+
+    public record BucketSamples(String kind, int bucket, long samples) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AmountHistogramRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Bucket counts of every kind summed over [from, to]: the merged
+     * histograms of those days.
+     */
+    public List<BucketSamples> sumRange(LocalDate from, LocalDate to) {
+        return jdbcTemplate.query("""
+                SELECT kind, bucket, SUM(samples)
+                FROM daily_amount_histogram
+                WHERE date BETWEEN ? AND ?
+                GROUP BY kind, bucket
+                """, (rs, i) -> new BucketSamples(rs.getString(1), rs.getInt(2), rs.getLong(3)),
+                Date.valueOf(from), Date.valueOf(to));
+    }
+}
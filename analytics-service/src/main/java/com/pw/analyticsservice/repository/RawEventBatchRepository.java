@@ -0,0 +1,107 @@
+package com.pw.analyticsservice.repository;
+
+import com.pw.analyticsservice.entity.RawEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Set-at-a-time access to raw_events for the batch listener: one statement
+ * per poll batch instead of one SELECT and one INSERT per event.
+ */
+@Repository
+public class RawEventBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RawEventBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * The subset of eventIds already stored. Probes every day partition's
+     * unique index, so it is meant for the few ids the dedupe filter cannot
+     * rule out.
+     */
+    public Set<String> findExistingEventIds(Collection<String> eventIds) {
+        Set<String> existing = new HashSet<>();
+        if (eventIds.isEmpty()) return existing;
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT event_id FROM raw_events WHERE event_id = ANY(?)");
+            ps.setArray(1, con.createArrayOf("varchar", eventIds.toArray()));
+            return ps;
+        }, (RowCallbackHandler) rs -> existing.add(rs.getString(1)));
+        return existing;
+    }
+
+    /**
+     * The latest {@code limit} eventIds, newest first (ids are time-ordered).
+     */
+    public List<String> findRecentEventIds(int limit) {
+        return jdbcTemplate.queryForList("SELECT event_id FROM raw_events ORDER BY id DESC LIMIT ?", String.class, limit);
+    }
+
+    /**
+     * Inserts all rows with a single statement (arrays unnested server side).
+     * Rows whose (event_id, event_time) is already present are skipped, so a
+     * concurrent consumer that got the same event first wins.
+     *
+     * @return eventIds actually inserted
+     */
+    public Set<String> insertIgnoringDuplicates(List<RawEvent> events) {
+        Set<String> inserted = new HashSet<>();
+        if (events.isEmpty()) return inserted;
+
+        int n = events.size();
+        Long[] ids = new Long[n];
+        String[] types = new String[n];
+        String[] eventIds = new String[n];
+        Long[] userIds = new Long[n];
+        String[] payloads = new String[n];
+        Timestamp[] eventTimes = new Timestamp[n];
+        Timestamp[] createdAt = new Timestamp[n];
+        for (int i = 0; i < n; i++) {
+            RawEvent e = events.get(i);
+            ids[i] = e.getId();
+            types[i] = e.getEventType();
+            eventIds[i] = e.getEventId();
+            userIds[i] = e.getUserId();
+            payloads[i] = e.getPayload();
+            eventTimes[i] = Timestamp.valueOf(e.getEventTime());
+            createdAt[i] = Timestamp.valueOf(e.getCreatedAt());
+        }
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("""
+                INSERT INTO raw_events (id, event_type, event_id, user_id, payload, event_time, created_at)
+                SELECT i, t, e, u, p::jsonb, et, c
+                FROM unnest(?::bigint[], ?::varchar[], ?::varchar[], ?::bigint[], ?::text[],
+                            ?::timestamp[], ?::timestamp[]) AS r(i, t, e, u, p, et, c)
+                ON CONFLICT (event_id, event_time) DO NOTHING
+                RETURNING event_id
+                """);
+            Array[] arrays = {
+                    con.createArrayOf("bigint", ids),
+                    con.createArrayOf("varchar", types),
+                    con.createArrayOf("varchar", eventIds),
+                    con.createArrayOf("bigint", userIds),
+                    con.createArrayOf("text", payloads),
+                    con.createArrayOf("timestamp", eventTimes),
+                    con.createArrayOf("timestamp", createdAt)
+            };
+            for (int i = 0; i < arrays.length; i++) {
+                ps.setArray(i + 1, arrays[i]);
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> inserted.add(rs.getString(1)));
+        return inserted;
+    }
+}
@@ -0,0 +1,216 @@
+package com.pw.analyticsservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Applies pre-aggregated deltas to the summary tables, one multi-row upsert
+ * per table. Rows are written in key order so concurrent flushes from
+ * several instances lock them in the same order.
+ * <p>
+ * Each upsert can also target a copy of its table (same columns and unique
+ * keys), which is how a backfill builds summaries before swapping them in.
+ */
+@Repository
+public class SummaryBatchRepository {
+
+    public record UserDelta(long userId, LocalDate date, BigDecimal credits, BigDecimal debits, int failed) {
+        public UserDelta plus(UserDelta o) {
+            return new UserDelta(userId, date, credits.add(o.credits), debits.add(o.debits), failed + o.failed);
+        }
+    }
+
+    public record SystemDelta(LocalDate date, int newUsers, int txns, int failed, BigDecimal volume) {
+        public SystemDelta plus(SystemDelta o) {
+            return new SystemDelta(date, newUsers + o.newUsers, txns + o.txns, failed + o.failed, volume.add(o.volume));
+        }
+    }
+
+    public record AuthDelta(long userId, LocalDate date, int logins, int logouts, int failedLogins, int tokenRefreshes) {
+        public AuthDelta plus(AuthDelta o) {
+            return new AuthDelta(userId, date, logins + o.logins, logouts + o.logouts,
+                    failedLogins + o.failedLogins, tokenRefreshes + o.tokenRefreshes);
+        }
+    }
+
+    /**
+     * Samples added to one bucket of a day's amount histogram.
+     */
+    public record AmountDelta(LocalDate date, String kind, int bucket, long samples) {
+        public AmountDelta plus(AmountDelta o) {
+            return new AmountDelta(date, kind, bucket, samples + o.samples);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SummaryBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void upsertUserDeltas(Collection<UserDelta> deltas) {
+        upsertUserDeltas("daily_user_summary", deltas);
+    }
+
+    public void upsertUserDeltas(String table, Collection<UserDelta> deltas) {
+        if (deltas.isEmpty()) return;
+        List<UserDelta> rows = deltas.stream()
+                .sorted(Comparator.comparingLong(UserDelta::userId).thenComparing(UserDelta::date))
+                .toList();
+        int n = rows.size();
+        Long[] userIds = new Long[n];
+        Date[] dates = new Date[n];
+        BigDecimal[] credits = new BigDecimal[n];
+        BigDecimal[] debits = new BigDecimal[n];
+        Integer[] failed = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            UserDelta d = rows.get(i);
+            userIds[i] = d.userId();
+            dates[i] = Date.valueOf(d.date());
+            credits[i] = d.credits();
+            debits[i] = d.debits();
+            failed[i] = d.failed();
+        }
+        update("""
+            INSERT INTO %s AS s
+                (user_id, date, total_credits, total_debits, failed_txns, net_change, last_updated)
+            SELECT u, d, c, db, f, c - db, NOW()
+            FROM unnest(?::bigint[], ?::date[], ?::numeric[], ?::numeric[], ?::int[]) AS t(u, d, c, db, f)
+            ON CONFLICT (user_id, date) DO UPDATE SET
+              total_credits = s.total_credits + EXCLUDED.total_credits,
+              total_debits = s.total_debits + EXCLUDED.total_debits,
+              failed_txns = s.failed_txns + EXCLUDED.failed_txns,
+              net_change = s.net_change + EXCLUDED.net_change,
+              last_updated = NOW()
+            """.formatted(table), new String[]{"bigint", "date", "numeric", "numeric", "int"},
+                new Object[][]{userIds, dates, credits, debits, failed});
+    }
+
+    public void upsertSystemDeltas(Collection<SystemDelta> deltas) {
+        upsertSystemDeltas("daily_system_summary", deltas);
+    }
+
+    public void upsertSystemDeltas(String table, Collection<SystemDelta> deltas) {
+        if (deltas.isEmpty()) return;
+        List<SystemDelta> rows = deltas.stream().sorted(Comparator.comparing(SystemDelta::date)).toList();
+        int n = rows.size();
+        Date[] dates = new Date[n];
+        Integer[] newUsers = new Integer[n];
+        Integer[] txns = new Integer[n];
+        Integer[] failed = new Integer[n];
+        BigDecimal[] volume = new BigDecimal[n];
+        for (int i = 0; i < n; i++) {
+            SystemDelta d = rows.get(i);
+            dates[i] = Date.valueOf(d.date());
+            newUsers[i] = d.newUsers();
+            txns[i] = d.txns();
+            failed[i] = d.failed();
+            volume[i] = d.volume();
+        }
+        update("""
+            INSERT INTO %s AS s
+                (date, total_users, new_users, total_txns, failed_txns, total_volume, last_updated)
+            SELECT d, nu, nu, tx, f, v, NOW()
+            FROM unnest(?::date[], ?::int[], ?::int[], ?::int[], ?::numeric[]) AS t(d, nu, tx, f, v)
+            ON CONFLICT (date) DO UPDATE SET
+              total_users = s.total_users + EXCLUDED.new_users,
+              new_users = s.new_users + EXCLUDED.new_users,
+              total_txns = s.total_txns + EXCLUDED.total_txns,
+              failed_txns = s.failed_txns + EXCLUDED.failed_txns,
+              total_volume = s.total_volume + EXCLUDED.total_volume,
+              last_updated = NOW()
+            """.formatted(table), new String[]{"date", "int", "int", "int", "numeric"},
+                new Object[][]{dates, newUsers, txns, failed, volume});
+    }
+
+    public void upsertAuthDeltas(Collection<AuthDelta> deltas) {
+        upsertAuthDeltas("auth_summary", deltas);
+    }
+
+    public void upsertAuthDeltas(String table, Collection<AuthDelta> deltas) {
+        if (deltas.isEmpty()) return;
+        List<AuthDelta> rows = deltas.stream()
+                .sorted(Comparator.comparingLong(AuthDelta::userId).thenComparing(AuthDelta::date))
+                .toList();
+        int n = rows.size();
+        Long[] userIds = new Long[n];
+        Date[] dates = new Date[n];
+        Integer[] logins = new Integer[n];
+        Integer[] logouts = new Integer[n];
+        Integer[] failedLogins = new Integer[n];
+        Integer[] refreshes = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            AuthDelta d = rows.get(i);
+            userIds[i] = d.userId();
+            dates[i] = Date.valueOf(d.date());
+            logins[i] = d.logins();
+            logouts[i] = d.logouts();
+            failedLogins[i] = d.failedLogins();
+            refreshes[i] = d.tokenRefreshes();
+        }
+        update("""
+            INSERT INTO %s AS s (user_id, date, logins, logouts, failed_logins, token_refreshes, last_updated)
+            SELECT u, d, li, lo, fl, tr, NOW()
+            FROM unnest(?::bigint[], ?::date[], ?::int[], ?::int[], ?::int[], ?::int[]) AS t(u, d, li, lo, fl, tr)
+            ON CONFLICT (user_id, date) DO UPDATE SET
+              logins = s.logins + EXCLUDED.logins,
+              logouts = s.logouts + EXCLUDED.logouts,
+              failed_logins = s.failed_logins + EXCLUDED.failed_logins,
+              token_refreshes = s.token_refreshes + EXCLUDED.token_refreshes,
+              last_updated = NOW()
+            """.formatted(table), new String[]{"bigint", "date", "int", "int", "int", "int"},
+                new Object[][]{userIds, dates, logins, logouts, failedLogins, refreshes});
+    }
+
+    public void upsertAmountDeltas(Collection<AmountDelta> deltas) {
+        upsertAmountDeltas("daily_amount_histogram", deltas);
+    }
+
+    public void upsertAmountDeltas(String table, Collection<AmountDelta> deltas) {
+        if (deltas.isEmpty()) return;
+        List<AmountDelta> rows = deltas.stream()
+                .sorted(Comparator.comparing(AmountDelta::date).thenComparing(AmountDelta::kind)
+                        .thenComparingInt(AmountDelta::bucket))
+                .toList();
+        int n = rows.size();
+        Date[] dates = new Date[n];
+        String[] kinds = new String[n];
+        Integer[] buckets = new Integer[n];
+        Long[] samples = new Long[n];
+        for (int i = 0; i < n; i++) {
+            AmountDelta d = rows.get(i);
+            dates[i] = Date.valueOf(d.date());
+            kinds[i] = d.kind();
+            buckets[i] = d.bucket();
+            samples[i] = d.samples();
+        }
+        update("""
+            INSERT INTO %s AS s (date, kind, bucket, samples)
+            SELECT d, k, b, n
+            FROM unnest(?::date[], ?::varchar[], ?::int[], ?::bigint[]) AS t(d, k, b, n)
+            ON CONFLICT (date, kind, bucket) DO UPDATE SET
+              samples = s.samples + EXCLUDED.samples
+            """.formatted(table), new String[]{"date", "varchar", "int", "bigint"},
+                new Object[][]{dates, kinds, buckets, samples});
+    }
+
+    private void update(String sql, String[] types, Object[][] columns) {
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            for (int i = 0; i < columns.length; i++) {
+                Array array = con.createArrayOf(types[i], columns[i]);
+                ps.setArray(i + 1, array);
+            }
+            return ps;
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package com.pw.analyticsservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Checkpoints of the per-day heavy-hitters summaries, one row per day,
+ * metric and consumer instance.
+ */
+@Repository
+public class TopUserSketchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TopUserSketchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public byte[] find(LocalDate date, String metric, int nodeId) {
+        List<byte[]> rows = jdbcTemplate.query(
+                "SELECT sketch FROM top_user_sketches WHERE date = ? AND metric = ? AND node_id = ?",
+                (rs, i) -> rs.getBytes(1), Date.valueOf(date), metric, nodeId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * The checkpoints other instances wrote for a day and metric.
+     */
+    public List<byte[]> findOthers(LocalDate date, String metric, int nodeId) {
+        return jdbcTemplate.query(
+                "SELECT sketch FROM top_user_sketches WHERE date = ? AND metric = ? AND node_id <> ?",
+                (rs, i) -> rs.getBytes(1), Date.valueOf(date), metric, nodeId);
+    }
+
+    public void save(LocalDate date, String metric, int nodeId, byte[] sketch) {
+        jdbcTemplate.update("""
+            INSERT INTO top_user_sketches (date, metric, node_id, sketch, last_updated)
+            VALUES (?, ?, ?, ?, NOW())
+            ON CONFLICT (date, metric, node_id) DO UPDATE SET sketch = EXCLUDED.sketch, last_updated = NOW()
+            """, Date.valueOf(date), metric, nodeId, sketch);
+    }
+}
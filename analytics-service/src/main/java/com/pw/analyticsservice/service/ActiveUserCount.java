@@ -0,0 +1,10 @@
+package com.pw.analyticsservice.service;
+
+import java.time.LocalDate;
+
+/**
+ * Approximate number of distinct users with at least one event in
+ * [from, to] (UTC days), within about 1%.
+ */
+public record ActiveUserCount(LocalDate from, LocalDate to, long activeUsers) {
+}
@@ -0,0 +1,19 @@
+package com.pw.analyticsservice.service;
+
+import com.pw.analyticsservice.model.AmountKind;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Distribution of successful amounts of one kind over [from, to] (UTC days).
+ * Percentiles are within 1% of an actual amount and null without samples.
+ */
+public record AmountPercentiles(LocalDate from,
+                                LocalDate to,
+                                AmountKind kind,
+                                long count,
+                                BigDecimal p50,
+                                BigDecimal p90,
+                                BigDecimal p99) {
+}
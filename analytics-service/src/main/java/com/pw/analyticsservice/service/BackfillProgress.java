@@ -0,0 +1,22 @@
+package com.pw.analyticsservice.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Snapshot of a summary backfill, as reported by {@code GET /analytics/backfill}.
+ *
+ * @param state RUNNING, SWAPPING, COMPLETED or FAILED
+ */
+public record BackfillProgress(String state,
+                               LocalDate from,
+                               LocalDate to,
+                               int rangesTotal,
+                               int rangesDone,
+                               long events,
+                               long skipped,
+                               long eventsPerSecond,
+                               Instant startedAt,
+                               Instant finishedAt,
+                               String error) {
+}
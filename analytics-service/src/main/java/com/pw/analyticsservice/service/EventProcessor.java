@@ -2,46 +2,152 @@ package com.pw.analyticsservice.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pw.analyticsservice.config.AggregationProperties;
+import com.pw.analyticsservice.dedupe.RecentEventFilter;
+import com.pw.analyticsservice.model.AmountKind;
 import com.pw.analyticsservice.model.EventEnvelope;
 import com.pw.analyticsservice.entity.RawEvent;
+import com.pw.analyticsservice.id.SnowflakeIdGenerator;
 import com.pw.analyticsservice.repository.*;
+import com.pw.analyticsservice.sketch.AmountHistogram;
+import jakarta.annotation.PreDestroy;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Applies analytics events to raw_events and the daily summaries.
+ * <p>
+ * Consumed batches are not written straight away: their raw events and
+ * summary increments are buffered in a {@link Pending} window that is flushed
+ * every {@code flush-interval} or {@code max-events}, whichever comes first.
+ * A flush is one transaction with one multi-row statement per table, so a hot
+ * row such as today's system summary is updated once per flush rather than
+ * once per event. Kafka offsets of the buffered batches are acknowledged only
+ * after that transaction commits; a crash before it just redelivers them.
+ */
 @Service
 public class EventProcessor {
     private static final Logger log = LoggerFactory.getLogger(EventProcessor.class);
 
+    // Event types that credit or debit a user
+    private static final Set<String> RANKED_EVENTS =
+            Set.of("WALLET_CREDITED", "WALLET_DEBITED", "WALLET_TRANSFER");
+
     private final RawEventRepository rawEventRepository;
     private final DailyUserSummaryRepository dailyUserSummaryRepository;
     private final DailySystemSummaryRepository dailySystemSummaryRepository;
     private final AuthSummaryRepository authSummaryRepository;
     private final ObjectMapper objectMapper;
+    private final RawEventBatchRepository rawEventBatchRepository;
+    private final SummaryBatchRepository summaryBatchRepository;
+    private final SnowflakeIdGenerator idGenerator;
+    private final TransactionTemplate transactionTemplate;
+    private final AggregationProperties props;
+    private final RecentEventFilter recentEvents;
+    private final SlidingWindowMetrics liveMetrics;
+    private final ActiveUsers activeUsers;
+    private final TopUsers topUsers;
+
+    private final SummarySink directSink = new RepositorySink();
+
+    // Consumers add under the read lock; a flush swaps the window under the write lock
+    private final ReentrantReadWriteLock windowLock = new ReentrantReadWriteLock();
+    // One flush at a time, so acknowledgements are committed in order
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile Pending current = new Pending();
+    private volatile Pending flushing;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "summary-flush");
+        t.setDaemon(true);
+        return t;
+    });
 
     public EventProcessor(RawEventRepository rawEventRepository,
                           DailyUserSummaryRepository dailyUserSummaryRepository,
                           DailySystemSummaryRepository dailySystemSummaryRepository,
                           AuthSummaryRepository authSummaryRepository,
-                          ObjectMapper objectMapper) {
+                          ObjectMapper objectMapper,
+                          RawEventBatchRepository rawEventBatchRepository,
+                          SummaryBatchRepository summaryBatchRepository,
+                          SnowflakeIdGenerator idGenerator,
+                          PlatformTransactionManager transactionManager,
+                          AggregationProperties props,
+                          RecentEventFilter recentEvents,
+                          SlidingWindowMetrics liveMetrics,
+                          ActiveUsers activeUsers,
+                          TopUsers topUsers) {
         this.rawEventRepository = rawEventRepository;
         this.dailyUserSummaryRepository = dailyUserSummaryRepository;
         this.dailySystemSummaryRepository = dailySystemSummaryRepository;
         this.authSummaryRepository = authSummaryRepository;
         this.objectMapper = objectMapper;
+        this.rawEventBatchRepository = rawEventBatchRepository;
+        this.summaryBatchRepository = summaryBatchRepository;
+        this.idGenerator = idGenerator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.props = props;
+        this.recentEvents = recentEvents;
+        this.liveMetrics = liveMetrics;
+        this.activeUsers = activeUsers;
+        this.topUsers = topUsers;
+
+        long interval = props.getFlushInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flushIfDue, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdownNow();
+        // Listener containers are already stopped; whatever is buffered is
+        // written now, and its uncommitted offsets are redelivered and skipped
+        flush();
+        if (activeUsers.hasDirty()) persistActiveUsers();
     }
 
     @Transactional
     public void process(EventEnvelope env) throws JsonProcessingException {
-        // 1) idempotency for raw_events
-        UUID eventId = UUID.fromString(env.getEventId());
-        if (rawEventRepository.findByEventId(eventId).isPresent()) {
+        process(env, true);
+    }
+
+    /**
+     * @param live whether to count the event in the sliding-window metrics;
+     *             false when it was already counted while buffered
+     */
+    private void process(EventEnvelope env, boolean live) throws JsonProcessingException {
+        stampIfMissing(env);
+
+        // 1) idempotency for raw_events; queried only if the filter cannot rule it out
+        String eventId = env.getEventId();
+        RecentEventFilter.Verdict verdict = recentEvents.screen(eventId);
+        if (verdict == RecentEventFilter.Verdict.POSSIBLE && rawEventRepository.existsByEventId(eventId)) {
+            recentEvents.confirmStored(1);
+            recentEvents.record(List.of(eventId));
+            verdict = RecentEventFilter.Verdict.RECENT;
+        }
+        if (verdict == RecentEventFilter.Verdict.RECENT) {
             log.info("Duplicate event received, skipping: {}", env.getEventId());
             return;
         }
@@ -50,27 +156,377 @@ public class EventProcessor {
 
         // 2) persist raw event
         String payloadJson = objectMapper.writeValueAsString(env.getPayload());
-        rawEventRepository.save(new RawEvent(env.getEventType(), eventId, env.getUserId(), payloadJson));
+        rawEventRepository.save(new RawEvent(env.getEventType(), eventId, env.getUserId(), payloadJson, eventTime(env)));
+        recentEvents.recordAfterCommit(eventId);
 
         log.info("Successfully processed event and saved to raw repo: {}", env.toString());
 
         // 3) route to handlers
-        LocalDate eventDate = toLocalDate(env);
+        LocalDate date = toLocalDate(env);
+        route(env, date, live ? liveMetrics.tap(directSink, env.getTimestamp()) : directSink);
+        markActive(env, date);
+        rankOnCommit(env, date);
+    }
+
+    /**
+     * Buffers a consumed batch for the next flush. {@code onFlushed} (the
+     * offset acknowledgement) runs once the batch's events are committed.
+     * Events already stored or already buffered are dropped here.
+     */
+    public void submit(List<EventEnvelope> events, Runnable onFlushed) {
+        // 1) idempotency: within the batch, then the recent-event filter, then
+        //    raw_events in one query for the ids the filter cannot rule out
+        Map<String, EventEnvelope> fresh = new LinkedHashMap<>();
+        for (EventEnvelope env : events) {
+            if (env.getEventId() == null) {
+                log.warn("Event without eventId, skipping: {}", env);
+                continue;
+            }
+            stampIfMissing(env);
+            fresh.putIfAbsent(env.getEventId(), env);
+        }
+        List<String> possible = new ArrayList<>();
+        for (Iterator<String> it = fresh.keySet().iterator(); it.hasNext(); ) {
+            String eventId = it.next();
+            switch (recentEvents.screen(eventId)) {
+                case RECENT -> it.remove();
+                case POSSIBLE -> possible.add(eventId);
+                case NEW -> { }
+            }
+        }
+        Set<String> existing = rawEventBatchRepository.findExistingEventIds(possible);
+        recentEvents.confirmStored(existing.size());
+        recentEvents.record(existing);
+        fresh.keySet().removeAll(existing);
+
+        // 2) buffer the rest with their summary increments
+        Pending window;
+        windowLock.readLock().lock();
+        try {
+            window = current;
+            Pending inFlight = flushing;
+            SummarySink sink = window.deltas.sink(1);
+            for (EventEnvelope env : fresh.values()) {
+                if (inFlight != null && inFlight.events.containsKey(env.getEventId())) continue;
+                if (window.events.putIfAbsent(env.getEventId(), env) == null) {
+                    buffer(window, env, sink);
+                }
+            }
+            window.onFlushed.add(onFlushed);
+        } finally {
+            windowLock.readLock().unlock();
+        }
+
+        // Size-triggered flush runs on the consumer thread, which also slows
+        // consumption down to what the database absorbs
+        if (window.events.size() >= props.getMaxEvents()) {
+            flush();
+        }
+    }
+
+    private void buffer(Pending window, EventEnvelope env, SummarySink sink) {
+        LocalDate date = toLocalDate(env);
+        try {
+            route(env, date, liveMetrics.tap(sink, env.getTimestamp()));
+            markActive(env, date);
+        } catch (RuntimeException ex) {
+            // Replaying the same event negatively fails at the same point, so it
+            // takes back exactly the increments made before the failure
+            try {
+                route(env, date, window.deltas.sink(-1));
+            } catch (RuntimeException expected) {
+                // same failure
+            }
+            window.events.remove(env.getEventId());
+            log.error("Failed to process event {}: {}", env.getEventId(), ex.getMessage(), ex);
+        }
+    }
+
+    private void flushIfDue() {
+        try {
+            Pending window = current;
+            if (!window.onFlushed.isEmpty()
+                    && System.nanoTime() - window.createdNanos >= props.getFlushInterval().toNanos()) {
+                flush();
+            } else if (activeUsers.hasDirty()) {
+                // Users seen by process(), outside any window
+                persistActiveUsers();
+            }
+        } catch (Exception ex) {
+            // Keep the schedule alive; the window is retried on the next tick
+            log.error("Scheduled summary flush failed: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Writes the current window in one transaction, together with the
+     * active-user sketches and top-user summaries it changed, then acknowledges its batches. If the transaction fails, its events are applied one by one
+     * (failures are logged and skipped, as without buffering) before
+     * acknowledging, so a bad event cannot hold back the rest.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            Pending window;
+            windowLock.writeLock().lock();
+            try {
+                window = current;
+                if (window.onFlushed.isEmpty()) return;
+                current = new Pending();
+                flushing = window;
+            } finally {
+                windowLock.writeLock().unlock();
+            }
+
+            Set<LocalDate> activeDays = activeUsers.takeDirty();
+            TopUsers.Batch ranked = topUsers.batch();
+            try {
+                long start = System.nanoTime();
+                Set<String> applied = transactionTemplate.execute(status -> {
+                    Set<String> inserted = write(window);
+                    activeUsers.persist(activeDays);
+                    for (EventEnvelope env : window.events.values()) {
+                        if (inserted.contains(env.getEventId())) rank(env, toLocalDate(env), ranked);
+                    }
+                    ranked.persist();
+                    return inserted;
+                });
+                ranked.publish();
+                // Inserted or stored by someone else, either way in raw_events now
+                recentEvents.record(window.events.keySet());
+                activeUsers.evictIdle();
+                log.info("Flushed {} events ({} new) as {} summary rows in {} ms",
+                        window.events.size(), applied.size(), window.deltas.keys(),
+                        (System.nanoTime() - start) / 1_000_000);
+            } catch (Exception ex) {
+                ranked.discard();
+                activeUsers.markDirty(activeDays);
+                log.error("Flush of {} events failed, applying them individually: {}",
+                        window.events.size(), ex.getMessage(), ex);
+                for (EventEnvelope env : window.events.values()) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> processUnchecked(env));
+                    } catch (Exception e) {
+                        log.error("Failed to process event {}: {}", env.getEventId(), e.getMessage(), e);
+                    }
+                }
+            }
+            window.onFlushed.forEach(Runnable::run);
+        } finally {
+            flushing = null;
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return eventIds inserted by this flush
+     */
+    private Set<String> write(Pending window) {
+        List<RawEvent> rows = new ArrayList<>(window.events.size());
+        for (EventEnvelope env : window.events.values()) {
+            RawEvent row = new RawEvent(env.getEventType(), env.getEventId(), env.getUserId(),
+                    toJson(env.getPayload()), eventTime(env));
+            row.setId(idGenerator.nextId());
+            rows.add(row);
+        }
+        Set<String> inserted = rawEventBatchRepository.insertIgnoringDuplicates(rows);
+
+        // Rows another consumer stored first (after a rebalance) are counted there
+        SummarySink undo = window.deltas.sink(-1);
+        for (EventEnvelope env : window.events.values()) {
+            if (!inserted.contains(env.getEventId())) {
+                route(env, toLocalDate(env), undo);
+            }
+        }
+
+        summaryBatchRepository.upsertUserDeltas(window.deltas.userDeltas());
+        summaryBatchRepository.upsertSystemDeltas(window.deltas.systemDeltas());
+        summaryBatchRepository.upsertAuthDeltas(window.deltas.authDeltas());
+        summaryBatchRepository.upsertAmountDeltas(window.deltas.amountDeltas());
+        return inserted;
+    }
+
+    private void persistActiveUsers() {
+        flushLock.lock();
+        try {
+            Set<LocalDate> days = activeUsers.takeDirty();
+            try {
+                transactionTemplate.executeWithoutResult(status -> activeUsers.persist(days));
+                activeUsers.evictIdle();
+            } catch (RuntimeException ex) {
+                activeUsers.markDirty(days);
+                throw ex;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void processUnchecked(EventEnvelope env) {
+        try {
+            process(env, false);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Payload is not serializable", e);
+        }
+    }
+
+    private String toJson(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Payload is not serializable", e);
+        }
+    }
+
+    /**
+     * Events buffered since the last flush, with the acknowledgements of the
+     * batches they came from.
+     */
+    private static final class Pending {
+        final long createdNanos = System.nanoTime();
+        final ConcurrentHashMap<String, EventEnvelope> events = new ConcurrentHashMap<>();
+        final SummaryDeltas deltas = new SummaryDeltas();
+        final List<Runnable> onFlushed = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    private final class RepositorySink implements SummarySink {
+        @Override
+        public void userCredit(long userId, LocalDate date, BigDecimal amount) {
+            dailyUserSummaryRepository.incrementCredits(userId, date, amount);
+        }
+
+        @Override
+        public void userDebit(long userId, LocalDate date, BigDecimal amount) {
+            dailyUserSummaryRepository.incrementDebits(userId, date, amount);
+        }
+
+        @Override
+        public void userFailed(long userId, LocalDate date) {
+            dailyUserSummaryRepository.incrementFailed(userId, date);
+        }
+
+        @Override
+        public void systemTxn(LocalDate date, BigDecimal amount) {
+            dailySystemSummaryRepository.incrementSystemTxn(date, amount);
+        }
+
+        @Override
+        public void systemFailed(LocalDate date) {
+            dailySystemSummaryRepository.incrementSystemFailed(date);
+        }
+
+        @Override
+        public void amount(LocalDate date, AmountKind kind, BigDecimal amount) {
+            summaryBatchRepository.upsertAmountDeltas(List.of(new SummaryBatchRepository.AmountDelta(
+                    date, kind.name(), AmountHistogram.bucketOf(amount), 1)));
+        }
+
+        @Override
+        public void userCreated(LocalDate date) {
+            dailySystemSummaryRepository.incrementUserCreated(date);
+        }
+
+        @Override
+        public void login(LocalDate date, long userId) {
+            authSummaryRepository.incrementLogin(date, userId);
+        }
+
+        @Override
+        public void logout(LocalDate date, long userId) {
+            authSummaryRepository.incrementLogout(date, userId);
+        }
+
+        @Override
+        public void failedLogin(LocalDate date, long userId) {
+            authSummaryRepository.incrementFailedLogin(date, userId);
+        }
+
+        @Override
+        public void tokenRefresh(LocalDate date, long userId) {
+            authSummaryRepository.incrementTokenRefresh(date, userId);
+        }
+    }
+
+    private void route(EventEnvelope env, LocalDate eventDate, SummarySink sink) {
         switch (env.getEventType()) {
-            case "USER_CREATED" -> handleUserCreated(eventDate);
-            case "WALLET_CREDITED" -> handleWalletCredit(env, eventDate);
-            case "WALLET_DEBITED" -> handleWalletDebit(env, eventDate);
-            case "WALLET_TRANSFER" -> handleWalletTransfer(env, eventDate);
-            case "WALLET_FAILED" -> handleWalletFailed(env, eventDate);
-            case "TRANSACTION_RECORDED" -> handleTxnRecorded(env, eventDate);
-            case "USER_LOGGED_IN" -> handleLogin(env, eventDate);
-            case "USER_LOGGED_OUT" -> handleLogout(env, eventDate);
-            case "TOKEN_REFRESHED" -> handleTokenRefresh(env, eventDate);
-            case "AUTH_FAILED" -> handleAuthFailed(env, eventDate);
+            case "USER_CREATED" -> handleUserCreated(eventDate, sink);
+            case "WALLET_CREDITED" -> handleWalletCredit(env, eventDate, sink);
+            case "WALLET_DEBITED" -> handleWalletDebit(env, eventDate, sink);
+            case "WALLET_TRANSFER" -> handleWalletTransfer(env, eventDate, sink);
+            case "WALLET_FAILED" -> handleWalletFailed(env, eventDate, sink);
+            // Mirrors a leg wallet-service already reported (WALLET_CREDITED, WALLET_DEBITED,
+            // WALLET_TRANSFER or WALLET_FAILED); kept in raw_events only, so money is counted once
+            case "TRANSACTION_RECORDED" -> { }
+            case "USER_LOGGED_IN" -> handleLogin(env, eventDate, sink);
+            case "USER_LOGGED_OUT" -> handleLogout(env, eventDate, sink);
+            case "TOKEN_REFRESHED" -> handleTokenRefresh(env, eventDate, sink);
+            case "AUTH_FAILED" -> handleAuthFailed(env, eventDate, sink);
             default -> log.warn("Unhandled event type: {}", env.getEventType());
         }
     }
 
+    /**
+     * Adds the increments of a stored event to {@code deltas}; used to
+     * rebuild summaries from raw_events.
+     */
+    void replay(EventEnvelope env, LocalDate date, SummaryDeltas deltas) {
+        route(env, date, deltas.sink(1));
+    }
+
+    private void markActive(EventEnvelope env, LocalDate date) {
+        if (env.getUserId() != null) activeUsers.record(date, env.getUserId());
+    }
+
+    // Top-user counts cannot be taken back, so they are saved in the event's
+    // transaction and only become visible once it commits. Called last:
+    // the batch blocks other batches until then, so it must not wait on rows
+    private void rankOnCommit(EventEnvelope env, LocalDate date) {
+        if (!RANKED_EVENTS.contains(env.getEventType())) return;
+        TopUsers.Batch ranked = topUsers.batch();
+        rank(env, date, ranked);
+        rawEventRepository.flush();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                ranked.persist();
+                ranked.publish();
+            } catch (RuntimeException ex) {
+                ranked.discard();
+                throw ex;
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    ranked.publish();
+                } else {
+                    ranked.discard();
+                }
+            }
+        });
+        ranked.persist();
+    }
+
+    private void rank(EventEnvelope env, LocalDate date, TopUsers.Batch ranked) {
+        if (!RANKED_EVENTS.contains(env.getEventType())) return;
+        try {
+            route(env, date, ranked.sink());
+        } catch (RuntimeException ex) {
+            log.warn("Could not rank event {}: {}", env.getEventId(), ex.getMessage());
+        }
+    }
+
+    // Events without a timestamp count on the day they arrive; fixing that
+    // time once keeps the summary date and the stored event_time in step
+    private void stampIfMissing(EventEnvelope env) {
+        if (env.getTimestamp() == null) env.setTimestamp(Instant.now());
+    }
+
+    private LocalDateTime eventTime(EventEnvelope env) {
+        return LocalDateTime.ofInstant(env.getTimestamp(), ZoneOffset.UTC);
+    }
+
     private LocalDate toLocalDate(EventEnvelope env) {
         Instant ts = env.getTimestamp() != null ? env.getTimestamp() : Instant.now();
         // Store aggregates in UTC date for consistency
@@ -86,26 +542,28 @@ public class EventProcessor {
 
     // Handlers
 
-    private void handleUserCreated(LocalDate date) {
-        dailySystemSummaryRepository.incrementUserCreated(date);
+    private void handleUserCreated(LocalDate date, SummarySink sink) {
+        sink.userCreated(date);
     }
 
-    private void handleWalletCredit(EventEnvelope env, LocalDate date) {
+    private void handleWalletCredit(EventEnvelope env, LocalDate date, SummarySink sink) {
         if (env.getUserId() == null) return;
         BigDecimal amount = amountFrom(env);
-        dailyUserSummaryRepository.incrementCredits(env.getUserId(), date, amount);
-        dailySystemSummaryRepository.incrementSystemTxn(date, amount);
+        sink.userCredit(env.getUserId(), date, amount);
+        sink.systemTxn(date, amount);
+        sink.amount(date, AmountKind.CREDIT, amount);
     }
 
-    private void handleWalletDebit(EventEnvelope env, LocalDate date) {
+    private void handleWalletDebit(EventEnvelope env, LocalDate date, SummarySink sink) {
         if (env.getUserId() == null) return;
         BigDecimal amount = amountFrom(env);
-        dailyUserSummaryRepository.incrementDebits(env.getUserId(), date, amount);
-        log.info("dailyUserSummaryRepository Debit processed for user {}, amount {}", env.getUserId(), amount);
-        dailySystemSummaryRepository.incrementSystemTxn(date, amount);
+        sink.userDebit(env.getUserId(), date, amount);
+        log.debug("Debit for user {}, amount {}", env.getUserId(), amount);
+        sink.systemTxn(date, amount);
+        sink.amount(date, AmountKind.DEBIT, amount);
     }
 
-    private void handleWalletTransfer(EventEnvelope env, LocalDate date) {
+    private void handleWalletTransfer(EventEnvelope env, LocalDate date, SummarySink sink) {
         // payload: { fromUserId, toUserId, amount, success }
         Map<String,Object> p = env.getPayload();
         if (p == null) return;
@@ -116,60 +574,37 @@ public class EventProcessor {
             Object fromId = p.get("fromUserId");
             Object toId   = p.get("toUserId");
             if (fromId != null)
-                dailyUserSummaryRepository.incrementDebits(Long.valueOf(fromId.toString()), date, amount);
+                sink.userDebit(Long.valueOf(fromId.toString()), date, amount);
             if (toId != null)
-                dailyUserSummaryRepository.incrementCredits(Long.valueOf(toId.toString()), date, amount);
-            dailySystemSummaryRepository.incrementSystemTxn(date, amount);
+                sink.userCredit(Long.valueOf(toId.toString()), date, amount);
+            sink.systemTxn(date, amount);
+            sink.amount(date, AmountKind.TRANSFER, amount);
         } else {
-            dailySystemSummaryRepository.incrementSystemFailed(date);
+            sink.systemFailed(date);
         }
     }
 
-    private void handleWalletFailed(EventEnvelope env, LocalDate date) {
+    private void handleWalletFailed(EventEnvelope env, LocalDate date, SummarySink sink) {
         if (env.getUserId() != null)
-            dailyUserSummaryRepository.incrementFailed(env.getUserId(), date);
-        dailySystemSummaryRepository.incrementSystemFailed(date);
-    }
-
-    private void handleTxnRecorded(EventEnvelope env, LocalDate date) {
-        // payload should include { type: CREDIT/DEBIT, status: SUCCESS/FAILED, amount }
-        Map<String,Object> p = env.getPayload();
-        if (p == null) return;
-        String status = String.valueOf(p.getOrDefault("status","SUCCESS"));
-        BigDecimal amount = amountFrom(env);
-
-        if ("FAILED".equalsIgnoreCase(status)) {
-            if (env.getUserId() != null)
-                dailyUserSummaryRepository.incrementFailed(env.getUserId(), date);
-            dailySystemSummaryRepository.incrementSystemFailed(date);
-            return;
-        }
-
-        String type = String.valueOf(p.getOrDefault("type",""));
-        if ("CREDIT".equalsIgnoreCase(type) && env.getUserId()!=null) {
-            dailyUserSummaryRepository.incrementCredits(env.getUserId(), date, amount);
-            dailySystemSummaryRepository.incrementSystemTxn(date, amount);
-        } else if ("DEBIT".equalsIgnoreCase(type) && env.getUserId()!=null) {
-            dailyUserSummaryRepository.incrementDebits(env.getUserId(), date, amount);
-            dailySystemSummaryRepository.incrementSystemTxn(date, amount);
-        }
+            sink.userFailed(env.getUserId(), date);
+        sink.systemFailed(date);
     }
 
-    private void handleLogin(EventEnvelope env, LocalDate date) {
-        if (env.getUserId() != null) authSummaryRepository.incrementLogin(date, env.getUserId());
+    private void handleLogin(EventEnvelope env, LocalDate date, SummarySink sink) {
+        if (env.getUserId() != null) sink.login(date, env.getUserId());
     }
-    private void handleLogout(EventEnvelope env, LocalDate date) {
-        if (env.getUserId() != null) authSummaryRepository.incrementLogout(date, env.getUserId());
+    private void handleLogout(EventEnvelope env, LocalDate date, SummarySink sink) {
+        if (env.getUserId() != null) sink.logout(date, env.getUserId());
     }
-    private void handleTokenRefresh(EventEnvelope env, LocalDate date) {
-        if (env.getUserId() != null) authSummaryRepository.incrementTokenRefresh(date, env.getUserId());
+    private void handleTokenRefresh(EventEnvelope env, LocalDate date, SummarySink sink) {
+        if (env.getUserId() != null) sink.tokenRefresh(date, env.getUserId());
     }
-    private void handleAuthFailed(EventEnvelope env, LocalDate date) {
+    private void handleAuthFailed(EventEnvelope env, LocalDate date, SummarySink sink) {
         if (env.getUserId() != null) {
-            authSummaryRepository.incrementFailedLogin(date, env.getUserId());
+            sink.failedLogin(date, env.getUserId());
         } else {
             // anonymous failed login (by email) -> ignore per-user, but still a system failure
-            dailySystemSummaryRepository.incrementSystemFailed(date);
+            sink.systemFailed(date);
         }
     }
 }
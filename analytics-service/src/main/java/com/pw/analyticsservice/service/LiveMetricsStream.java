@@ -0,0 +1,121 @@
+package com.pw.analyticsservice.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes a {@link SlidingWindowMetrics} snapshot to every subscribed
+ * Server-Sent Events client once a second. The snapshot is computed once per
+ * tick, whatever the number of clients.
+ * <p>
+ * Sends run on a dedicated executor, one virtual thread per send, so a slow
+ * client never holds up the shared scheduler or the other clients. A client
+ * whose previous send is still pending skips the tick; one stuck for longer
+ * than {@link #SEND_TIMEOUT} is dropped.
+ */
+@Component
+public class LiveMetricsStream {
+    private static final Logger log = LoggerFactory.getLogger(LiveMetricsStream.class);
+
+    // Clients (EventSource) reconnect by themselves when a stream times out
+    private static final Duration TIMEOUT = Duration.ofMinutes(30);
+    private static final Duration SEND_TIMEOUT = Duration.ofSeconds(5);
+
+    private final SlidingWindowMetrics metrics;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final ExecutorService sender =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("live-metrics-", 0).factory());
+
+    public LiveMetricsStream(SlidingWindowMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(TIMEOUT.toMillis());
+        Client client = new Client(emitter);
+        emitter.onCompletion(() -> clients.remove(client));
+        emitter.onTimeout(() -> clients.remove(client));
+        emitter.onError(e -> clients.remove(client));
+        clients.add(client);
+        dispatch(client, metrics.snapshot());
+        return emitter;
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void push() {
+        if (clients.isEmpty()) return;
+        SlidingWindowMetrics.Snapshot snapshot = metrics.snapshot();
+        for (Client client : clients) {
+            dispatch(client, snapshot);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sender.shutdownNow();
+    }
+
+    private void dispatch(Client client, SlidingWindowMetrics.Snapshot snapshot) {
+        long now = System.nanoTime();
+        long since = client.sendingSince.get();
+        if (since != Client.IDLE) {
+            if (now - since > SEND_TIMEOUT.toNanos() && clients.remove(client)) {
+                log.debug("Dropped live metrics subscriber: send pending for over {}", SEND_TIMEOUT);
+                // complete() waits for the stuck send, so not on this thread
+                execute(client.emitter::complete);
+            }
+            return;
+        }
+        if (!client.sendingSince.compareAndSet(Client.IDLE, now)) return;
+        execute(() -> {
+            try {
+                send(client, snapshot);
+            } finally {
+                client.sendingSince.set(Client.IDLE);
+            }
+        });
+    }
+
+    private void execute(Runnable task) {
+        try {
+            sender.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void send(Client client, SlidingWindowMetrics.Snapshot snapshot) {
+        try {
+            client.emitter.send(SseEmitter.event().name("metrics").data(snapshot));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away
+            clients.remove(client);
+            log.debug("Dropped live metrics subscriber: {}", e.getMessage());
+        }
+    }
+
+    private static final class Client {
+        static final long IDLE = Long.MIN_VALUE;
+
+        final SseEmitter emitter;
+        // System.nanoTime() when the pending send started, or IDLE
+        final AtomicLong sendingSince = new AtomicLong(IDLE);
+
+        Client(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.pw.analyticsservice.service;
+
+import com.pw.analyticsservice.config.RawEventPartitionProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps the day-partitioned {@code raw_events} table healthy: creates
+ * partitions ahead of time, moves events that landed in the default
+ * partition (late or backfilled days) into partitions of their own, and
+ * drops partitions past retention. Dropping a partition replaces the DELETE
+ * that would otherwise be needed, and leaves no dead rows behind.
+ */
+@Service
+public class RawEventPartitionManager {
+    private static final Logger log = LoggerFactory.getLogger(RawEventPartitionManager.class);
+
+    private static final String PARENT = "raw_events";
+    private static final String DEFAULT = PARENT + "_default";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RawEventPartitionProperties props;
+
+    public RawEventPartitionManager(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    RawEventPartitionProperties props) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.props = props;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    /**
+     * Daily maintenance run.
+     */
+    @Scheduled(cron = "${analytics.raw-events.partitions.cron:0 15 0 * * *}")
+    public void maintain() {
+        // event_time is UTC
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate oldest = props.getRetentionDays() > 0 ? today.minusDays(props.getRetentionDays()) : null;
+        for (int i = 0; i <= props.getDaysAhead(); i++) {
+            createPartition(today.plusDays(i));
+        }
+        splitDefault(oldest);
+        if (oldest != null) {
+            dropOlderThan(oldest);
+        }
+    }
+
+    public static String partitionName(LocalDate day) {
+        return PARENT + "_p" + day.format(SUFFIX);
+    }
+
+    private void createPartition(LocalDate day) {
+        String name = partitionName(day);
+        if (exists(name)) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF " + PARENT
+                    + " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+            log.info("Created partition {}", name);
+        } catch (DataAccessException dae) {
+            // e.g. the default partition already holds rows of that day; splitDefault moves them
+            log.warn("Could not create partition {}: {}", name, dae.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /**
+     * Gives each day found in the default partition its own partition. The
+     * rows are moved and the partition attached in one transaction, with
+     * inserts into the default partition held back meanwhile. Days already
+     * past retention are deleted instead.
+     */
+    private void splitDefault(LocalDate oldest) {
+        List<LocalDate> days = jdbcTemplate.queryForList(
+                "SELECT DISTINCT event_time::date FROM " + DEFAULT + " ORDER BY 1", LocalDate.class);
+        for (LocalDate day : days) {
+            String name = partitionName(day);
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.execute("LOCK TABLE " + DEFAULT + " IN ACCESS EXCLUSIVE MODE");
+                    String range = "event_time >= '" + day + "' AND event_time < '" + day.plusDays(1) + "'";
+                    if (oldest != null && day.isBefore(oldest)) {
+                        jdbcTemplate.update("DELETE FROM " + DEFAULT + " WHERE " + range);
+                        return;
+                    }
+                    jdbcTemplate.execute("CREATE TABLE " + name
+                            + " (LIKE " + PARENT + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+                    int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT + " WHERE " + range
+                            + " RETURNING *) INSERT INTO " + name + " SELECT * FROM moved");
+                    jdbcTemplate.execute("ALTER TABLE " + PARENT + " ATTACH PARTITION " + name
+                            + " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+                    log.info("Moved {} rows of {} from the default partition into {}", moved, day, name);
+                });
+            } catch (DataAccessException dae) {
+                log.error("Failed to split {} out of the default partition: {}", day, dae.getMessage(), dae);
+            }
+        }
+    }
+
+    private void dropOlderThan(LocalDate oldest) {
+        List<String> partitions = jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = ?::regclass AND c.relname ~ '^raw_events_p[0-9]{8}$'
+                ORDER BY c.relname
+                """, String.class, PARENT);
+
+        String cutoffName = partitionName(oldest);
+        for (String name : partitions) {
+            // yyyyMMdd suffixes sort chronologically
+            if (name.compareTo(cutoffName) >= 0) {
+                break;
+            }
+            try {
+                jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + name);
+                jdbcTemplate.execute("DROP TABLE " + name);
+                log.info("Dropped partition {} (older than {})", name, oldest);
+            } catch (DataAccessException dae) {
+                log.error("Failed to drop partition {}: {}", name, dae.getMessage(), dae);
+            }
+        }
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+}
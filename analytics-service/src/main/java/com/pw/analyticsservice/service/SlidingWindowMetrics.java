@@ -0,0 +1,185 @@
+package com.pw.analyticsservice.service;
+
+import com.pw.analyticsservice.model.AmountKind;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transactions, failures and volume over the last 1, 5 and 15 minutes, kept
+ * in memory only.
+ * <p>
+ * A ring holds one bucket per second of the last 15 minutes, indexed by
+ * epoch second modulo its length. Writers never lock: a bucket left over
+ * from an earlier lap is replaced with a CAS, and counts go to LongAdders.
+ * Events are bucketed by their own timestamp, so a consumer catching up on
+ * a backlog fills the seconds the events happened in. Events older than the
+ * ring are not counted.
+ */
+@Component
+public class SlidingWindowMetrics {
+
+    static final int SECONDS = 15 * 60;
+
+    public record Window(long txns, long failed, double tps, double failureRate, BigDecimal volume) {
+    }
+
+    public record Snapshot(Instant at, Window lastMinute, Window last5Minutes, Window last15Minutes) {
+    }
+
+    private final AtomicReferenceArray<Bucket> ring = new AtomicReferenceArray<>(SECONDS);
+
+    /**
+     * Sink that passes everything on to {@code delegate} and also counts the
+     * system-level transaction increments at {@code at}.
+     */
+    SummarySink tap(SummarySink delegate, Instant at) {
+        return new Tap(delegate, at.getEpochSecond());
+    }
+
+    void recordTxn(long second, BigDecimal amount) {
+        Bucket b = bucket(second);
+        if (b != null) {
+            b.txns.increment();
+            b.volumeCents.add(amount.movePointRight(2).longValue());
+        }
+    }
+
+    void recordFailure(long second) {
+        Bucket b = bucket(second);
+        if (b != null) {
+            b.failed.increment();
+        }
+    }
+
+    public Snapshot snapshot() {
+        long now = Instant.now().getEpochSecond();
+        long[] txns = new long[3];
+        long[] failed = new long[3];
+        long[] cents = new long[3];
+        int[] spans = {60, 5 * 60, SECONDS};
+        for (int i = 0; i < SECONDS; i++) {
+            Bucket b = ring.get(i);
+            if (b == null) continue;
+            long age = now - b.second;
+            if (age < 0 || age >= SECONDS) continue;
+            long t = b.txns.sum();
+            long f = b.failed.sum();
+            long c = b.volumeCents.sum();
+            for (int w = 0; w < spans.length; w++) {
+                if (age < spans[w]) {
+                    txns[w] += t;
+                    failed[w] += f;
+                    cents[w] += c;
+                }
+            }
+        }
+        Window[] windows = new Window[spans.length];
+        for (int w = 0; w < spans.length; w++) {
+            long attempts = txns[w] + failed[w];
+            windows[w] = new Window(txns[w], failed[w], (double) txns[w] / spans[w],
+                    attempts == 0 ? 0 : (double) failed[w] / attempts, BigDecimal.valueOf(cents[w], 2));
+        }
+        return new Snapshot(Instant.ofEpochSecond(now), windows[0], windows[1], windows[2]);
+    }
+
+    /**
+     * The bucket for {@code second}, or null if it is outside the ring.
+     * Future timestamps (producer clock ahead) count as now.
+     */
+    private Bucket bucket(long second) {
+        long now = Instant.now().getEpochSecond();
+        if (second > now) second = now;
+        if (second <= now - SECONDS) return null;
+        int index = (int) Math.floorMod(second, (long) SECONDS);
+        while (true) {
+            Bucket b = ring.get(index);
+            if (b != null && b.second == second) return b;
+            if (b != null && b.second > second) return null;
+            Bucket fresh = new Bucket(second);
+            if (ring.compareAndSet(index, b, fresh)) return fresh;
+        }
+    }
+
+    private static final class Bucket {
+        final long second;
+        final LongAdder txns = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder volumeCents = new LongAdder();
+
+        Bucket(long second) {
+            this.second = second;
+        }
+    }
+
+    private final class Tap implements SummarySink {
+        private final SummarySink delegate;
+        private final long second;
+
+        Tap(SummarySink delegate, long second) {
+            this.delegate = delegate;
+            this.second = second;
+        }
+
+        @Override
+        public void systemTxn(LocalDate date, BigDecimal amount) {
+            delegate.systemTxn(date, amount);
+            recordTxn(second, amount);
+        }
+
+        @Override
+        public void systemFailed(LocalDate date) {
+            delegate.systemFailed(date);
+            recordFailure(second);
+        }
+
+        @Override
+        public void amount(LocalDate date, AmountKind kind, BigDecimal amount) {
+            delegate.amount(date, kind, amount);
+        }
+
+        @Override
+        public void userCredit(long userId, LocalDate date, BigDecimal amount) {
+            delegate.userCredit(userId, date, amount);
+        }
+
+        @Override
+        public void userDebit(long userId, LocalDate date, BigDecimal amount) {
+            delegate.userDebit(userId, date, amount);
+        }
+
+        @Override
+        public void userFailed(long userId, LocalDate date) {
+            delegate.userFailed(userId, date);
+        }
+
+        @Override
+        public void userCreated(LocalDate date) {
+            delegate.userCreated(date);
+        }
+
+        @Override
+        public void login(LocalDate date, long userId) {
+            delegate.login(date, userId);
+        }
+
+        @Override
+        public void logout(LocalDate date, long userId) {
+            delegate.logout(date, userId);
+        }
+
+        @Override
+        public void failedLogin(LocalDate date, long userId) {
+            delegate.failedLogin(date, userId);
+        }
+
+        @Override
+        public void tokenRefresh(LocalDate date, long userId) {
+            delegate.tokenRefresh(date, userId);
+        }
+    }
+}
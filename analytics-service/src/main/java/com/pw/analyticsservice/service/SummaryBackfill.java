@@ -0,0 +1,344 @@
+package com.pw.analyticsservice.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pw.analyticsservice.config.BackfillProperties;
+import com.pw.analyticsservice.config.RawEventPartitionProperties;
+import com.pw.analyticsservice.id.SnowflakeIdGenerator;
+import com.pw.analyticsservice.model.EventEnvelope;
+import com.pw.analyticsservice.repository.SummaryBatchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds the daily summaries for a date range from raw_events, e.g. after a
+ * handler fix or a new metric.
+ * <p>
+ * The range is split into chunks of {@code chunk-days}, replayed in parallel
+ * on a fork-join pool: each task aggregates its days in memory with the live
+ * handlers and bulk-upserts the result into unlogged shadow copies of the
+ * summary tables. Live ingestion keeps writing the real tables meanwhile.
+ * <p>
+ * Tasks read rows with ids below a cutoff taken at the start. The swap then
+ * locks the live summary tables against writes (reads go on), replays the
+ * rows stored since the cutoff into the shadows, and replaces the range in
+ * one transaction. Flushes waiting on the lock apply their increments to the
+ * new rows, so nothing is lost or counted twice.
+ * <p>
+ * Days before the oldest one still in raw_events (see
+ * {@code analytics.raw-events.partitions.retention-days}) cannot be rebuilt,
+ * so a range reaching back past it is rejected rather than wiping their
+ * summaries.
+ * <p>
+ * Run it on one instance at a time: the shadow tables are shared.
+ */
+@Component
+public class SummaryBackfill {
+    private static final Logger log = LoggerFactory.getLogger(SummaryBackfill.class);
+
+    private static final String SHADOW_SUFFIX = "_backfill";
+
+    private record Table(String name, String columns) {
+    }
+
+    // In the order a flush writes them, so the swap's lock cannot deadlock with
+    // one. Columns are copied on swap; id and defaults come from the live table.
+    private static final List<Table> TABLES = List.of(
+            new Table("daily_user_summary",
+                    "user_id, date, total_credits, total_debits, failed_txns, net_change, last_updated"),
+            new Table("daily_system_summary",
+                    "date, total_users, new_users, total_txns, failed_txns, total_volume, last_updated"),
+            new Table("auth_summary",
+                    "date, user_id, logins, logouts, failed_logins, token_refreshes, last_updated"),
+            new Table("daily_amount_histogram", "date, kind, bucket, samples"));
+
+    private static final TypeReference<Map<String, Object>> PAYLOAD = new TypeReference<>() { };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SummaryBatchRepository summaryBatchRepository;
+    private final EventProcessor processor;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readTemplate;
+    private final BackfillProperties props;
+    private final RawEventPartitionProperties partitionProps;
+
+    private volatile Run last;
+
+    public SummaryBackfill(JdbcTemplate jdbcTemplate,
+                           SummaryBatchRepository summaryBatchRepository,
+                           EventProcessor processor,
+                           ObjectMapper objectMapper,
+                           PlatformTransactionManager transactionManager,
+                           BackfillProperties props,
+                           RawEventPartitionProperties partitionProps) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.summaryBatchRepository = summaryBatchRepository;
+        this.processor = processor;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // A transaction lets the driver stream with a cursor instead of loading the whole range
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.props = props;
+        this.partitionProps = partitionProps;
+    }
+
+    /**
+     * Starts a backfill in the background. Missing bounds default to the
+     * first and last day in raw_events.
+     *
+     * @throws IllegalStateException if one is already running
+     * @throws IllegalArgumentException if {@code from} is before the oldest day raw_events still holds
+     */
+    public synchronized BackfillProgress start(LocalDate from, LocalDate to) {
+        if (last != null && last.finishedAt == null) {
+            throw new IllegalStateException("A backfill is already running");
+        }
+        LocalDate[] bounds = jdbcTemplate.queryForObject(
+                "SELECT MIN(event_time)::date, MAX(event_time)::date FROM raw_events",
+                (rs, i) -> new LocalDate[]{
+                        rs.getObject(1, LocalDate.class), rs.getObject(2, LocalDate.class)});
+        if (bounds[0] == null) {
+            throw new IllegalArgumentException("raw_events is empty");
+        }
+        LocalDate oldest = oldestRetainedDay(bounds[0]);
+        if (from == null) from = oldest;
+        if (to == null) to = bounds[1];
+        if (from.isBefore(oldest)) {
+            throw new IllegalArgumentException("raw_events only goes back to " + oldest
+                    + "; summaries before it cannot be rebuilt");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+
+        long cutoff = SnowflakeIdGenerator.floorFor(System.currentTimeMillis() - props.getCutoffMargin().toMillis());
+        Run run = new Run(from, to, cutoff, ranges(ChronoUnit.DAYS.between(from, to) + 1));
+        last = run;
+        Thread.ofPlatform().name("summary-backfill").daemon().start(() -> execute(run));
+        return run.progress();
+    }
+
+    /**
+     * The running or most recent backfill, or null if there was none.
+     */
+    public BackfillProgress progress() {
+        Run run = last;
+        return run != null ? run.progress() : null;
+    }
+
+    private void execute(Run run) {
+        log.info("Backfilling summaries {}..{} in {} ranges", run.from, run.to, run.rangesTotal);
+        ForkJoinPool pool = new ForkJoinPool(props.getParallelism());
+        try {
+            createShadowTables();
+            pool.invoke(new ReplayRange(run, run.from, run.to));
+
+            run.state = "SWAPPING";
+            transactionTemplate.executeWithoutResult(status -> swap(run));
+            run.state = "COMPLETED";
+            BackfillProgress p = run.progress();
+            log.info("Backfilled summaries {}..{}: {} events ({} skipped) at {}/s",
+                    run.from, run.to, p.events(), p.skipped(), p.eventsPerSecond());
+        } catch (Exception ex) {
+            run.error = ex.getMessage();
+            run.state = "FAILED";
+            log.error("Summary backfill {}..{} failed: {}", run.from, run.to, ex.getMessage(), ex);
+        } finally {
+            pool.shutdownNow();
+            try {
+                dropShadowTables();
+            } catch (Exception ex) {
+                log.warn("Could not drop backfill shadow tables: {}", ex.getMessage());
+            }
+            run.finishedNanos = System.nanoTime();
+            run.finishedAt = Instant.now();
+        }
+    }
+
+    /**
+     * The first day raw_events holds completely: its first event day, or the
+     * retention horizon if partition maintenance has dropped days before it.
+     */
+    private LocalDate oldestRetainedDay(LocalDate firstEventDay) {
+        if (partitionProps.getRetentionDays() <= 0) {
+            return firstEventDay;
+        }
+        LocalDate horizon = LocalDate.now(ZoneOffset.UTC).minusDays(partitionProps.getRetentionDays());
+        return firstEventDay.isBefore(horizon) ? horizon : firstEventDay;
+    }
+
+    private void swap(Run run) {
+        jdbcTemplate.execute("LOCK TABLE " + String.join(", ", TABLES.stream().map(Table::name).toList())
+                + " IN EXCLUSIVE MODE");
+
+        // Partition maintenance may have dropped the first days while the replay ran
+        if (partitionProps.getRetentionDays() > 0
+                && run.from.isBefore(LocalDate.now(ZoneOffset.UTC).minusDays(partitionProps.getRetentionDays()))) {
+            throw new IllegalStateException("raw_events days from " + run.from
+                    + " were dropped during the backfill; summaries left unchanged");
+        }
+
+        // Everything committed since the cutoff, up to the lock
+        SummaryDeltas recent = new SummaryDeltas();
+        scan(run, run.from, run.to, "> ?", recent);
+        writeShadows(recent);
+
+        for (Table table : TABLES) {
+            jdbcTemplate.update("DELETE FROM " + table.name() + " WHERE date BETWEEN ? AND ?", run.from, run.to);
+            jdbcTemplate.update("INSERT INTO " + table.name() + " (" + table.columns() + ") SELECT " + table.columns()
+                    + " FROM " + table.name() + SHADOW_SUFFIX);
+        }
+    }
+
+    private void replay(Run run, LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        SummaryDeltas deltas = new SummaryDeltas();
+        long events = scan(run, from, to, "<= ?", deltas);
+        transactionTemplate.executeWithoutResult(status -> writeShadows(deltas));
+        int done = run.rangesDone.incrementAndGet();
+        log.info("Backfilled {}..{}: {} events in {} ms ({}/{} ranges)",
+                from, to, events, (System.nanoTime() - start) / 1_000_000, done, run.rangesTotal);
+    }
+
+    /**
+     * Aggregates raw_events whose event day is in [from, to] and whose id
+     * compares to the run's cutoff as {@code idCondition}.
+     */
+    private long scan(Run run, LocalDate from, LocalDate to, String idCondition, SummaryDeltas deltas) {
+        AtomicLong events = new AtomicLong();
+        readTemplate.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+            // Bounds on the partition key, so only the range's day partitions are read
+            PreparedStatement ps = con.prepareStatement("""
+                SELECT event_type, event_id, user_id, payload::text, event_time
+                FROM raw_events
+                WHERE event_time >= ? AND event_time < ? AND id %s
+                """.formatted(idCondition));
+            ps.setFetchSize(props.getFetchSize());
+            ps.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+            ps.setTimestamp(2, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+            ps.setLong(3, run.cutoff);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            LocalDateTime time = rs.getObject(5, LocalDateTime.class);
+            EventEnvelope env = new EventEnvelope();
+            env.setEventType(rs.getString(1));
+            env.setEventId(rs.getString(2));
+            long userId = rs.getLong(3);
+            env.setUserId(rs.wasNull() ? null : userId);
+            env.setTimestamp(time.toInstant(ZoneOffset.UTC));
+            try {
+                env.setPayload(objectMapper.readValue(rs.getString(4), PAYLOAD));
+                processor.replay(env, time.toLocalDate(), deltas);
+                events.incrementAndGet();
+            } catch (Exception ex) {
+                // Skipped, as when it was consumed
+                run.skipped.incrementAndGet();
+                log.warn("Skipping event {} in backfill: {}", env.getEventId(), ex.getMessage());
+            }
+        }));
+        run.events.addAndGet(events.get());
+        return events.get();
+    }
+
+    private void writeShadows(SummaryDeltas deltas) {
+        summaryBatchRepository.upsertUserDeltas("daily_user_summary" + SHADOW_SUFFIX, deltas.userDeltas());
+        summaryBatchRepository.upsertSystemDeltas("daily_system_summary" + SHADOW_SUFFIX, deltas.systemDeltas());
+        summaryBatchRepository.upsertAuthDeltas("auth_summary" + SHADOW_SUFFIX, deltas.authDeltas());
+        summaryBatchRepository.upsertAmountDeltas("daily_amount_histogram" + SHADOW_SUFFIX, deltas.amountDeltas());
+    }
+
+    private void createShadowTables() {
+        for (Table table : TABLES) {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + table.name() + SHADOW_SUFFIX);
+            // Same unique keys, so the regular upserts work on it
+            jdbcTemplate.execute("CREATE UNLOGGED TABLE " + table.name() + SHADOW_SUFFIX + " (LIKE " + table.name()
+                    + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS INCLUDING INDEXES)");
+        }
+    }
+
+    private void dropShadowTables() {
+        for (Table table : TABLES) {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + table.name() + SHADOW_SUFFIX);
+        }
+    }
+
+    // Leaf count of the halving split below
+    private int ranges(long days) {
+        return days <= props.getChunkDays() ? 1 : ranges(days / 2) + ranges(days - days / 2);
+    }
+
+    private final class ReplayRange extends RecursiveAction {
+        private final Run run;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        ReplayRange(Run run, LocalDate from, LocalDate to) {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            long days = ChronoUnit.DAYS.between(from, to) + 1;
+            if (days <= props.getChunkDays()) {
+                replay(run, from, to);
+                return;
+            }
+            LocalDate mid = from.plusDays(days / 2 - 1);
+            invokeAll(new ReplayRange(run, from, mid), new ReplayRange(run, mid.plusDays(1), to));
+        }
+    }
+
+    private static final class Run {
+        final LocalDate from;
+        final LocalDate to;
+        final long cutoff;
+        final int rangesTotal;
+        final long startedNanos = System.nanoTime();
+        final Instant startedAt = Instant.now();
+        final AtomicInteger rangesDone = new AtomicInteger();
+        final AtomicLong events = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        volatile String state = "RUNNING";
+        volatile String error;
+        volatile long finishedNanos;
+        volatile Instant finishedAt;
+
+        Run(LocalDate from, LocalDate to, long cutoff, int rangesTotal) {
+            this.from = from;
+            this.to = to;
+            this.cutoff = cutoff;
+            this.rangesTotal = rangesTotal;
+        }
+
+        BackfillProgress progress() {
+            long end = finishedAt != null ? finishedNanos : System.nanoTime();
+            long elapsedMs = Math.max(1, (end - startedNanos) / 1_000_000);
+            long n = events.get();
+            return new BackfillProgress(state, from, to, rangesTotal, rangesDone.get(), n, skipped.get(),
+                    n * 1000 / elapsedMs, startedAt, finishedAt, error);
+        }
+    }
+}
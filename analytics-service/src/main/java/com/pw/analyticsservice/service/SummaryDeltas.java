@@ -0,0 +1,148 @@
+package com.pw.analyticsservice.service;
+
+import com.pw.analyticsservice.model.AmountKind;
+import com.pw.analyticsservice.repository.SummaryBatchRepository.AmountDelta;
+import com.pw.analyticsservice.repository.SummaryBatchRepository.AuthDelta;
+import com.pw.analyticsservice.repository.SummaryBatchRepository.SystemDelta;
+import com.pw.analyticsservice.repository.SummaryBatchRepository.UserDelta;
+import com.pw.analyticsservice.sketch.AmountHistogram;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Summary increments accumulated between two flushes, one entry per
+ * (userId, date) or date. Consumer threads add concurrently; merges on
+ * different keys do not contend (ConcurrentHashMap locks per bin), so even
+ * the single system row of the day costs one map merge per event instead of
+ * one row update.
+ */
+final class SummaryDeltas {
+
+    private record UserDay(long userId, LocalDate date) {
+    }
+
+    private record AmountBucket(LocalDate date, AmountKind kind, int bucket) {
+    }
+
+    private final ConcurrentHashMap<UserDay, UserDelta> users = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<LocalDate, SystemDelta> system = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UserDay, AuthDelta> auth = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<AmountBucket, AmountDelta> amounts = new ConcurrentHashMap<>();
+
+    private final SummarySink add = new Sink(1);
+    private final SummarySink subtract = new Sink(-1);
+
+    /**
+     * Sink that adds to the deltas, or with {@code sign} -1 takes an event's
+     * increments back out (an event another consumer stored first).
+     */
+    SummarySink sink(int sign) {
+        return sign < 0 ? subtract : add;
+    }
+
+    Collection<UserDelta> userDeltas() {
+        return users.values();
+    }
+
+    Collection<SystemDelta> systemDeltas() {
+        return system.values();
+    }
+
+    Collection<AuthDelta> authDeltas() {
+        return auth.values();
+    }
+
+    Collection<AmountDelta> amountDeltas() {
+        return amounts.values();
+    }
+
+    int keys() {
+        return users.size() + system.size() + auth.size() + amounts.size();
+    }
+
+    private final class Sink implements SummarySink {
+
+        private final int sign;
+
+        Sink(int sign) {
+            this.sign = sign;
+        }
+
+        private BigDecimal signed(BigDecimal amount) {
+            return sign < 0 ? amount.negate() : amount;
+        }
+
+        private void addUser(long userId, LocalDate date, BigDecimal credits, BigDecimal debits, int failed) {
+            users.merge(new UserDay(userId, date), new UserDelta(userId, date, credits, debits, failed), UserDelta::plus);
+        }
+
+        private void addSystem(LocalDate date, int newUsers, int txns, int failed, BigDecimal volume) {
+            system.merge(date, new SystemDelta(date, newUsers, txns, failed, volume), SystemDelta::plus);
+        }
+
+        private void addAuth(LocalDate date, long userId, int logins, int logouts, int failedLogins, int refreshes) {
+            auth.merge(new UserDay(userId, date),
+                    new AuthDelta(userId, date, logins, logouts, failedLogins, refreshes), AuthDelta::plus);
+        }
+
+        @Override
+        public void userCredit(long userId, LocalDate date, BigDecimal amount) {
+            addUser(userId, date, signed(amount), BigDecimal.ZERO, 0);
+        }
+
+        @Override
+        public void userDebit(long userId, LocalDate date, BigDecimal amount) {
+            addUser(userId, date, BigDecimal.ZERO, signed(amount), 0);
+        }
+
+        @Override
+        public void userFailed(long userId, LocalDate date) {
+            addUser(userId, date, BigDecimal.ZERO, BigDecimal.ZERO, sign);
+        }
+
+        @Override
+        public void systemTxn(LocalDate date, BigDecimal amount) {
+            addSystem(date, 0, sign, 0, signed(amount));
+        }
+
+        @Override
+        public void systemFailed(LocalDate date) {
+            addSystem(date, 0, 0, sign, BigDecimal.ZERO);
+        }
+
+        @Override
+        public void amount(LocalDate date, AmountKind kind, BigDecimal amount) {
+            int bucket = AmountHistogram.bucketOf(amount);
+            amounts.merge(new AmountBucket(date, kind, bucket),
+                    new AmountDelta(date, kind.name(), bucket, sign), AmountDelta::plus);
+        }
+
+        @Override
+        public void userCreated(LocalDate date) {
+            addSystem(date, sign, 0, 0, BigDecimal.ZERO);
+        }
+
+        @Override
+        public void login(LocalDate date, long userId) {
+            addAuth(date, userId, sign, 0, 0, 0);
+        }
+
+        @Override
+        public void logout(LocalDate date, long userId) {
+            addAuth(date, userId, 0, sign, 0, 0);
+        }
+
+        @Override
+        public void failedLogin(LocalDate date, long userId) {
+            addAuth(date, userId, 0, 0, sign, 0);
+        }
+
+        @Override
+        public void tokenRefresh(LocalDate date, long userId) {
+            addAuth(date, userId, 0, 0, 0, sign);
+        }
+    }
+}
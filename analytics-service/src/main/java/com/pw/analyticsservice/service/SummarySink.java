@@ -0,0 +1,36 @@
+package com.pw.analyticsservice.service;
+
+import com.pw.analyticsservice.model.AmountKind;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Where the event handlers send their summary increments: straight to the
+ * upsert queries, or into the buffered deltas of the next flush.
+ */
+interface SummarySink {
+
+    void userCredit(long userId, LocalDate date, BigDecimal amount);
+
+    void userDebit(long userId, LocalDate date, BigDecimal amount);
+
+    void userFailed(long userId, LocalDate date);
+
+    void systemTxn(LocalDate date, BigDecimal amount);
+
+    void systemFailed(LocalDate date);
+
+    // One successful money movement, for the amount distribution of its kind
+    void amount(LocalDate date, AmountKind kind, BigDecimal amount);
+
+    void userCreated(LocalDate date);
+
+    void login(LocalDate date, long userId);
+
+    void logout(LocalDate date, long userId);
+
+    void failedLogin(LocalDate date, long userId);
+
+    void tokenRefresh(LocalDate date, long userId);
+}
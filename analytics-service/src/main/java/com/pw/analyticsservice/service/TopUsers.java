@@ -0,0 +1,229 @@
+package com.pw.analyticsservice.service;
+
+import com.pw.analyticsservice.config.IdGeneratorProperties;
+import com.pw.analyticsservice.config.TopUserProperties;
+import com.pw.analyticsservice.model.AmountKind;
+import com.pw.analyticsservice.model.TopMetric;
+import com.pw.analyticsservice.repository.TopUserSketchRepository;
+import com.pw.analyticsservice.sketch.SpaceSaving;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Heaviest users of each day by transaction volume and by transaction count,
+ * in one {@link SpaceSaving} summary per day and metric. Every credited or
+ * debited user of a committed event is counted, so both sides of a transfer
+ * (merchants included) rank.
+ * <p>
+ * Events are counted in a {@link Batch} that saves the summaries it changes
+ * to top_user_sketches in the transaction storing the events, so a
+ * checkpoint always matches raw_events. Queries are served from memory;
+ * each instance reloads its checkpoints on restart and merges in the other
+ * instances' checkpoints when answering.
+ */
+@Service
+public class TopUsers {
+
+    private record Key(LocalDate date, TopMetric metric) {
+    }
+
+    private record Offer(Key key, long userId, long weight) {
+    }
+
+    private final TopUserSketchRepository repository;
+    private final TopUserProperties props;
+    private final int nodeId;
+
+    private final ConcurrentHashMap<Key, SpaceSaving> local = new ConcurrentHashMap<>();
+    // Held from Batch.persist() until the batch is published or discarded,
+    // so batches commit one at a time, each on top of the previous one
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    public TopUsers(TopUserSketchRepository repository,
+                    TopUserProperties props,
+                    IdGeneratorProperties idProps) {
+        this.repository = repository;
+        this.props = props;
+        this.nodeId = idProps.getNodeId();
+    }
+
+    /**
+     * An empty batch; call {@link Batch#persist} inside the transaction that
+     * stores its events, then {@link Batch#publish} after it commits or
+     * {@link Batch#discard} if it does not.
+     */
+    public Batch batch() {
+        return new Batch();
+    }
+
+    /**
+     * @throws IllegalArgumentException if limit is not in [1, capacity]
+     */
+    public TopUsersResult top(LocalDate date, TopMetric metric, int limit) {
+        if (limit < 1 || limit > props.getCapacity()) {
+            throw new IllegalArgumentException("limit must be between 1 and " + props.getCapacity());
+        }
+        Key key = new Key(date, metric);
+        List<SpaceSaving> parts = new ArrayList<>();
+        SpaceSaving own = local.get(key);
+        if (own != null) {
+            parts.add(own);
+        } else {
+            byte[] stored = repository.find(date, metric.name(), nodeId);
+            if (stored != null) parts.add(SpaceSaving.fromBytes(stored));
+        }
+        for (byte[] other : repository.findOthers(date, metric.name(), nodeId)) {
+            parts.add(SpaceSaving.fromBytes(other));
+        }
+        SpaceSaving summary = parts.size() == 1 ? parts.get(0) : SpaceSaving.union(parts, props.getCapacity());
+
+        List<TopUsersResult.TopUser> users = new ArrayList<>(limit);
+        for (SpaceSaving.Entry e : summary.top(limit)) {
+            users.add(new TopUsersResult.TopUser(e.item(), value(metric, e.count()), value(metric, e.error())));
+        }
+        return new TopUsersResult(date, metric, value(metric, summary.total()), users);
+    }
+
+    // Summaries of days before yesterday; they are all checkpointed, and
+    // late events reload them
+    private void evictIdle() {
+        LocalDate keepFrom = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        local.keySet().removeIf(key -> key.date().isBefore(keepFrom));
+    }
+
+    private SpaceSaving load(Key key) {
+        byte[] stored = repository.find(key.date(), key.metric().name(), nodeId);
+        return stored != null ? SpaceSaving.fromBytes(stored) : new SpaceSaving(props.getCapacity());
+    }
+
+    /**
+     * Counts of the events of one transaction. Nothing is visible to
+     * queries until {@link #publish}; a discarded batch leaves the summaries
+     * as they were.
+     */
+    public final class Batch {
+        private final List<Offer> offers = new ArrayList<>();
+        private final SummarySink sink = new Recorder(this);
+        private Map<Key, SpaceSaving> staged;
+
+        private Batch() {
+        }
+
+        /**
+         * Sink that counts an event's user credits and debits; everything
+         * else is ignored.
+         */
+        public SummarySink sink() {
+            return sink;
+        }
+
+        public void record(LocalDate date, long userId, BigDecimal amount) {
+            offers.add(new Offer(new Key(date, TopMetric.VOLUME), userId,
+                    amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue()));
+            offers.add(new Offer(new Key(date, TopMetric.COUNT), userId, 1));
+        }
+
+        /**
+         * Saves the summaries with this batch's counts added, in the
+         * caller's transaction. Blocks other batches until this one is
+         * published or discarded.
+         */
+        public void persist() {
+            if (offers.isEmpty()) return;
+            commitLock.lock();
+            staged = new LinkedHashMap<>();
+            for (Offer offer : offers) {
+                staged.computeIfAbsent(offer.key(), this::copy).offer(offer.userId(), offer.weight());
+            }
+            for (Map.Entry<Key, SpaceSaving> e : staged.entrySet()) {
+                Key key = e.getKey();
+                repository.save(key.date(), key.metric().name(), nodeId, e.getValue().toBytes());
+            }
+        }
+
+        public void publish() {
+            if (staged == null) return;
+            try {
+                local.putAll(staged);
+                evictIdle();
+            } finally {
+                staged = null;
+                commitLock.unlock();
+            }
+        }
+
+        public void discard() {
+            if (staged == null) return;
+            staged = null;
+            commitLock.unlock();
+        }
+
+        private SpaceSaving copy(Key key) {
+            SpaceSaving current = local.get(key);
+            return current != null ? SpaceSaving.fromBytes(current.toBytes()) : load(key);
+        }
+    }
+
+    // Volume is counted in cents
+    private static BigDecimal value(TopMetric metric, long count) {
+        return metric == TopMetric.VOLUME ? BigDecimal.valueOf(count, 2) : BigDecimal.valueOf(count);
+    }
+
+    private record Recorder(Batch batch) implements SummarySink {
+        @Override
+        public void userCredit(long userId, LocalDate date, BigDecimal amount) {
+            batch.record(date, userId, amount);
+        }
+
+        @Override
+        public void userDebit(long userId, LocalDate date, BigDecimal amount) {
+            batch.record(date, userId, amount);
+        }
+
+        @Override
+        public void userFailed(long userId, LocalDate date) {
+        }
+
+        @Override
+        public void systemTxn(LocalDate date, BigDecimal amount) {
+        }
+
+        @Override
+        public void systemFailed(LocalDate date) {
+        }
+
+        @Override
+        public void amount(LocalDate date, AmountKind kind, BigDecimal amount) {
+        }
+
+        @Override
+        public void userCreated(LocalDate date) {
+        }
+
+        @Override
+        public void login(LocalDate date, long userId) {
+        }
+
+        @Override
+        public void logout(LocalDate date, long userId) {
+        }
+
+        @Override
+        public void failedLogin(LocalDate date, long userId) {
+        }
+
+        @Override
+        public void tokenRefresh(LocalDate date, long userId) {
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.pw.analyticsservice.service;
+
+import com.pw.analyticsservice.model.TopMetric;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Heaviest users of a UTC day, largest first. Each value is an upper bound
+ * at most {@code maxError} above the true one.
+ *
+ * @param total volume or number of transactions of all users that day
+ */
+public record TopUsersResult(LocalDate date, TopMetric by, BigDecimal total, List<TopUser> users) {
+
+    public record TopUser(long userId, BigDecimal value, BigDecimal maxError) {
+    }
+}
@@ -0,0 +1,69 @@
+package com.pw.analyticsservice.sketch;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Log-bucketed histogram with a relative error guarantee (the DDSketch
+ * mapping): an amount v falls in bucket ceil(log_gamma(v)), and every
+ * quantile read back is within 1% of a true sample. Buckets are fixed, so
+ * histograms of different days or instances merge exactly by adding counts,
+ * and a day needs only its non-empty buckets, about 115 per decade of amounts.
+ */
+public final class AmountHistogram {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // Zero (and, defensively, negative) amounts
+    public static final int ZERO_BUCKET = Short.MIN_VALUE;
+    private static final int MAX_BUCKET = Short.MAX_VALUE;
+
+    private final TreeMap<Integer, Long> counts = new TreeMap<>();
+    private long total;
+
+    public static int bucketOf(BigDecimal amount) {
+        if (amount.signum() <= 0) return ZERO_BUCKET;
+        double index = Math.ceil(Math.log(amount.doubleValue()) / LOG_GAMMA);
+        return (int) Math.max(ZERO_BUCKET + 1, Math.min(MAX_BUCKET, index));
+    }
+
+    /**
+     * Representative amount of a bucket, within the relative accuracy of
+     * everything in it.
+     */
+    public static BigDecimal valueOf(int bucket) {
+        if (bucket == ZERO_BUCKET) return BigDecimal.ZERO;
+        double value = 2 * Math.pow(GAMMA, bucket) / (GAMMA + 1);
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    public void add(int bucket, long count) {
+        if (count == 0) return;
+        counts.merge(bucket, count, Long::sum);
+        total += count;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    /**
+     * @param q in [0, 1]
+     * @return the q-quantile amount, or null if the histogram is empty
+     */
+    public BigDecimal quantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("Quantile must be in [0, 1]");
+        if (total <= 0) return null;
+        long rank = (long) Math.floor(q * (total - 1));
+        long seen = 0;
+        for (Map.Entry<Integer, Long> bucket : counts.entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) return valueOf(bucket.getKey());
+        }
+        return valueOf(counts.lastKey());
+    }
+}
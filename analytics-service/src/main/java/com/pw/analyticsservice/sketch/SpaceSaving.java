@@ -0,0 +1,164 @@
+package com.pw.analyticsservice.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Weighted Space-Saving summary (Metwally et al.) of the heaviest items of a
+ * stream, in at most {@code capacity} counters. An untracked item takes over
+ * the smallest counter and inherits its count as error, so every count is
+ * an upper bound at most {@code error} above the true weight, and any item
+ * heavier than total/capacity is tracked.
+ */
+public final class SpaceSaving {
+
+    /**
+     * @param count upper bound of the item's weight
+     * @param error how much of count may not be the item's; count - error is a lower bound
+     */
+    public record Entry(long item, long count, long error) {
+    }
+
+    private static final class Counter {
+        final long item;
+        long count;
+        long error;
+
+        Counter(long item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private static final Comparator<Counter> ORDER =
+            Comparator.<Counter>comparingLong(c -> c.count).thenComparingLong(c -> c.item);
+
+    private final int capacity;
+    private final Map<Long, Counter> counters = new HashMap<>();
+    // Smallest first: the counter an untracked item replaces
+    private final TreeSet<Counter> byCount = new TreeSet<>(ORDER);
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    public synchronized void offer(long item, long weight) {
+        if (weight <= 0) return;
+        total += weight;
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count += weight;
+        } else if (counters.size() < capacity) {
+            counter = new Counter(item, weight, 0);
+            counters.put(item, counter);
+        } else {
+            Counter min = byCount.pollFirst();
+            counters.remove(min.item);
+            counter = new Counter(item, min.count + weight, min.count);
+            counters.put(item, counter);
+        }
+        byCount.add(counter);
+    }
+
+    public synchronized long total() {
+        return total;
+    }
+
+    /**
+     * Highest count any untracked item can have.
+     */
+    public synchronized long floor() {
+        return counters.size() < capacity ? 0 : byCount.first().count;
+    }
+
+    /**
+     * The n largest counters, largest first.
+     */
+    public synchronized List<Entry> top(int n) {
+        List<Entry> top = new ArrayList<>(Math.min(n, counters.size()));
+        for (Counter c : byCount.descendingSet()) {
+            if (top.size() == n) break;
+            top.add(new Entry(c.item, c.count, c.error));
+        }
+        return top;
+    }
+
+    /**
+     * Summary of the concatenated streams of {@code parts}. An item missing
+     * from a full part may still have up to that part's floor in it, which
+     * is added to its count and error.
+     */
+    public static SpaceSaving union(List<SpaceSaving> parts, int capacity) {
+        Map<Long, long[]> merged = new HashMap<>();
+        long total = 0;
+        long floors = 0;
+        List<Map<Long, Counter>> snapshots = new ArrayList<>(parts.size());
+        List<Long> partFloors = new ArrayList<>(parts.size());
+        for (SpaceSaving part : parts) {
+            synchronized (part) {
+                Map<Long, Counter> copy = new HashMap<>();
+                part.counters.forEach((item, c) -> copy.put(item, new Counter(item, c.count, c.error)));
+                snapshots.add(copy);
+                partFloors.add(part.counters.size() < part.capacity ? 0L : part.byCount.first().count);
+                total += part.total;
+            }
+        }
+        for (int i = 0; i < snapshots.size(); i++) {
+            long floor = partFloors.get(i);
+            floors += floor;
+            for (Counter c : snapshots.get(i).values()) {
+                long[] sum = merged.computeIfAbsent(c.item, k -> new long[2]);
+                // Stored net of this part's floor, added back for every part below
+                sum[0] += c.count - floor;
+                sum[1] += c.error - floor;
+            }
+        }
+
+        SpaceSaving union = new SpaceSaving(capacity);
+        union.total = total;
+        List<Counter> all = new ArrayList<>(merged.size());
+        for (Map.Entry<Long, long[]> e : merged.entrySet()) {
+            all.add(new Counter(e.getKey(), e.getValue()[0] + floors, e.getValue()[1] + floors));
+        }
+        all.sort(ORDER.reversed());
+        for (Counter c : all.subList(0, Math.min(capacity, all.size()))) {
+            union.counters.put(c.item, c);
+            union.byCount.add(c);
+        }
+        return union;
+    }
+
+    /**
+     * Capacity, total and counters, 24 bytes per counter.
+     */
+    public synchronized byte[] toBytes() {
+        ByteBuffer buf = ByteBuffer.allocate(16 + 24 * counters.size());
+        buf.putInt(capacity).putLong(total).putInt(counters.size());
+        for (Counter c : byCount) {
+            buf.putLong(c.item).putLong(c.count).putLong(c.error);
+        }
+        return buf.array();
+    }
+
+    public static SpaceSaving fromBytes(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        SpaceSaving s = new SpaceSaving(buf.getInt());
+        s.total = buf.getLong();
+        int n = buf.getInt();
+        for (int i = 0; i < n; i++) {
+            Counter c = new Counter(buf.getLong(), buf.getLong(), buf.getLong());
+            s.counters.put(c.item, c);
+            s.byCount.add(c);
+        }
+        return s;
+    }
+}
@@ -1,12 +1,73 @@
--- Raw event log (immutable)
+-- Executed as a single statement (see spring.sql.init.separator) so that
+-- dollar-quoted DO blocks are passed to Postgres intact.
+
+-- A plain raw_events table from earlier releases is renamed here and copied
+-- into the partitioned table below (TEXT payloads become JSONB, so it cannot
+-- be attached as a partition). Its constraint names are freed for the new table.
+-- The whole script runs as one implicit transaction, so a failed copy leaves
+-- the old table in place.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class c
+               JOIN pg_namespace n ON n.oid = c.relnamespace
+               WHERE c.relname = 'raw_events' AND c.relkind = 'r'
+                 AND n.nspname = current_schema()) THEN
+        ALTER TABLE raw_events RENAME TO raw_events_legacy;
+        ALTER TABLE raw_events_legacy DROP CONSTRAINT IF EXISTS raw_events_pkey;
+        ALTER TABLE raw_events_legacy DROP CONSTRAINT IF EXISTS raw_events_event_id_key;
+        DROP INDEX IF EXISTS idx_raw_events_event_day;
+        -- Tables from before event_time was kept replay by created_at
+        ALTER TABLE raw_events_legacy ADD COLUMN IF NOT EXISTS event_time TIMESTAMP;
+    END IF;
+END $$;
+
+-- Raw event log (immutable), range-partitioned by day on event_time, the
+-- event's own timestamp in UTC. Partitioning on event time rather than
+-- arrival time keeps a redelivered event in the same partition as its first
+-- copy, so the per-partition unique key still rejects it.
 CREATE TABLE IF NOT EXISTS raw_events (
-                                          id BIGSERIAL PRIMARY KEY,
-                                          event_type VARCHAR(50) NOT NULL,
-    event_id UUID NOT NULL UNIQUE,
-    user_id BIGINT NULL,
-    payload TEXT NOT NULL,
-    created_at TIMESTAMP NOT NULL DEFAULT NOW()
-    );
+    id         BIGINT      NOT NULL,
+    event_type VARCHAR(50) NOT NULL,
+    event_id   VARCHAR(64) NOT NULL,
+    user_id    BIGINT      NULL,
+    payload    JSONB       NOT NULL,
+    event_time TIMESTAMP   NOT NULL,
+    created_at TIMESTAMP   NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (id, event_time),
+    CONSTRAINT uk_raw_events_event UNIQUE (event_id, event_time)
+) PARTITION BY RANGE (event_time);
+
+-- Catches events for days without a partition; RawEventPartitionManager
+-- moves them into day partitions
+CREATE TABLE IF NOT EXISTS raw_events_default PARTITION OF raw_events DEFAULT;
+
+-- Rows arrive roughly in time order, so a BRIN index (a few pages per
+-- partition) narrows time-range scans within a day
+CREATE INDEX IF NOT EXISTS idx_raw_events_event_time_brin ON raw_events USING brin (event_time);
+
+DO $$
+DECLARE
+    d DATE;
+BEGIN
+    IF to_regclass('raw_events_legacy') IS NOT NULL THEN
+        FOR d IN SELECT DISTINCT COALESCE(event_time, created_at)::date FROM raw_events_legacy LOOP
+            EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF raw_events FOR VALUES FROM (%L) TO (%L)',
+                           'raw_events_p' || to_char(d, 'YYYYMMDD'), d, d + 1);
+        END LOOP;
+        -- Payloads written through JPA while the column was mapped as @Lob
+        -- hold a large-object OID instead of the JSON
+        INSERT INTO raw_events (id, event_type, event_id, user_id, payload, event_time, created_at)
+        SELECT id, event_type, event_id, user_id,
+               CASE WHEN payload !~ '^[0-9]+$' THEN payload::jsonb
+                    WHEN EXISTS (SELECT 1 FROM pg_largeobject_metadata m WHERE m.oid = payload::oid)
+                        THEN convert_from(lo_get(payload::oid), 'UTF8')::jsonb
+                    ELSE 'null'::jsonb END,
+               COALESCE(event_time, created_at), created_at
+        FROM raw_events_legacy
+        ON CONFLICT DO NOTHING;
+        DROP TABLE raw_events_legacy;
+    END IF;
+END $$;
 
 -- Per-user, per-day summary
 CREATE TABLE IF NOT EXISTS daily_user_summary (
@@ -45,3 +106,34 @@ CREATE TABLE IF NOT EXISTS auth_summary (
                                             last_updated TIMESTAMP NOT NULL DEFAULT NOW(),
     CONSTRAINT uk_auth_user_date UNIQUE (user_id, date)
     );
+
+-- Amount distribution per day and kind (CREDIT, DEBIT, TRANSFER): sample
+-- counts of the non-empty buckets of a log-scale histogram, see AmountHistogram
+CREATE TABLE IF NOT EXISTS daily_amount_histogram (
+    date DATE NOT NULL,
+    kind VARCHAR(16) NOT NULL,
+    bucket SMALLINT NOT NULL,
+    samples BIGINT NOT NULL,
+    PRIMARY KEY (date, kind, bucket)
+    );
+
+-- HyperLogLog sketch of active userIds per day, one row per consumer instance;
+-- a day's count is the union of its rows
+CREATE TABLE IF NOT EXISTS active_user_sketches (
+    date DATE NOT NULL,
+    node_id INT NOT NULL,
+    sketch BYTEA NOT NULL,
+    last_updated TIMESTAMP NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (date, node_id)
+    );
+
+-- Space-Saving summary of the heaviest users per day and metric (VOLUME,
+-- COUNT), saved by each consumer instance with the events it counts
+CREATE TABLE IF NOT EXISTS top_user_sketches (
+    date DATE NOT NULL,
+    metric VARCHAR(16) NOT NULL,
+    node_id INT NOT NULL,
+    sketch BYTEA NOT NULL,
+    last_updated TIMESTAMP NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (date, metric, node_id)
+    );
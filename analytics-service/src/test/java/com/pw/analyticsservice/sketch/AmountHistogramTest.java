@@ -0,0 +1,93 @@
+package com.pw.analyticsservice.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmountHistogramTest {
+
+    private static final double[] QUANTILES = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999, 1};
+
+    @Test
+    void quantilesStayWithinRelativeAccuracy() {
+        Random rnd = new Random(5);
+        List<BigDecimal> samples = new ArrayList<>();
+        AmountHistogram histogram = new AmountHistogram();
+        for (int i = 0; i < 100_000; i++) {
+            // Log-uniform between 1.00 and 1,000,000.00
+            BigDecimal amount = BigDecimal.valueOf(Math.pow(10, 6 * rnd.nextDouble())).setScale(2, RoundingMode.HALF_UP);
+            samples.add(amount);
+            histogram.add(AmountHistogram.bucketOf(amount), 1);
+        }
+        samples.sort(null);
+
+        assertEquals(samples.size(), histogram.count());
+        for (double q : QUANTILES) {
+            BigDecimal truth = samples.get((int) Math.floor(q * (samples.size() - 1)));
+            assertWithinAccuracy(truth, histogram.quantile(q));
+        }
+    }
+
+    @Test
+    void bucketRepresentativeIsWithinAccuracyOfItsAmounts() {
+        Random rnd = new Random(6);
+        for (int i = 0; i < 100_000; i++) {
+            BigDecimal amount = BigDecimal.valueOf(1 + rnd.nextInt(100_000_000), 2).add(BigDecimal.ONE);
+            int bucket = AmountHistogram.bucketOf(amount);
+            assertWithinAccuracy(amount, AmountHistogram.valueOf(bucket));
+            // The bucket index is the stored form: it must map back to itself
+            assertEquals(bucket, AmountHistogram.bucketOf(AmountHistogram.valueOf(bucket)));
+        }
+    }
+
+    @Test
+    void mergingByAddingBucketCountsIsExact() {
+        Random rnd = new Random(7);
+        AmountHistogram a = new AmountHistogram();
+        AmountHistogram b = new AmountHistogram();
+        AmountHistogram all = new AmountHistogram();
+        List<Integer> bBuckets = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int bucket = AmountHistogram.bucketOf(BigDecimal.valueOf(1 + rnd.nextInt(1_000_000), 2));
+            if (i % 2 == 0) {
+                a.add(bucket, 1);
+            } else {
+                b.add(bucket, 1);
+                bBuckets.add(bucket);
+            }
+            all.add(bucket, 1);
+        }
+        bBuckets.forEach(bucket -> a.add(bucket, 1));
+        assertEquals(all.count(), a.count());
+        for (double q : QUANTILES) {
+            assertEquals(all.quantile(q), a.quantile(q));
+        }
+    }
+
+    @Test
+    void zeroAmountsAndEmptyHistogram() {
+        AmountHistogram histogram = new AmountHistogram();
+        assertNull(histogram.quantile(0.5));
+        assertEquals(AmountHistogram.ZERO_BUCKET, AmountHistogram.bucketOf(BigDecimal.ZERO));
+        assertEquals(AmountHistogram.ZERO_BUCKET, AmountHistogram.bucketOf(new BigDecimal("-5")));
+
+        histogram.add(AmountHistogram.ZERO_BUCKET, 3);
+        histogram.add(AmountHistogram.bucketOf(new BigDecimal("100")), 1);
+        assertEquals(0, BigDecimal.ZERO.compareTo(histogram.quantile(0.5)));
+        assertWithinAccuracy(new BigDecimal("100"), histogram.quantile(1));
+        assertThrows(IllegalArgumentException.class, () -> histogram.quantile(1.5));
+    }
+
+    private static void assertWithinAccuracy(BigDecimal truth, BigDecimal actual) {
+        // Representatives are rounded to cents, which adds up to half a cent
+        double error = Math.abs(actual.doubleValue() - truth.doubleValue());
+        double bound = AmountHistogram.RELATIVE_ACCURACY * truth.doubleValue() + 0.005;
+        assertTrue(error <= bound, actual + " is not within 1% of " + truth);
+    }
+}
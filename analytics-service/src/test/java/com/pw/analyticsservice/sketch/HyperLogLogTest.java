@@ -0,0 +1,96 @@
+package com.pw.analyticsservice.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    // 1.04 / sqrt(2^14) is about 0.81%; allow four standard errors
+    private static final double MAX_RELATIVE_ERROR = 4 * 1.04 / Math.sqrt(1 << HyperLogLog.PRECISION);
+
+    @Test
+    void estimateIsWithinErrorBoundAtSeveralCardinalities() {
+        for (int n : new int[]{100, 1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sequential = new HyperLogLog();
+            HyperLogLog random = new HyperLogLog();
+            Random rnd = new Random(n);
+            for (int i = 1; i <= n; i++) {
+                sequential.offer(i);
+                random.offer(rnd.nextLong());
+            }
+            assertWithinBound(n, sequential.estimate());
+            assertWithinBound(n, random.estimate());
+        }
+    }
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    void repeatedValuesDoNotChangeTheSketch() {
+        HyperLogLog hll = new HyperLogLog();
+        for (long i = 0; i < 5_000; i++) {
+            hll.offer(i);
+        }
+        byte[] before = hll.toBytes();
+        for (long i = 0; i < 5_000; i++) {
+            assertFalse(hll.offer(i));
+        }
+        assertArrayEquals(before, hll.toBytes());
+    }
+
+    @Test
+    void mergeEqualsSketchOfTheUnion() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        HyperLogLog all = new HyperLogLog();
+        for (long i = 0; i < 60_000; i++) {
+            (i % 3 == 0 ? a : b).offer(i);
+            // Overlap: b also sees part of a's values
+            if (i % 3 == 0 && i % 2 == 0) b.offer(i);
+            all.offer(i);
+        }
+        a.merge(b);
+        assertArrayEquals(all.toBytes(), a.toBytes());
+        assertWithinBound(60_000, a.estimate());
+    }
+
+    @Test
+    void serializationRoundTrips() {
+        HyperLogLog hll = new HyperLogLog();
+        for (long i = 0; i < 50_000; i++) {
+            hll.offer(i * 7919);
+        }
+        byte[] bytes = hll.toBytes();
+        assertEquals((1 << HyperLogLog.PRECISION) + 1, bytes.length);
+        assertEquals(HyperLogLog.PRECISION, bytes[0]);
+
+        HyperLogLog copy = HyperLogLog.fromBytes(bytes);
+        assertArrayEquals(bytes, copy.toBytes());
+        assertEquals(hll.estimate(), copy.estimate());
+        // The copy is independent of the original
+        copy.offer(-1);
+        assertArrayEquals(bytes, hll.toBytes());
+    }
+
+    @Test
+    void rejectsForeignBytes() {
+        byte[] bytes = new HyperLogLog().toBytes();
+        bytes[0] = HyperLogLog.PRECISION + 1;
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(bytes));
+        assertThrows(IllegalArgumentException.class,
+                () -> HyperLogLog.fromBytes(Arrays.copyOf(new HyperLogLog().toBytes(), 100)));
+    }
+
+    private static void assertWithinBound(long actual, long estimate) {
+        double error = Math.abs(estimate - actual) / (double) actual;
+        assertTrue(error <= MAX_RELATIVE_ERROR,
+                "estimate " + estimate + " for " + actual + " is off by " + error);
+    }
+}
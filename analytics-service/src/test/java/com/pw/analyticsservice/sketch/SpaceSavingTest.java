@@ -0,0 +1,160 @@
+package com.pw.analyticsservice.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+
+    private static final int CAPACITY = 100;
+
+    @Test
+    void exactWhileItemsFit() {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        Map<Long, Long> truth = new HashMap<>();
+        Random rnd = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long item = rnd.nextInt(CAPACITY / 2);
+            long weight = 1 + rnd.nextInt(50);
+            summary.offer(item, weight);
+            truth.merge(item, weight, Long::sum);
+        }
+        assertEquals(0, summary.floor());
+        for (SpaceSaving.Entry e : summary.top(CAPACITY)) {
+            assertEquals(truth.get(e.item()), e.count());
+            assertEquals(0, e.error());
+        }
+    }
+
+    @Test
+    void boundsHoldOnSkewedStream() {
+        Map<Long, Long> truth = new HashMap<>();
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        for (long[] offer : zipfStream(new Random(2), 200_000, 10_000)) {
+            summary.offer(offer[0], offer[1]);
+            truth.merge(offer[0], offer[1], Long::sum);
+        }
+        assertBounds(summary, truth, CAPACITY);
+    }
+
+    @Test
+    void unionBoundsHoldAgainstConcatenatedStreams() {
+        Map<Long, Long> truth = new HashMap<>();
+        List<SpaceSaving> parts = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            SpaceSaving part = new SpaceSaving(CAPACITY);
+            // Different seeds and item offsets: heavy hitters overlap only partly
+            for (long[] offer : zipfStream(new Random(10 + p), 50_000, 5_000)) {
+                long item = offer[0] + p * 10L;
+                part.offer(item, offer[1]);
+                truth.merge(item, offer[1], Long::sum);
+            }
+            parts.add(part);
+        }
+
+        SpaceSaving union = SpaceSaving.union(parts, CAPACITY);
+        assertEquals(parts.stream().mapToLong(SpaceSaving::total).sum(), union.total());
+        long floors = parts.stream().mapToLong(SpaceSaving::floor).sum();
+        for (SpaceSaving.Entry e : union.top(CAPACITY)) {
+            long actual = truth.getOrDefault(e.item(), 0L);
+            assertTrue(e.count() >= actual, "count " + e.count() + " below true " + actual);
+            assertTrue(e.count() - e.error() <= actual, "lower bound above true weight for " + e.item());
+            assertTrue(e.error() <= floors, "error " + e.error() + " above the parts' floors " + floors);
+        }
+        // The heaviest items are all still tracked
+        List<Long> tracked = union.top(CAPACITY).stream().map(SpaceSaving.Entry::item).toList();
+        truth.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .limit(10)
+                .forEach(e -> assertTrue(tracked.contains(e.getKey()), "heavy item " + e.getKey() + " lost in union"));
+    }
+
+    @Test
+    void unionOfOnePartKeepsItsCounters() {
+        SpaceSaving part = new SpaceSaving(CAPACITY);
+        for (long[] offer : zipfStream(new Random(3), 20_000, 1_000)) {
+            part.offer(offer[0], offer[1]);
+        }
+        SpaceSaving union = SpaceSaving.union(List.of(part), CAPACITY);
+        assertEquals(part.total(), union.total());
+        assertEquals(part.top(CAPACITY), union.top(CAPACITY));
+    }
+
+    @Test
+    void serializationRoundTrips() {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        Random rnd = new Random(4);
+        for (long[] offer : zipfStream(rnd, 50_000, 2_000)) {
+            summary.offer(offer[0], offer[1]);
+        }
+        byte[] bytes = summary.toBytes();
+        assertEquals(16 + 24 * CAPACITY, bytes.length);
+
+        SpaceSaving copy = SpaceSaving.fromBytes(bytes);
+        assertEquals(summary.total(), copy.total());
+        assertEquals(summary.floor(), copy.floor());
+        assertEquals(summary.top(CAPACITY), copy.top(CAPACITY));
+        assertArrayEquals(bytes, copy.toBytes());
+
+        // Restored counters keep evolving exactly like the original
+        for (long[] offer : zipfStream(rnd, 10_000, 2_000)) {
+            summary.offer(offer[0], offer[1]);
+            copy.offer(offer[0], offer[1]);
+        }
+        assertArrayEquals(summary.toBytes(), copy.toBytes());
+    }
+
+    @Test
+    void emptySummaryRoundTrips() {
+        SpaceSaving copy = SpaceSaving.fromBytes(new SpaceSaving(CAPACITY).toBytes());
+        assertEquals(0, copy.total());
+        assertTrue(copy.top(10).isEmpty());
+    }
+
+    private static void assertBounds(SpaceSaving summary, Map<Long, Long> truth, int capacity) {
+        long total = truth.values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(total, summary.total());
+        Map<Long, SpaceSaving.Entry> tracked = new HashMap<>();
+        for (SpaceSaving.Entry e : summary.top(capacity)) {
+            long actual = truth.get(e.item());
+            assertTrue(e.count() >= actual, "count " + e.count() + " below true " + actual);
+            assertTrue(e.count() - e.error() <= actual, "lower bound above true weight for " + e.item());
+            assertTrue(e.error() <= total / capacity, "error " + e.error() + " above total/capacity");
+            tracked.put(e.item(), e);
+        }
+        truth.forEach((item, weight) -> {
+            if (weight > total / capacity) {
+                assertTrue(tracked.containsKey(item), "heavy item " + item + " (" + weight + ") not tracked");
+            }
+        });
+    }
+
+    // (item, weight) pairs with Zipf(1)-distributed items and small random weights
+    private static List<long[]> zipfStream(Random rnd, int length, int items) {
+        double[] cdf = new double[items];
+        double sum = 0;
+        for (int i = 0; i < items; i++) {
+            sum += 1.0 / (i + 1);
+            cdf[i] = sum;
+        }
+        List<long[]> stream = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            double u = rnd.nextDouble() * sum;
+            int lo = 0;
+            int hi = items - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cdf[mid] < u) lo = mid + 1;
+                else hi = mid;
+            }
+            stream.add(new long[]{lo, 1 + rnd.nextInt(10)});
+        }
+        return stream;
+    }
+}
@@ -0,0 +1,57 @@
+package com.pw.transactionservice.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of an archive segment (one calendar month of transactions):
+ *
+ * <pre>
+ * [row group 0][row group 1]...        deflate-compressed, columnar within the group
+ * [user index]                         userCount x (userId:long, firstRow:int, rowCount:int), sorted by userId
+ * [group directory]                    groupCount x (offset:long, length:int, rawLength:int)
+ * [footer]                             see FOOTER_SIZE
+ * </pre>
+ *
+ * Rows are sorted by (userId, createdAt), so one user's history is a
+ * contiguous row range and only the groups overlapping it are inflated.
+ * Within a group the columns are stored one after another:
+ * id (zigzag delta varint), amount (zigzag varint), type (byte), status (byte),
+ * createdAt (epoch micros, zigzag delta varint), updatedAt (zigzag delta from
+ * createdAt), transferId (length-prefixed UTF-8), referenceId (same, -1 = null).
+ */
+final class SegmentFormat {
+
+    static final long MAGIC = 0x5057_5458_5345_4731L; // "PWTXSEG1"
+    static final int VERSION = 1;
+
+    static final int USER_ENTRY_SIZE = 16;
+    static final int GROUP_ENTRY_SIZE = 16;
+
+    // magic, version, rowCount, groupSize, userCount, groupCount, userIndexOffset, groupDirOffset, minMicros, maxMicros
+    static final int FOOTER_SIZE = 8 + 4 + 4 + 4 + 4 + 4 + 8 + 8 + 8 + 8;
+
+    private SegmentFormat() {
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        long v = (value << 1) ^ (value >> 63); // zigzag
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
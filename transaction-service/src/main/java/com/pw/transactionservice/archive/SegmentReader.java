@@ -0,0 +1,263 @@
+package com.pw.transactionservice.archive;
+
+import com.pw.transactionservice.model.Transaction;
+import com.pw.transactionservice.model.TransactionStatus;
+import com.pw.transactionservice.model.TransactionType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static com.pw.transactionservice.archive.SegmentFormat.*;
+
+/**
+ * Read-only, memory-mapped view of a segment file. Lookups only use absolute
+ * reads on the shared mapping, so one reader can serve concurrent requests.
+ */
+class SegmentReader implements Closeable {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC);
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+
+    private final int rowCount;
+    private final int groupSize;
+    private final int userCount;
+    private final int userIndexOffset;
+    private final int groupDirOffset;
+    private final LocalDateTime minCreatedAt;
+    private final LocalDateTime maxCreatedAt;
+
+    SegmentReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size < FOOTER_SIZE || size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Invalid segment size " + size + ": " + file);
+        }
+        this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        data.order(ByteOrder.LITTLE_ENDIAN);
+
+        int footer = (int) size - FOOTER_SIZE;
+        if (data.getLong(footer) != MAGIC || data.getInt(footer + 8) != VERSION) {
+            channel.close();
+            throw new IOException("Not a transaction segment: " + file);
+        }
+        this.rowCount = data.getInt(footer + 12);
+        this.groupSize = data.getInt(footer + 16);
+        this.userCount = data.getInt(footer + 20);
+        this.userIndexOffset = (int) data.getLong(footer + 28);
+        this.groupDirOffset = (int) data.getLong(footer + 36);
+        this.minCreatedAt = fromMicros(data.getLong(footer + 44));
+        this.maxCreatedAt = fromMicros(data.getLong(footer + 52));
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * True if the segment may hold rows created in [from, to).
+     */
+    boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        return rowCount > 0 && minCreatedAt.isBefore(to) && !maxCreatedAt.isBefore(from);
+    }
+
+    /**
+     * All rows of one user in (createdAt, id) order; empty if the user has none here.
+     */
+    List<Transaction> findByUserId(long userId) throws IOException {
+        int entry = findUserEntry(userId);
+        if (entry < 0) {
+            return List.of();
+        }
+        int pos = userIndexOffset + entry * USER_ENTRY_SIZE;
+        int firstRow = data.getInt(pos + 8);
+        int count = data.getInt(pos + 12);
+
+        List<Transaction> result = new ArrayList<>(count);
+        int lastRow = firstRow + count - 1;
+        for (int g = firstRow / groupSize; g <= lastRow / groupSize; g++) {
+            int groupStart = g * groupSize;
+            int from = Math.max(firstRow, groupStart) - groupStart;
+            int to = Math.min(lastRow, groupStart + groupSize - 1) - groupStart;
+            decodeGroup(g, userId, from, to, result);
+        }
+        return result;
+    }
+
+    /**
+     * The row with this id, if the segment holds it. Rows are not ordered by
+     * id, so every group's id column is inflated until it is found.
+     */
+    Transaction findById(long id) throws IOException {
+        int groups = (rowCount + groupSize - 1) / groupSize;
+        for (int g = 0; g < groups; g++) {
+            ByteBuffer in = ByteBuffer.wrap(inflate(g));
+            int rows = Math.min(groupSize, rowCount - g * groupSize);
+            long prev = 0;
+            for (int i = 0; i < rows; i++) {
+                prev += readVarLong(in);
+                if (prev == id) {
+                    List<Transaction> row = new ArrayList<>(1);
+                    decodeGroup(g, userAt(g * groupSize + i), i, i, row);
+                    return row.get(0);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mapping itself is released once the buffer is garbage collected
+        channel.close();
+    }
+
+    private int findUserEntry(long userId) {
+        int lo = 0;
+        int hi = userCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midUser = data.getLong(userIndexOffset + mid * USER_ENTRY_SIZE);
+            if (midUser < userId) {
+                lo = mid + 1;
+            } else if (midUser > userId) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // The user whose contiguous row range contains this row
+    private long userAt(int row) {
+        int lo = 0;
+        int hi = userCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (data.getInt(userIndexOffset + mid * USER_ENTRY_SIZE + 8) <= row) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return data.getLong(userIndexOffset + lo * USER_ENTRY_SIZE);
+    }
+
+    /**
+     * Inflates one row group and appends rows [from, to] of it, all of which
+     * belong to {@code userId}. The columns are still scanned in full, but
+     * objects are only built for the requested rows.
+     */
+    private void decodeGroup(int group, long userId, int from, int to, List<Transaction> out) throws IOException {
+        int rows = Math.min(groupSize, rowCount - group * groupSize);
+        ByteBuffer in = ByteBuffer.wrap(inflate(group));
+
+        long[] ids = new long[rows];
+        long prev = 0;
+        for (int i = 0; i < rows; i++) {
+            prev += readVarLong(in);
+            ids[i] = prev;
+        }
+        int[] amounts = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            amounts[i] = (int) readVarLong(in);
+        }
+        byte[] types = new byte[rows];
+        in.get(types);
+        byte[] statuses = new byte[rows];
+        in.get(statuses);
+        long[] created = new long[rows];
+        prev = 0;
+        for (int i = 0; i < rows; i++) {
+            prev += readVarLong(in);
+            created[i] = prev;
+        }
+        long[] updated = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            updated[i] = created[i] + readVarLong(in);
+        }
+        String[] transferIds = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            transferIds[i] = readString(in, i >= from && i <= to);
+        }
+        String[] referenceIds = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            referenceIds[i] = readString(in, i >= from && i <= to);
+        }
+
+        for (int i = from; i <= to; i++) {
+            out.add(Transaction.builder()
+                    .id(ids[i])
+                    .userId(userId)
+                    .amount(amounts[i])
+                    .type(TYPES[types[i]])
+                    .status(STATUSES[statuses[i]])
+                    .transferId(transferIds[i])
+                    .referenceId(referenceIds[i])
+                    .createdAt(fromMicros(created[i]))
+                    .updatedAt(fromMicros(updated[i]))
+                    .build());
+        }
+    }
+
+    private byte[] inflate(int group) throws IOException {
+        int dir = groupDirOffset + group * GROUP_ENTRY_SIZE;
+        int offset = (int) data.getLong(dir);
+        int length = data.getInt(dir + 8);
+        int rawLength = data.getInt(dir + 12);
+
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.slice(offset, length));
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                n += inflater.inflate(raw, n, rawLength - n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt row group " + group + " in " + file, e);
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    private static String readString(ByteBuffer in, boolean keep) {
+        int length = (int) readVarLong(in);
+        if (length < 0) {
+            return null;
+        }
+        String value = keep ? new String(in.array(), in.position(), length, StandardCharsets.UTF_8) : null;
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+}
@@ -0,0 +1,207 @@
+package com.pw.transactionservice.archive;
+
+import com.pw.transactionservice.model.Transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static com.pw.transactionservice.archive.SegmentFormat.*;
+
+/**
+ * Streams transactions, already sorted by (userId, createdAt), into a segment
+ * file. Only one row group is held in memory at a time.
+ */
+class SegmentWriter implements Closeable {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC);
+
+    private final FileChannel channel;
+    private final int groupSize;
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+    private final List<Transaction> group = new ArrayList<>();
+    private final ByteArrayOutputStream userIndex = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream groupDirectory = new ByteArrayOutputStream();
+
+    private long offset;
+    private int rowCount;
+    private int userCount;
+    private int groupCount;
+    private long minMicros = Long.MAX_VALUE;
+    private long maxMicros = Long.MIN_VALUE;
+
+    private Long currentUser;
+    private int currentUserFirstRow;
+
+    SegmentWriter(Path file, int groupSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.groupSize = groupSize;
+    }
+
+    void append(Transaction txn) throws IOException {
+        if (currentUser == null || !currentUser.equals(txn.getUserId())) {
+            if (currentUser != null && txn.getUserId() < currentUser) {
+                throw new IllegalArgumentException("Rows must be sorted by userId");
+            }
+            closeUserRange();
+            currentUser = txn.getUserId();
+            currentUserFirstRow = rowCount;
+        }
+        long micros = toMicros(txn.getCreatedAt());
+        minMicros = Math.min(minMicros, micros);
+        maxMicros = Math.max(maxMicros, micros);
+
+        group.add(txn);
+        rowCount++;
+        if (group.size() == groupSize) {
+            flushGroup();
+        }
+    }
+
+    /** Bytes written so far, used by the archiver to roll over to a new part. */
+    long size() {
+        return offset;
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Writes the index, directory and footer and syncs the file to disk.
+     */
+    void finish() throws IOException {
+        flushGroup();
+        closeUserRange();
+
+        long userIndexOffset = offset;
+        write(ByteBuffer.wrap(userIndex.toByteArray()));
+        long groupDirOffset = offset;
+        write(ByteBuffer.wrap(groupDirectory.toByteArray()));
+
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        footer.putLong(MAGIC)
+                .putInt(VERSION)
+                .putInt(rowCount)
+                .putInt(groupSize)
+                .putInt(userCount)
+                .putInt(groupCount)
+                .putLong(userIndexOffset)
+                .putLong(groupDirOffset)
+                .putLong(rowCount == 0 ? 0 : minMicros)
+                .putLong(rowCount == 0 ? 0 : maxMicros)
+                .flip();
+        write(footer);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        channel.close();
+    }
+
+    private void closeUserRange() {
+        if (currentUser == null) {
+            return;
+        }
+        ByteBuffer entry = ByteBuffer.allocate(USER_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        entry.putLong(currentUser).putInt(currentUserFirstRow).putInt(rowCount - currentUserFirstRow);
+        userIndex.writeBytes(entry.array());
+        userCount++;
+        currentUser = null;
+    }
+
+    private void flushGroup() throws IOException {
+        if (group.isEmpty()) {
+            return;
+        }
+        byte[] raw = encodeColumns(group);
+
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            compressed.write(chunk, 0, n);
+        }
+
+        ByteBuffer entry = ByteBuffer.allocate(GROUP_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        entry.putLong(offset).putInt(compressed.size()).putInt(raw.length);
+        groupDirectory.writeBytes(entry.array());
+        groupCount++;
+
+        write(ByteBuffer.wrap(compressed.toByteArray()));
+        group.clear();
+    }
+
+    private static byte[] encodeColumns(List<Transaction> rows) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rows.size() * 48);
+
+        long prevId = 0;
+        for (Transaction t : rows) {
+            writeVarLong(out, t.getId() - prevId);
+            prevId = t.getId();
+        }
+        for (Transaction t : rows) {
+            writeVarLong(out, t.getAmount());
+        }
+        for (Transaction t : rows) {
+            out.write(t.getType().ordinal());
+        }
+        for (Transaction t : rows) {
+            out.write(t.getStatus().ordinal());
+        }
+        long prevCreated = 0;
+        for (Transaction t : rows) {
+            long created = toMicros(t.getCreatedAt());
+            writeVarLong(out, created - prevCreated);
+            prevCreated = created;
+        }
+        for (Transaction t : rows) {
+            writeVarLong(out, toMicros(t.getUpdatedAt()) - toMicros(t.getCreatedAt()));
+        }
+        for (Transaction t : rows) {
+            writeString(out, t.getTransferId());
+        }
+        for (Transaction t : rows) {
+            writeString(out, t.getReferenceId());
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarLong(out, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    static long toMicros(LocalDateTime time) {
+        return ChronoUnit.MICROS.between(EPOCH, time);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.pw.transactionservice.archive;
+
+import com.pw.transactionservice.config.TransactionArchiveProperties;
+import com.pw.transactionservice.model.Transaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of archived months. Each month is one or more segment parts named
+ * {@code transactions-yyyyMM-NNN.seg}, committed by a
+ * {@code transactions-yyyyMM.manifest} written after all of them. Only months
+ * with a manifest whose parts and row counts check out are loaded (and
+ * memory-mapped) at startup; parts without one are leftovers of an interrupted
+ * run and are rewritten by the next.
+ */
+@Slf4j
+@Component
+public class TransactionArchive {
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final Pattern MANIFEST_NAME = Pattern.compile("transactions-(\\d{6})\\.manifest");
+
+    private final Path directory;
+    private final ConcurrentSkipListMap<YearMonth, List<SegmentReader>> segments = new ConcurrentSkipListMap<>();
+
+    public TransactionArchive(TransactionArchiveProperties props) {
+        this.directory = Paths.get(props.getDirectory());
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "transactions-*.manifest")) {
+            for (Path file : files) {
+                Matcher m = MANIFEST_NAME.matcher(file.getFileName().toString());
+                if (!m.matches()) {
+                    continue;
+                }
+                YearMonth month = YearMonth.parse(m.group(1), MONTH);
+                try {
+                    segments.put(month, openManifest(file));
+                } catch (IOException e) {
+                    // The month's rows are still in the database; the archiver rewrites it
+                    log.error("Ignoring archived month {}: {}", month, e.getMessage());
+                }
+            }
+        }
+        log.info("Loaded {} archived months from {}", segments.size(), directory);
+    }
+
+    /**
+     * Opens the parts a manifest lists, checking each holds the recorded number of rows.
+     */
+    private List<SegmentReader> openManifest(Path manifest) throws IOException {
+        List<SegmentReader> readers = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(manifest)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length != 2) {
+                    throw new IOException("Malformed manifest line '" + line + "' in " + manifest);
+                }
+                SegmentReader reader = new SegmentReader(directory.resolve(fields[0]));
+                readers.add(reader);
+                if (reader.rowCount() != Integer.parseInt(fields[1])) {
+                    throw new IOException("Segment " + fields[0] + " has " + reader.rowCount()
+                            + " rows, manifest says " + fields[1]);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(readers);
+            throw e instanceof IOException io ? io : new IOException(e.getMessage(), e);
+        }
+        return List.copyOf(readers);
+    }
+
+    @PreDestroy
+    public void close() {
+        segments.values().forEach(this::closeQuietly);
+    }
+
+    private void closeQuietly(List<SegmentReader> readers) {
+        for (SegmentReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.warn("Failed to close segment {}: {}", reader.file(), e.getMessage());
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    public boolean contains(YearMonth month) {
+        return segments.containsKey(month);
+    }
+
+    /**
+     * Rows archived for {@code month}; 0 if it is not archived.
+     */
+    public long rowCount(YearMonth month) {
+        long rows = 0;
+        for (SegmentReader reader : segments.getOrDefault(month, List.of())) {
+            rows += reader.rowCount();
+        }
+        return rows;
+    }
+
+    /**
+     * The newest archived month; every month before it is archived too.
+     */
+    public Optional<YearMonth> latestMonth() {
+        Map.Entry<YearMonth, List<SegmentReader>> last = segments.lastEntry();
+        return last == null ? Optional.empty() : Optional.of(last.getKey());
+    }
+
+    /**
+     * Archived months, newest first.
+     */
+    public List<YearMonth> months() {
+        return List.copyOf(segments.descendingKeySet());
+    }
+
+    /**
+     * Archived rows of a user created in [from, to), in no particular order.
+     */
+    public List<Transaction> findByUserId(Long userId, LocalDateTime from, LocalDateTime to) {
+        List<Transaction> result = new ArrayList<>();
+        for (YearMonth month : segments.keySet()) {
+            result.addAll(findByUserId(userId, month, from, to));
+        }
+        return result;
+    }
+
+    /**
+     * Archived rows of a user in one month created in [from, to), in no
+     * particular order; empty if the month is not archived.
+     */
+    public List<Transaction> findByUserId(Long userId, YearMonth month, LocalDateTime from, LocalDateTime to) {
+        List<Transaction> result = new ArrayList<>();
+        for (SegmentReader reader : segments.getOrDefault(month, List.of())) {
+            if (!reader.overlaps(from, to)) {
+                continue;
+            }
+            try {
+                for (Transaction txn : reader.findByUserId(userId)) {
+                    if (!txn.getCreatedAt().isBefore(from) && txn.getCreatedAt().isBefore(to)) {
+                        result.add(txn);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read archive segment " + reader.file(), e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The archived row with this id, searched only in the parts of the months
+     * overlapping [from, to) that may hold rows created then.
+     */
+    public Optional<Transaction> findById(long id, LocalDateTime from, LocalDateTime to) {
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            for (SegmentReader reader : segments.getOrDefault(month, List.of())) {
+                if (!reader.overlaps(from, to)) {
+                    continue;
+                }
+                try {
+                    Transaction txn = reader.findById(id);
+                    if (txn != null) {
+                        return Optional.of(txn);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read archive segment " + reader.file(), e);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    static String fileName(YearMonth month, int part) {
+        return String.format("transactions-%s-%03d.seg", month.format(MONTH), part);
+    }
+
+    static Path manifest(Path directory, YearMonth month) {
+        return directory.resolve("transactions-" + month.format(MONTH) + ".manifest");
+    }
+
+    /**
+     * Commits the finished parts of a month: writes its manifest (the month
+     * counts as archived from then on) and publishes the parts to readers.
+     */
+    void register(YearMonth month, List<Path> parts) throws IOException {
+        List<SegmentReader> readers = new ArrayList<>(parts.size());
+        StringBuilder manifest = new StringBuilder();
+        try {
+            for (Path part : parts) {
+                SegmentReader reader = new SegmentReader(part);
+                readers.add(reader);
+                manifest.append(part.getFileName()).append(' ').append(reader.rowCount()).append('\n');
+            }
+            Path target = manifest(directory, month);
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(manifest.toString().getBytes(StandardCharsets.UTF_8)));
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(readers);
+            throw e;
+        }
+        List<SegmentReader> previous = segments.put(month, List.copyOf(readers));
+        if (previous != null) {
+            // Lookups in flight keep working: the mappings outlive the channels
+            closeQuietly(previous);
+        }
+    }
+}
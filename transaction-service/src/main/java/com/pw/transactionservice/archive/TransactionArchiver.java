@@ -0,0 +1,257 @@
+package com.pw.transactionservice.archive;
+
+import com.pw.transactionservice.config.TransactionArchiveProperties;
+import com.pw.transactionservice.model.Transaction;
+import com.pw.transactionservice.service.TransactionPartitionManager;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Moves months older than {@code transactions.archive.after-months} from
+ * Postgres into {@link TransactionArchive} segments.
+ * <p>
+ * A month is streamed out sorted by user, written to temp files, renamed into
+ * place and committed by its manifest, and only then removed from the
+ * database: its monthly partition is dropped (attached or already detached),
+ * or for rows still in the legacy/default partitions the range is deleted.
+ * The removal only happens if the archived row count matches the database's;
+ * otherwise the month is rewritten first. A crash before the manifest leaves
+ * parts that are never loaded; a crash after it just leaves rows in both
+ * places, which reads dedupe by id and the next run finishes removing.
+ */
+@Slf4j
+@Service
+public class TransactionArchiver {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionArchive archive;
+    private final TransactionArchiveProperties props;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public TransactionArchiver(JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               TransactionArchive archive,
+                               TransactionArchiveProperties props) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.archive = archive;
+        this.props = props;
+    }
+
+    /**
+     * Nightly run, after partition maintenance.
+     */
+    @Scheduled(cron = "${transactions.archive.cron:0 30 2 * * *}")
+    public void archiveColdMonths() {
+        if (!props.isEnabled()) {
+            return;
+        }
+        YearMonth cutoff = YearMonth.now().minusMonths(props.getAfterMonths());
+        for (YearMonth month : coldMonths(cutoff)) {
+            try {
+                archiveMonth(month);
+            } catch (RuntimeException | IOException e) {
+                // Leave the rows in place; the next run retries this month
+                log.error("Failed to archive transactions for {}: {}", month, e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Months before {@code cutoff} that still have rows in the database, either
+     * as a monthly table (attached or detached) or inside the parent's other partitions.
+     */
+    private TreeSet<YearMonth> coldMonths(YearMonth cutoff) {
+        TreeSet<YearMonth> months = new TreeSet<>();
+        List<String> tables = jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_class c
+                JOIN pg_namespace n ON n.oid = c.relnamespace
+                WHERE n.nspname = current_schema() AND c.relkind = 'r'
+                  AND c.relname ~ '^transactions_p[0-9]{6}$'
+                """, String.class);
+        for (String table : tables) {
+            YearMonth month = YearMonth.parse(table.substring(table.length() - 6), SUFFIX);
+            if (month.isBefore(cutoff)) {
+                months.add(month);
+            }
+        }
+
+        Timestamp oldest = jdbcTemplate.queryForObject(
+                "SELECT min(created_at) FROM transactions WHERE created_at < '" + cutoff.atDay(1) + "'",
+                Timestamp.class);
+        if (oldest != null) {
+            for (YearMonth m = YearMonth.from(oldest.toLocalDateTime()); m.isBefore(cutoff); m = m.plusMonths(1)) {
+                months.add(m);
+            }
+        }
+        return months;
+    }
+
+    private void archiveMonth(YearMonth month) throws IOException {
+        String table = TransactionPartitionManager.partitionName(month);
+        boolean ownTable = exists(table);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+
+        // Literal bounds, so the SELECT and the DELETE below see exactly the same rows
+        String source = ownTable
+                ? table
+                : "transactions WHERE created_at >= '" + from + "' AND created_at < '" + to + "'";
+
+        long rows = count(source);
+        if (rows > 0 && archive.rowCount(month) != rows) {
+            if (archive.contains(month)) {
+                log.warn("Archive of {} holds {} rows, database has {}; rewriting it",
+                        month, archive.rowCount(month), rows);
+            }
+            long start = System.nanoTime();
+            List<Path> parts = writeSegments(month, source);
+            archive.register(month, parts);
+            log.info("Archived {} into {} segment(s) in {} ms", month, parts.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+
+        // The rows' per-user net moves into transaction_archived_totals in the
+        // same transaction that removes them, so ledger sums never count a month twice or not at all
+        transactionTemplate.executeWithoutResult(status -> {
+            if (ownTable) {
+                jdbcTemplate.execute("LOCK TABLE " + table + " IN EXCLUSIVE MODE");
+            }
+            long present = count(source);
+            long archived = archive.rowCount(month);
+            if (present != archived) {
+                throw new IllegalStateException("Archive of " + month + " holds " + archived
+                        + " rows but the database has " + present + "; not removing them");
+            }
+            jdbcTemplate.update("INSERT INTO transaction_archived_totals (user_id, net_amount)"
+                    + " SELECT user_id, sum(CASE type WHEN 'CREDIT' THEN amount WHEN 'DEBIT' THEN -amount ELSE 0 END)"
+                    + " FROM (SELECT * FROM " + source + ") archived WHERE status = 'SUCCESS' GROUP BY user_id"
+                    + " ON CONFLICT (user_id) DO UPDATE"
+                    + " SET net_amount = transaction_archived_totals.net_amount + EXCLUDED.net_amount");
+            if (ownTable) {
+                jdbcTemplate.execute("DROP TABLE " + table);
+                log.info("Dropped archived partition {}", table);
+            } else {
+                int deleted = jdbcTemplate.update("DELETE FROM " + source);
+                if (deleted > 0) {
+                    log.info("Deleted {} archived rows for {}", deleted, month);
+                }
+            }
+        });
+    }
+
+    /**
+     * Streams the month in (user_id, created_at, id) order into one or more parts.
+     */
+    private List<Path> writeSegments(YearMonth month, String source) throws IOException {
+        List<Path> temps = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                status.setRollbackOnly();
+                try (Stream<Transaction> rows = entityManager
+                        .createNativeQuery("SELECT * FROM " + source + " ORDER BY user_id, created_at, id", Transaction.class)
+                        .setHint(HibernateHints.HINT_FETCH_SIZE, props.getFetchSize())
+                        .setHint(HibernateHints.HINT_READ_ONLY, true)
+                        .getResultStream()) {
+                    SegmentWriter writer = null;
+                    try {
+                        Iterator<Transaction> it = rows.iterator();
+                        while (it.hasNext()) {
+                            Transaction txn = it.next();
+                            if (writer == null || writer.size() >= props.getMaxSegmentBytes()) {
+                                if (writer != null) {
+                                    writer.finish();
+                                    writer.close();
+                                }
+                                Path temp = archive.directory().resolve(TransactionArchive.fileName(month, temps.size()) + ".tmp");
+                                Files.deleteIfExists(temp);
+                                temps.add(temp);
+                                writer = new SegmentWriter(temp, props.getGroupSize());
+                            }
+                            writer.append(txn);
+                            entityManager.detach(txn);
+                        }
+                        if (writer != null) {
+                            writer.finish();
+                        }
+                    } finally {
+                        if (writer != null) {
+                            writer.close();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            deleteQuietly(temps);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            deleteQuietly(temps);
+            throw e;
+        }
+
+        // Uncommit the month first, so a crash mid-rename cannot leave a manifest vouching for mixed parts
+        Files.deleteIfExists(TransactionArchive.manifest(archive.directory(), month));
+        List<Path> parts = new ArrayList<>(temps.size());
+        for (int i = 0; i < temps.size(); i++) {
+            Path target = archive.directory().resolve(TransactionArchive.fileName(month, i));
+            Files.move(temps.get(i), target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            parts.add(target);
+        }
+        // Drop extra parts left by an earlier, larger attempt
+        for (int i = temps.size(); ; i++) {
+            if (!Files.deleteIfExists(archive.directory().resolve(TransactionArchive.fileName(month, i)))) {
+                break;
+            }
+        }
+        return parts;
+    }
+
+    private void deleteQuietly(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private long count(String source) {
+        Long rows = jdbcTemplate.queryForObject("SELECT count(*) FROM " + source, Long.class);
+        return rows == null ? 0 : rows;
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+}
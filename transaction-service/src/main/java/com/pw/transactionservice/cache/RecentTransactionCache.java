@@ -0,0 +1,259 @@
+package com.pw.transactionservice.cache;
+
+import com.pw.transactionservice.config.RecentTransactionCacheProperties;
+import com.pw.transactionservice.event.TransactionRecordedEvent;
+import com.pw.transactionservice.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-user ring of the most recent transactions, so the first page of a
+ * user's history is answered without a database query.
+ * <p>
+ * A ring is loaded from the database on the first miss and then kept current
+ * by every credit, debit and transfer leg written on this instance. All rings
+ * share one memory budget; when it is exceeded the least recently used users
+ * are evicted. Writes made by other instances are picked up once the ring
+ * expires after {@code ttl}.
+ */
+@Component
+public class RecentTransactionCache {
+
+    // Rough heap cost of one cached Transaction excluding its strings (object,
+    // boxed fields, two LocalDateTimes) and of one ring slot
+    private static final long ENTRY_OVERHEAD = 240;
+    private static final long RING_OVERHEAD = 128;
+    private static final int WRITE_STRIPES = 1024;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final long maxBytes;
+    private final long ttlNanos;
+
+    // Access-ordered, so iteration starts at the least recently used user
+    private final LinkedHashMap<Long, Ring> rings = new LinkedHashMap<>(1024, 0.75f, true);
+    private long bytes;
+    private long evictions;
+
+    // Bumped on every write; a load is only cached if its user's stripe did not move meanwhile
+    private final AtomicLongArray writeStamps = new AtomicLongArray(WRITE_STRIPES);
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public RecentTransactionCache(RecentTransactionCacheProperties props, MeterRegistry meterRegistry) {
+        this.enabled = props.isEnabled();
+        this.capacity = props.getCapacity();
+        this.maxBytes = props.getMaxMemory().toBytes();
+        this.ttlNanos = props.getTtl().toNanos();
+
+        this.hits = Counter.builder("transactions.recent.cache.requests").tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("transactions.recent.cache.requests").tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("transactions.recent.cache.hit.ratio", this, RecentTransactionCache::hitRatio)
+                .description("Share of recent-history reads served from memory")
+                .register(meterRegistry);
+        Gauge.builder("transactions.recent.cache.memory", this, RecentTransactionCache::memoryUsed)
+                .description("Estimated heap used by cached transactions")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("transactions.recent.cache.users", this, RecentTransactionCache::userCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("transactions.recent.cache.evictions", this, c -> c.evictions)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Newest-first copy of up to {@code limit} cached transactions, or empty
+     * if the ring is missing, expired, or holds fewer rows than asked for.
+     */
+    public Optional<List<Transaction>> get(Long userId, int limit) {
+        if (!enabled || limit > capacity) {
+            return Optional.empty();
+        }
+        synchronized (rings) {
+            Ring ring = rings.get(userId);
+            if (ring != null && System.nanoTime() - ring.loadedAt > ttlNanos) {
+                remove(userId);
+                ring = null;
+            }
+            if (ring == null || (ring.size < limit && !ring.complete)) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(ring.newestFirst(limit));
+        }
+    }
+
+    /**
+     * Taken before loading a user's history from the database; pass it back to {@link #load}.
+     */
+    public long writeStamp(Long userId) {
+        return writeStamps.get(stripe(userId));
+    }
+
+    /**
+     * Installs a ring from rows read from the database (newest first).
+     *
+     * @param complete true if {@code newestFirst} is the user's entire history
+     */
+    public void load(Long userId, List<Transaction> newestFirst, boolean complete, long writeStamp) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (rings) {
+            if (writeStamps.get(stripe(userId)) != writeStamp) {
+                // A write for this user (or a neighbour) landed while we were reading
+                return;
+            }
+            Ring ring = new Ring(capacity);
+            for (int i = Math.min(newestFirst.size(), capacity) - 1; i >= 0; i--) {
+                ring.push(newestFirst.get(i));
+            }
+            ring.complete = complete;
+            remove(userId);
+            rings.put(userId, ring);
+            bytes += ring.bytes + RING_OVERHEAD;
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Adds a newly written leg to its user's ring. Runs after commit, so a
+     * rolled back write never becomes visible.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransactionRecorded(TransactionRecordedEvent event) {
+        if (enabled) {
+            append(event.transaction());
+        }
+    }
+
+    public double hitRatio() {
+        double h = hits.count();
+        double total = h + misses.count();
+        return total == 0 ? 0 : h / total;
+    }
+
+    public long memoryUsed() {
+        synchronized (rings) {
+            return bytes;
+        }
+    }
+
+    public int userCount() {
+        synchronized (rings) {
+            return rings.size();
+        }
+    }
+
+    private void append(Transaction txn) {
+        Long userId = txn.getUserId();
+        synchronized (rings) {
+            writeStamps.incrementAndGet(stripe(userId));
+            // Counts as activity for LRU purposes, like a read
+            Ring ring = rings.get(userId);
+            if (ring == null) {
+                // Not loaded yet; the next read goes to the database and sees this row
+                return;
+            }
+            long before = ring.bytes;
+            ring.push(txn);
+            bytes += ring.bytes - before;
+            evictIfNeeded();
+        }
+    }
+
+    private void remove(Long userId) {
+        Ring old = rings.remove(userId);
+        if (old != null) {
+            bytes -= old.bytes + RING_OVERHEAD;
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Long, Ring>> it = rings.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Ring eldest = it.next().getValue();
+            bytes -= eldest.bytes + RING_OVERHEAD;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static int stripe(Long userId) {
+        return (int) Math.floorMod(userId, (long) WRITE_STRIPES);
+    }
+
+    private static long sizeOf(Transaction txn) {
+        long size = ENTRY_OVERHEAD;
+        if (txn.getTransferId() != null) {
+            size += 48 + txn.getTransferId().length();
+        }
+        if (txn.getReferenceId() != null) {
+            size += 48 + txn.getReferenceId().length();
+        }
+        return size;
+    }
+
+    /**
+     * Fixed-size circular buffer; guarded by the {@code rings} lock.
+     */
+    private static final class Ring {
+
+        private final Transaction[] slots;
+        private int head; // next slot to write
+        private int size;
+        private long bytes;
+        private boolean complete;
+        private final long loadedAt = System.nanoTime();
+
+        Ring(int capacity) {
+            this.slots = new Transaction[capacity];
+        }
+
+        void push(Transaction txn) {
+            Transaction evicted = slots[head];
+            if (evicted != null) {
+                bytes -= sizeOf(evicted);
+                // The oldest row fell off, so older history is no longer all here
+                complete = false;
+            }
+            slots[head] = txn;
+            bytes += sizeOf(txn);
+            head = (head + 1) % slots.length;
+            size = Math.min(size + 1, slots.length);
+        }
+
+        List<Transaction> newestFirst(int limit) {
+            int n = Math.min(limit, size);
+            List<Transaction> result = new ArrayList<>(n);
+            for (int i = 1; i <= n; i++) {
+                result.add(slots[Math.floorMod(head - i, slots.length)]);
+            }
+            return result;
+        }
+    }
+}
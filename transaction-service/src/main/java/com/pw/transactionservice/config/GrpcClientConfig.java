@@ -3,22 +3,106 @@ package com.pw.transactionservice.config;
 import com.walletservice.grpc.WalletServiceGrpc;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.grpc.MetricCollectingClientInterceptor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class GrpcClientConfig {
 
     @Bean
-    public ManagedChannel walletChannel() {
-        return ManagedChannelBuilder
-                .forAddress("wallet-service", 9001) // hostname + port of WalletService
+    public ManagedChannel walletChannel(WalletGrpcProperties props, MeterRegistry meterRegistry) {
+        ManagedChannel channel = ManagedChannelBuilder
+                .forTarget(props.getTarget()) // dns:/// or static:// target of WalletService replicas
                 .usePlaintext()
+                .disableServiceConfigLookUp()
+                .defaultServiceConfig(serviceConfig(props))
+                .keepAliveTime(props.getKeepAliveTime().toMillis(), TimeUnit.MILLISECONDS)
+                .keepAliveTimeout(props.getKeepAliveTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .keepAliveWithoutCalls(props.isKeepAliveWithoutCalls())
+                .idleTimeout(props.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .enableRetry()
+                .intercept(new MetricCollectingClientInterceptor(meterRegistry))
                 .build();
+
+        Gauge.builder("wallet.grpc.channel.state", channel, ch -> ch.getState(false).ordinal())
+                .description("Connectivity state of the wallet-service channel (0=CONNECTING, 1=READY, 2=TRANSIENT_FAILURE, 3=IDLE, 4=SHUTDOWN)")
+                .tag("target", props.getTarget())
+                .register(meterRegistry);
+
+        return channel;
     }
 
     @Bean
     public WalletServiceGrpc.WalletServiceBlockingStub walletStub(ManagedChannel walletChannel) {
         return WalletServiceGrpc.newBlockingStub(walletChannel);
     }
+
+    /**
+     * Builds the gRPC service config: load-balancing policy, a default deadline
+     * for the whole WalletService, per-method deadline overrides, hedging for
+     * read-only RPCs and ABORTED retries for writes.
+     */
+    private Map<String, Object> serviceConfig(WalletGrpcProperties props) {
+        // gRPC rejects duplicate method names, so collect everything per method first
+        Map<String, Map<String, Object>> perMethod = new LinkedHashMap<>();
+        props.getDeadlines().forEach((method, timeout) ->
+                methodEntry(perMethod, method).put("timeout", toGrpcDuration(timeout)));
+
+        WalletGrpcProperties.Hedging hedging = props.getHedging();
+        if (hedging.isEnabled()) {
+            for (String method : hedging.getMethods()) {
+                methodEntry(perMethod, method).put("hedgingPolicy", Map.of(
+                        "maxAttempts", (double) hedging.getMaxAttempts(),
+                        "hedgingDelay", toGrpcDuration(hedging.getDelay()),
+                        "nonFatalStatusCodes", hedging.getNonFatalStatusCodes()));
+            }
+        }
+
+        WalletGrpcProperties.Retry retry = props.getRetry();
+        if (retry.isEnabled()) {
+            for (String method : retry.getMethods()) {
+                methodEntry(perMethod, method).put("retryPolicy", Map.of(
+                        "maxAttempts", (double) retry.getMaxAttempts(),
+                        "initialBackoff", toGrpcDuration(retry.getInitialBackoff()),
+                        "maxBackoff", toGrpcDuration(retry.getMaxBackoff()),
+                        "backoffMultiplier", retry.getBackoffMultiplier(),
+                        "retryableStatusCodes", retry.getRetryableStatusCodes()));
+            }
+        }
+
+        List<Map<String, Object>> methodConfig = new ArrayList<>();
+        methodConfig.add(Map.of(
+                "name", List.of(Map.of("service", WalletServiceGrpc.SERVICE_NAME)),
+                "timeout", toGrpcDuration(props.getDefaultDeadline())));
+        perMethod.forEach((method, config) -> {
+            config.put("name", List.of(Map.of("service", WalletServiceGrpc.SERVICE_NAME, "method", method)));
+            config.putIfAbsent("timeout", toGrpcDuration(props.getDefaultDeadline()));
+            methodConfig.add(config);
+        });
+
+        return Map.of(
+                "loadBalancingConfig", List.of(Map.of(props.getLoadBalancingPolicy(), Map.of())),
+                "methodConfig", methodConfig,
+                "retryThrottling", Map.of(
+                        "maxTokens", (double) props.getRetryThrottling().getMaxTokens(),
+                        "tokenRatio", props.getRetryThrottling().getTokenRatio()));
+    }
+
+    private static Map<String, Object> methodEntry(Map<String, Map<String, Object>> perMethod, String method) {
+        return perMethod.computeIfAbsent(method, m -> new LinkedHashMap<>());
+    }
+
+    private static String toGrpcDuration(Duration d) {
+        return String.format("%d.%09ds", d.getSeconds(), d.getNano());
+    }
 }
@@ -0,0 +1,23 @@
+package com.pw.transactionservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Retention of completed responses for requests carrying an Idempotency-Key.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "idempotency")
+public class IdempotencyProperties {
+
+    // How long a key is honoured (database tier)
+    private Duration ttl = Duration.ofHours(24);
+
+    // In-memory tier for the most recent keys; retries usually arrive within seconds
+    private int hotTierMaxEntries = 10_000;
+    private Duration hotTierTtl = Duration.ofMinutes(10);
+}
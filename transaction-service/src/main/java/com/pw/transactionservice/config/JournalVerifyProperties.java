@@ -0,0 +1,25 @@
+package com.pw.transactionservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Nightly check that the double-entry journal balances.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "journal.verify")
+public class JournalVerifyProperties {
+
+    private boolean enabled = true;
+
+    // entry_id ranges scanned concurrently, one thread and connection each
+    private int partitions = 4;
+
+    // JDBC fetch size of each range's cursor
+    private int fetchSize = 10_000;
+
+    // Unbalanced entry ids kept for the log; the count is always exact
+    private int maxReported = 100;
+}
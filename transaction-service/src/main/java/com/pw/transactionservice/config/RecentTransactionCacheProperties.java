@@ -0,0 +1,28 @@
+package com.pw.transactionservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * In-memory ring of each active user's most recent transactions.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "transactions.recent-cache")
+public class RecentTransactionCacheProperties {
+
+    private boolean enabled = true;
+
+    // Transactions kept per user; history pages up to this size are served from memory
+    private int capacity = 20;
+
+    // Estimated heap used by all rings; least recently used users are evicted past it
+    private DataSize maxMemory = DataSize.ofMegabytes(64);
+
+    // Upper bound on staleness from writes handled by other instances
+    private Duration ttl = Duration.ofMinutes(5);
+}
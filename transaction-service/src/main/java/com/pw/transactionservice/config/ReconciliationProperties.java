@@ -0,0 +1,28 @@
+package com.pw.transactionservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Nightly comparison of ledger net sums against wallet-service balances.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "reconciliation")
+public class ReconciliationProperties {
+
+    private boolean enabled = true;
+
+    // Where mismatch reports are written
+    private String reportDirectory = "./data/reconciliation";
+
+    // user_id ranges compared concurrently; each holds one database connection
+    private int partitions = 8;
+
+    // Wallet balances per ListBalances call, and JDBC fetch size of the ledger cursor
+    private int batchSize = 5_000;
+
+    // Mismatches kept (and rechecked) per run; the count beyond this is still exact
+    private int maxReported = 10_000;
+}
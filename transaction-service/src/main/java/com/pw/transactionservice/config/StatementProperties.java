@@ -0,0 +1,35 @@
+package com.pw.transactionservice.config;
+
+import com.pw.transactionservice.statement.StatementFormat;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Monthly statement run over all users.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "transactions.statements")
+public class StatementProperties {
+
+    private boolean enabled = true;
+
+    // Output root; each month gets its own yyyyMM subdirectory
+    private String directory = "./data/statements";
+
+    private Set<StatementFormat> formats = EnumSet.of(StatementFormat.CSV, StatementFormat.JSON);
+
+    // Users are split into this many partitions (user_id mod partitions), one
+    // thread and one database connection each; keep below the pool size
+    private int partitions = 4;
+
+    // JDBC fetch size while streaming a partition's month
+    private int fetchSize = 5_000;
+
+    // Closing balances are upserted in batches of this size
+    private int balanceBatchSize = 1_000;
+}
@@ -0,0 +1,32 @@
+package com.pw.transactionservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Moving cold months of {@code transactions} out of Postgres into compressed
+ * segment files on local disk.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "transactions.archive")
+public class TransactionArchiveProperties {
+
+    private boolean enabled = true;
+
+    // Where segment files live; must be persistent storage shared by restarts
+    private String directory = "./data/archive";
+
+    // Months strictly older than this are archived
+    private int afterMonths = 12;
+
+    // Rows per compressed row group; a user lookup inflates only the groups it touches
+    private int groupSize = 4096;
+
+    // A month rolls over to a new part file past this size (the reader maps a part as one buffer)
+    private long maxSegmentBytes = 1L << 30;
+
+    // JDBC fetch size while streaming a month out of the database
+    private int fetchSize = 5_000;
+}
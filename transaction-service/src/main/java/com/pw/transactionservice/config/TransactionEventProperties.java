@@ -0,0 +1,38 @@
+package com.pw.transactionservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Publishing of TRANSACTION_RECORDED events to Kafka. Producer tuning
+ * (batching, compression, idempotence) lives under {@code spring.kafka.producer}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "transactions.events")
+public class TransactionEventProperties {
+
+    private boolean enabled = true;
+
+    private String topic = "transaction-events";
+
+    // Events waiting for the sender thread
+    private int queueCapacity = 10_000;
+
+    // How long a committing request waits for queue space before dropping its event
+    private Duration enqueueTimeout = Duration.ofMillis(50);
+
+    // First delay before a failed send is retried; doubles per attempt up to retry-backoff-max
+    private Duration retryBackoff = Duration.ofMillis(200);
+
+    private Duration retryBackoffMax = Duration.ofSeconds(30);
+
+    // Events handed to the producer per wake-up of the sender thread
+    private int drainBatchSize = 500;
+
+    // Time allowed at shutdown to send what is still queued
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,20 @@
+package com.pw.transactionservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Monthly partition maintenance for the {@code transactions} table.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "transactions.partitions")
+public class TransactionPartitionProperties {
+
+    // Partitions created ahead of the current month so inserts never hit the default partition
+    private int monthsAhead = 3;
+
+    // Partitions older than this many months are detached; 0 keeps everything attached
+    private int retentionMonths = 24;
+}
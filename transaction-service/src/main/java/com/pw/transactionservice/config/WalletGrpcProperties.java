@@ -0,0 +1,89 @@
+package com.pw.transactionservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connection settings for the wallet-service gRPC channel.
+ * <p>
+ * {@code target} accepts any gRPC target URI, e.g.
+ * {@code dns:///wallet-service:9001} (all A records of a headless service) or
+ * {@code static://wallet-1:9001,wallet-2:9001} (fixed replica list).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "wallet.grpc")
+public class WalletGrpcProperties {
+
+    private String target = "dns:///wallet-service:9001";
+
+    private String loadBalancingPolicy = "round_robin";
+
+    // --- Connection management ---
+    private Duration keepAliveTime = Duration.ofSeconds(30);
+    private Duration keepAliveTimeout = Duration.ofSeconds(10);
+    private boolean keepAliveWithoutCalls = false;
+    private Duration idleTimeout = Duration.ofMinutes(5);
+
+    // --- Deadlines ---
+    private Duration defaultDeadline = Duration.ofSeconds(5);
+
+    // Per-method overrides keyed by RPC name (e.g. GetWallet=2s)
+    private Map<String, Duration> deadlines = new LinkedHashMap<>();
+
+    // --- Retries / hedging ---
+    private Hedging hedging = new Hedging();
+    private Retry retry = new Retry();
+    private RetryThrottling retryThrottling = new RetryThrottling();
+
+    /**
+     * Hedging for read-only RPCs: if the first attempt has not answered within
+     * {@code delay}, a second copy is sent (usually to another replica) and the
+     * first response wins.
+     */
+    @Getter
+    @Setter
+    public static class Hedging {
+        private boolean enabled = true;
+        // Not GetTransactions: wallet-service never completes it yet, so hedges would just hang
+        private List<String> methods = List.of("GetWallet");
+        private int maxAttempts = 2;
+        private Duration delay = Duration.ofMillis(50);
+        private List<String> nonFatalStatusCodes = List.of("UNAVAILABLE");
+    }
+
+    /**
+     * Retries for writes that failed before being applied (optimistic lock
+     * conflicts surface as ABORTED). gRPC randomises each backoff between zero
+     * and the current ceiling, so retries are jittered.
+     */
+    @Getter
+    @Setter
+    public static class Retry {
+        private boolean enabled = true;
+        private List<String> methods = List.of("Credit", "Debit", "Transfer", "BatchTransfer");
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(50);
+        private Duration maxBackoff = Duration.ofMillis(500);
+        private double backoffMultiplier = 2.0;
+        private List<String> retryableStatusCodes = List.of("ABORTED");
+    }
+
+    /**
+     * Token bucket shared by retries and hedges on this channel. Each failed
+     * attempt costs one token, each success refunds {@code tokenRatio}; once
+     * the bucket drops to half, no further retries or hedges are sent.
+     */
+    @Getter
+    @Setter
+    public static class RetryThrottling {
+        private int maxTokens = 10;
+        private double tokenRatio = 0.1;
+    }
+}
@@ -0,0 +1,47 @@
+package com.pw.transactionservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker and adaptive bulkhead settings for calls to wallet-service.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "wallet.resilience")
+public class WalletResilienceProperties {
+
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private Bulkhead bulkhead = new Bulkhead();
+
+    @Getter
+    @Setter
+    public static class CircuitBreaker {
+        // Number of most recent calls the failure rate is computed over
+        private int slidingWindowSize = 50;
+        // Calls required in the window before the breaker may open
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 0.5;
+        // How long to fail fast before letting trial calls through
+        private Duration openDuration = Duration.ofSeconds(10);
+        private int halfOpenPermittedCalls = 5;
+    }
+
+    /**
+     * AIMD concurrency limit: grows by one while calls succeed at full
+     * utilisation, shrinks by {@code backoffRatio} on failure or slow call.
+     */
+    @Getter
+    @Setter
+    public static class Bulkhead {
+        private int initialLimit = 20;
+        private int minLimit = 2;
+        private int maxLimit = 200;
+        private double backoffRatio = 0.9;
+        // Calls slower than this count as a congestion signal
+        private Duration slowCallThreshold = Duration.ofSeconds(1);
+    }
+}
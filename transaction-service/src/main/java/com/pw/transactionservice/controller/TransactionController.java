@@ -2,16 +2,25 @@ package com.pw.transactionservice.controller;
 
 import com.pw.transactionservice.dto.CreditRequestDTO;
 import com.pw.transactionservice.dto.DebitRequestDTO;
+import com.pw.transactionservice.dto.SplitTransferRequestDTO;
+import com.pw.transactionservice.dto.SplitTransferResponseDTO;
+import com.pw.transactionservice.dto.TransactionSearchCriteria;
+import com.pw.transactionservice.dto.TransactionSearchResponseDTO;
 import com.pw.transactionservice.dto.TransferRequestDTO;
 import com.pw.transactionservice.model.Transaction;
+import com.pw.transactionservice.model.TransactionStatus;
+import com.pw.transactionservice.model.TransactionType;
+import com.pw.transactionservice.service.IdempotencyService;
+import com.pw.transactionservice.service.TransactionSearchService;
 import com.pw.transactionservice.service.TransactionService;
-import com.walletservice.grpc.WalletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Slf4j
@@ -20,50 +29,116 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TransactionController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final TransactionService transactionService;
+    private final IdempotencyService idempotencyService;
+    private final TransactionSearchService transactionSearchService;
 
     /**
-     * Initiates a transfer (debit sender, credit receiver)
+     * Initiates a transfer (debit sender, credit receiver).
+     * Retries carrying the same Idempotency-Key get the original response.
      */
     @PostMapping("/transfer")
-    public ResponseEntity<String> transfer(@Valid @RequestBody TransferRequestDTO request) {
+    public ResponseEntity<String> transfer(@Valid @RequestBody TransferRequestDTO request,
+                                           @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("Transfer request: sender={}, receiver={}, amount={}", request.getSenderId(), request.getReceiverId(), request.getAmount());
-        WalletResponse walletResponse = transactionService.transfer(request.getSenderId(), request.getReceiverId(), request.getAmount());
-        return ResponseEntity.ok(walletResponse.toString());
+        return idempotencyService.execute("transfer", idempotencyKey, request, String.class,
+                () -> transactionService.transfer(request.getSenderId(), request.getReceiverId(), request.getAmount(), idempotencyKey)
+                        .toString());
+    }
+
+    /**
+     * Pays several recipients from one sender (expense splits, payouts).
+     * All legs succeed or fail together.
+     */
+    @PostMapping("/transfer/split")
+    public ResponseEntity<SplitTransferResponseDTO> splitTransfer(@Valid @RequestBody SplitTransferRequestDTO request,
+                                                                  @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        log.info("Split transfer request: sender={}, recipients={}", request.getSenderId(), request.getRecipients().size());
+        return idempotencyService.execute("transfer-split", idempotencyKey, request, SplitTransferResponseDTO.class,
+                () -> transactionService.splitTransfer(request.getSenderId(), request.getRecipients(),
+                        request.getReferenceId(), idempotencyKey));
     }
 
     /**
      * Debit a user’s wallet (e.g. when paying externally)
      */
     @PostMapping("/debit")
-    public ResponseEntity<Transaction> debit(@Valid @RequestBody DebitRequestDTO request) {
-        Transaction txn = transactionService.debit(
-                request.getUserId(),
-                request.getAmount(),
-                request.getReferenceId()
-        );
-        return ResponseEntity.ok(txn);
+    public ResponseEntity<Transaction> debit(@Valid @RequestBody DebitRequestDTO request,
+                                             @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("debit", idempotencyKey, request, Transaction.class,
+                () -> transactionService.debit(
+                        request.getUserId(),
+                        request.getAmount(),
+                        request.getReferenceId(),
+                        idempotencyKey
+                ));
     }
 
     /**
      * Credit a user’s wallet (e.g. refund, top-up)
      */
     @PostMapping("/credit")
-    public ResponseEntity<Transaction> credit(@Valid @RequestBody CreditRequestDTO request) {
-        Transaction txn = transactionService.credit(
-                request.getUserId(),
-                request.getAmount(),
-                request.getReferenceId()
-        );
-        return ResponseEntity.ok(txn);
+    public ResponseEntity<Transaction> credit(@Valid @RequestBody CreditRequestDTO request,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("credit", idempotencyKey, request, Transaction.class,
+                () -> transactionService.credit(
+                        request.getUserId(),
+                        request.getAmount(),
+                        request.getReferenceId(),
+                        idempotencyKey
+                ));
     }
 
     /**
-     * Get all transactions of a user (history)
+     * Get a user's transactions (history) within [from, to); from is required
+     * and to defaults to now.
+     * With only {@code limit} set, returns the latest {@code limit} transactions.
      */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Transaction>> getUserTransactions(@PathVariable Long userId) {
-        return ResponseEntity.ok(transactionService.getTransactionsByUser(userId));
+    public ResponseEntity<List<Transaction>> getUserTransactions(
+            @PathVariable Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer limit) {
+        if (limit != null && from == null && to == null) {
+            return ResponseEntity.ok(transactionService.getRecentTransactions(userId, limit));
+        }
+        List<Transaction> transactions = transactionService.getTransactionsByUser(userId, from, to);
+        if (limit != null && transactions.size() > limit) {
+            transactions = transactions.subList(0, Math.max(limit, 0));
+        }
+        return ResponseEntity.ok(transactions);
+    }
+
+    /**
+     * Support search: any combination of filters, newest first, one keyset page at a time.
+     * totalCount is a planner estimate (totalExact=false) when the match set is large.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<TransactionSearchResponseDTO> search(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) TransactionStatus status,
+            @RequestParam(required = false) Integer minAmount,
+            @RequestParam(required = false) Integer maxAmount,
+            @RequestParam(required = false) String referenceId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        TransactionSearchCriteria criteria = TransactionSearchCriteria.builder()
+                .userId(userId)
+                .from(from)
+                .to(to)
+                .type(type)
+                .status(status)
+                .minAmount(minAmount)
+                .maxAmount(maxAmount)
+                .referenceId(referenceId)
+                .build();
+        return ResponseEntity.ok(transactionSearchService.search(criteria, cursor, limit));
     }
 
     /**
@@ -75,10 +150,13 @@ public class TransactionController {
     }
 
     /**
-     * Get all transactions in the system (for admin/audit)
+     * Get all transactions in the system within [from, to) (for admin/audit);
+     * from is required and to defaults to now
      */
     @GetMapping
-    public ResponseEntity<List<Transaction>> getAllTransactions() {
-        return ResponseEntity.ok(transactionService.getAllTransactions());
+    public ResponseEntity<List<Transaction>> getAllTransactions(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseEntity.ok(transactionService.getAllTransactions(from, to));
     }
 }
@@ -0,0 +1,43 @@
+package com.pw.transactionservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SplitTransferRequestDTO {
+
+    @NotNull(message = "Sender ID is required")
+    private Long senderId;
+
+    @NotEmpty(message = "At least one recipient is required")
+    @Size(max = 500, message = "At most 500 recipients per split transfer")
+    private List<@Valid @NotNull Recipient> recipients;
+
+    // Optional external reference (expense or payout id)
+    private String referenceId;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Recipient {
+
+        @NotNull(message = "Receiver ID is required")
+        private Long receiverId;
+
+        @NotNull(message = "Amount is required")
+        @Min(value = 1, message = "Amount must be at least 1")
+        private Integer amount;
+    }
+}
@@ -0,0 +1,24 @@
+package com.pw.transactionservice.dto;
+
+import com.pw.transactionservice.model.Transaction;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SplitTransferResponseDTO {
+
+    private String transferId;
+
+    private Integer totalAmount;
+
+    // Sender balance after all legs
+    private Integer senderBalance;
+
+    // One DEBIT (sender) and one CREDIT (recipient) per recipient, all sharing transferId
+    private List<Transaction> legs;
+}
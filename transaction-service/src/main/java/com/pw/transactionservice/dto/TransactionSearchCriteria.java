@@ -0,0 +1,34 @@
+package com.pw.transactionservice.dto;
+
+import com.pw.transactionservice.model.TransactionStatus;
+import com.pw.transactionservice.model.TransactionType;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters for the transaction search; every field is optional and null
+ * fields are left out of the query.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionSearchCriteria {
+
+    private Long userId;
+
+    // created_at range, [from, to)
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    private TransactionType type;
+    private TransactionStatus status;
+
+    // Inclusive amount bounds
+    private Integer minAmount;
+    private Integer maxAmount;
+
+    private String referenceId;
+}
@@ -0,0 +1,26 @@
+package com.pw.transactionservice.dto;
+
+import com.pw.transactionservice.model.Transaction;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionSearchResponseDTO {
+
+    // Newest first
+    private List<Transaction> items;
+
+    // Pass back as ?cursor= for the next page; null on the last page
+    private String nextCursor;
+
+    // Matching rows across all pages
+    private long totalCount;
+
+    // False when totalCount is the planner's estimate rather than COUNT(*)
+    private boolean totalExact;
+}
@@ -0,0 +1,10 @@
+package com.pw.transactionservice.event;
+
+import com.pw.transactionservice.model.Transaction;
+
+/**
+ * In-process notification that a transaction leg was persisted. Listeners
+ * use {@code @TransactionalEventListener}, so they only see committed legs.
+ */
+public record TransactionRecordedEvent(Transaction transaction) {
+}
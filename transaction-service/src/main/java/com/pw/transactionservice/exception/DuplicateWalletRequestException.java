@@ -0,0 +1,11 @@
+package com.pw.transactionservice.exception;
+
+/**
+ * Thrown when wallet-service has already applied a transfer with the same
+ * requestId, so this call moved no money.
+ */
+public class DuplicateWalletRequestException extends RuntimeException {
+    public DuplicateWalletRequestException(String requestId) {
+        super("Transfer request " + requestId + " was already processed");
+    }
+}
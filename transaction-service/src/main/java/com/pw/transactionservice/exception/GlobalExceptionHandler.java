@@ -1,11 +1,13 @@
 package com.pw.transactionservice.exception;
 
 import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -24,6 +26,16 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
     }
 
+    // 3a. Wallet circuit open / bulkhead full (fail fast, client may retry later)
+    @ExceptionHandler(WalletServiceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleWalletUnavailable(WalletServiceUnavailableException ex) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE);
+        if (ex.getRetryAfter() != null && !ex.getRetryAfter().isZero()) {
+            builder.header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())));
+        }
+        return builder.body(new ErrorResponse(false, "WALLET_SERVICE_UNAVAILABLE", ex.getMessage()));
+    }
+
     // 3. Wallet gRPC failure
     @ExceptionHandler(WalletServiceException.class)
     public ResponseEntity<ErrorResponse> handleWalletService(WalletServiceException ex) {
@@ -31,6 +43,27 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
     }
 
+    // 3b. Idempotency-Key reused while the first request is running or its outcome is unknown
+    @ExceptionHandler(IdempotencyKeyInUseException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyInUse(IdempotencyKeyInUseException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ErrorResponse(false, "IDEMPOTENCY_KEY_IN_USE", ex.getMessage()));
+    }
+
+    // 3c. Idempotency-Key reused with a different request body
+    @ExceptionHandler(IdempotencyKeyMismatchException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyMismatch(IdempotencyKeyMismatchException ex) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(new ErrorResponse(false, "IDEMPOTENCY_KEY_MISMATCH", ex.getMessage()));
+    }
+
+    // 3d. Wallet-service already applied a transfer with this requestId
+    @ExceptionHandler(DuplicateWalletRequestException.class)
+    public ResponseEntity<ErrorResponse> handleDuplicateWalletRequest(DuplicateWalletRequestException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ErrorResponse(false, "DUPLICATE_REQUEST", ex.getMessage()));
+    }
+
     // 4. Database access errors
     @ExceptionHandler(DataAccessException.class)
     public ResponseEntity<ErrorResponse> handleDataAccess(DataAccessException ex) {
@@ -39,7 +72,8 @@ public class GlobalExceptionHandler {
     }
 
     // 5. Invalid input / argument errors
-    @ExceptionHandler({IllegalArgumentException.class, MethodArgumentNotValidException.class})
+    @ExceptionHandler({IllegalArgumentException.class, MethodArgumentNotValidException.class,
+            MethodArgumentTypeMismatchException.class})
     public ResponseEntity<ErrorResponse> handleInvalidArguments(Exception ex) {
         ErrorResponse response = new ErrorResponse(false, "Invalid input: " + ex.getMessage(), null);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
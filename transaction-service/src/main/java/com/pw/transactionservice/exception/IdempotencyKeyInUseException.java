@@ -0,0 +1,8 @@
+package com.pw.transactionservice.exception;
+
+public class IdempotencyKeyInUseException extends RuntimeException {
+    public IdempotencyKeyInUseException(String key) {
+        super("A request with Idempotency-Key " + key + " is already in progress or ended with an unknown outcome;"
+                + " check the transaction history before retrying with a new key");
+    }
+}
@@ -0,0 +1,7 @@
+package com.pw.transactionservice.exception;
+
+public class IdempotencyKeyMismatchException extends RuntimeException {
+    public IdempotencyKeyMismatchException(String key) {
+        super("Idempotency-Key " + key + " was already used for a different request");
+    }
+}
@@ -0,0 +1,21 @@
+package com.pw.transactionservice.exception;
+
+import java.time.Duration;
+
+/**
+ * Thrown without calling wallet-service when the circuit breaker is open or
+ * the bulkhead is full.
+ */
+public class WalletServiceUnavailableException extends WalletServiceException {
+
+    private final Duration retryAfter;
+
+    public WalletServiceUnavailableException(String message, Duration retryAfter) {
+        super(message, null);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,91 @@
+package com.pw.transactionservice.grpc;
+
+import com.pw.transactionservice.archive.TransactionArchive;
+import com.pw.transactionservice.dto.TransactionSearchCriteria;
+import com.pw.transactionservice.exception.TransactionNotFoundException;
+import com.pw.transactionservice.repository.TransactionSearchRepository;
+import com.pw.transactionservice.service.TransactionService;
+import com.transactionservice.grpc.GetTransactionRequest;
+import com.transactionservice.grpc.StreamUserTransactionsRequest;
+import com.transactionservice.grpc.TransactionRecord;
+import com.transactionservice.grpc.TransactionServiceGrpc;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.dao.DataAccessException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * gRPC API for internal consumers; same data as the REST endpoints, in
+ * protobuf and, for history, streamed with flow control.
+ */
+@Slf4j
+@GrpcService
+public class TransactionGrpcService extends TransactionServiceGrpc.TransactionServiceImplBase {
+
+    private final TransactionService transactionService;
+    private final TransactionSearchRepository searchRepository;
+    private final TransactionArchive transactionArchive;
+
+    public TransactionGrpcService(TransactionService transactionService,
+                                  TransactionSearchRepository searchRepository,
+                                  TransactionArchive transactionArchive) {
+        this.transactionService = transactionService;
+        this.searchRepository = searchRepository;
+        this.transactionArchive = transactionArchive;
+    }
+
+    @Override
+    public void getTransaction(GetTransactionRequest request, StreamObserver<TransactionRecord> responseObserver) {
+        try {
+            TransactionRecord record = TransactionMapper.toRecord(
+                    transactionService.getTransactionById(request.getTransactionId()));
+            responseObserver.onNext(record);
+            responseObserver.onCompleted();
+
+        } catch (TransactionNotFoundException e) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asRuntimeException());
+
+        } catch (DataAccessException e) {
+            log.error("Database error while fetching transaction {}: {}", request.getTransactionId(), e.getMessage(), e);
+            responseObserver.onError(Status.UNAVAILABLE.withDescription("Failed to fetch transaction").asRuntimeException());
+        }
+    }
+
+    @Override
+    public void streamUserTransactions(StreamUserTransactionsRequest request,
+                                       StreamObserver<TransactionRecord> responseObserver) {
+        TransactionSearchCriteria criteria;
+        try {
+            if (request.getLimit() < 0) {
+                throw new IllegalArgumentException("limit must not be negative");
+            }
+            criteria = TransactionSearchCriteria.builder()
+                    .userId(request.getUserId())
+                    .from(parse(request.getFrom()))
+                    .to(parse(request.getTo()))
+                    .build();
+            if (criteria.getFrom() != null && criteria.getTo() != null && !criteria.getFrom().isBefore(criteria.getTo())) {
+                throw new IllegalArgumentException("from must be before to");
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+
+        ServerCallStreamObserver<TransactionRecord> call = (ServerCallStreamObserver<TransactionRecord>) responseObserver;
+        UserTransactionStream stream = new UserTransactionStream(call, searchRepository, transactionArchive,
+                criteria, request.getLimit());
+        call.setOnCancelHandler(stream::cancel);
+        call.setOnReadyHandler(stream::drain);
+        stream.drain();
+    }
+
+    private static LocalDateTime parse(String value) {
+        return value.isEmpty() ? null : LocalDateTime.parse(value);
+    }
+}
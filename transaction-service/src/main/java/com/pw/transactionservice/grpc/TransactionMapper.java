@@ -0,0 +1,30 @@
+package com.pw.transactionservice.grpc;
+
+import com.pw.transactionservice.model.Transaction;
+import com.transactionservice.grpc.TransactionRecord;
+import com.transactionservice.grpc.TransactionStatus;
+import com.transactionservice.grpc.TransactionType;
+
+final class TransactionMapper {
+
+    private TransactionMapper() {
+    }
+
+    static TransactionRecord toRecord(Transaction txn) {
+        TransactionRecord.Builder builder = TransactionRecord.newBuilder()
+                .setId(txn.getId())
+                .setUserId(txn.getUserId())
+                .setAmount(txn.getAmount())
+                .setType(TransactionType.valueOf(txn.getType().name()))
+                .setStatus(TransactionStatus.valueOf(txn.getStatus().name()))
+                .setTransferId(txn.getTransferId())
+                .setCreatedAt(txn.getCreatedAt().toString());
+        if (txn.getReferenceId() != null) {
+            builder.setReferenceId(txn.getReferenceId());
+        }
+        if (txn.getUpdatedAt() != null) {
+            builder.setUpdatedAt(txn.getUpdatedAt().toString());
+        }
+        return builder.build();
+    }
+}
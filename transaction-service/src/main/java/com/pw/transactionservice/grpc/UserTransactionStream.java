@@ -0,0 +1,149 @@
+package com.pw.transactionservice.grpc;
+
+import com.pw.transactionservice.archive.TransactionArchive;
+import com.pw.transactionservice.dto.TransactionSearchCriteria;
+import com.pw.transactionservice.model.Transaction;
+import com.pw.transactionservice.repository.TransactionSearchRepository;
+import com.transactionservice.grpc.TransactionRecord;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One StreamUserTransactions call. Rows are read a keyset page at a time and
+ * sent only while the transport reports the client ready. When it is not,
+ * drain() returns and the call's onReady handler resumes from the saved
+ * (createdAt, id) position, so a slow reader holds one page and no database
+ * connection.
+ * <p>
+ * Live rows come first, then archived months, newest first. The archive is
+ * read one month at a time, when the previous one has been sent, so only
+ * that month of the user's rows is held.
+ */
+@Slf4j
+final class UserTransactionStream {
+
+    static final int PAGE_SIZE = 500;
+
+    private final ServerCallStreamObserver<TransactionRecord> call;
+    private final TransactionSearchRepository searchRepository;
+    private final TransactionArchive archive;
+    private final TransactionSearchCriteria criteria;
+    private final long limit;
+
+    private final ArrayDeque<Transaction> buffer = new ArrayDeque<>(PAGE_SIZE);
+    private LocalDateTime afterCreatedAt;
+    private Long afterId;
+    private boolean liveExhausted;
+    // Archived months still to read, newest first; null until the live rows are sent
+    private Iterator<YearMonth> archiveMonths;
+    private long sent;
+    private boolean done;
+
+    // Live rows that may also sit in an archived month (a month is briefly in
+    // both places while being archived); those are skipped on the archive side
+    private final Set<Long> liveIdsInArchivedRange = new HashSet<>();
+    private final LocalDateTime archivedBefore;
+
+    UserTransactionStream(ServerCallStreamObserver<TransactionRecord> call,
+                          TransactionSearchRepository searchRepository,
+                          TransactionArchive archive,
+                          TransactionSearchCriteria criteria,
+                          long limit) {
+        this.call = call;
+        this.searchRepository = searchRepository;
+        this.archive = archive;
+        this.criteria = criteria;
+        this.limit = limit;
+        // One day of slack for the JDBC time zone shift around month edges
+        this.archivedBefore = archive.latestMonth()
+                .map(m -> m.plusMonths(1).atDay(1).atStartOfDay().plusDays(1))
+                .orElse(null);
+    }
+
+    synchronized void cancel() {
+        done = true;
+    }
+
+    /**
+     * Sends until the stream is finished or the client stops being ready.
+     */
+    synchronized void drain() {
+        try {
+            while (!done && call.isReady()) {
+                Transaction next = next();
+                if (next == null) {
+                    done = true;
+                    call.onCompleted();
+                    return;
+                }
+                call.onNext(TransactionMapper.toRecord(next));
+                sent++;
+            }
+        } catch (DataAccessException | UncheckedIOException e) {
+            done = true;
+            log.error("Streaming transactions for user {} failed: {}", criteria.getUserId(), e.getMessage(), e);
+            call.onError(Status.UNAVAILABLE.withDescription("Failed to read transactions").asRuntimeException());
+        }
+    }
+
+    private Transaction next() {
+        if (limit > 0 && sent >= limit) {
+            return null;
+        }
+        if (buffer.isEmpty() && !liveExhausted) {
+            fetchLivePage();
+        }
+        if (buffer.isEmpty() && liveExhausted) {
+            if (archiveMonths == null) {
+                archiveMonths = archive.months().iterator();
+            }
+            while (buffer.isEmpty() && archiveMonths.hasNext()) {
+                loadArchivedMonth(archiveMonths.next());
+            }
+        }
+        return buffer.poll();
+    }
+
+    private void fetchLivePage() {
+        List<Transaction> page = searchRepository.search(criteria, afterCreatedAt, afterId, PAGE_SIZE);
+        if (page.size() < PAGE_SIZE) {
+            liveExhausted = true;
+        }
+        if (!page.isEmpty()) {
+            Transaction last = page.get(page.size() - 1);
+            afterCreatedAt = last.getCreatedAt();
+            afterId = last.getId();
+        }
+        for (Transaction txn : page) {
+            if (archivedBefore != null && txn.getCreatedAt().isBefore(archivedBefore)) {
+                liveIdsInArchivedRange.add(txn.getId());
+            }
+        }
+        buffer.addAll(page);
+    }
+
+    private void loadArchivedMonth(YearMonth month) {
+        LocalDateTime from = criteria.getFrom() != null ? criteria.getFrom() : LocalDateTime.MIN;
+        LocalDateTime to = criteria.getTo() != null ? criteria.getTo() : LocalDateTime.MAX;
+        // Skips months outside the range without touching their segments
+        if (!month.atDay(1).atStartOfDay().isBefore(to) || month.plusMonths(1).atDay(1).atStartOfDay().isBefore(from)) {
+            return;
+        }
+        archive.findByUserId(criteria.getUserId(), month, from, to).stream()
+                .filter(t -> !liveIdsInArchivedRange.contains(t.getId()))
+                .sorted(Comparator.comparing(Transaction::getCreatedAt).thenComparing(Transaction::getId).reversed())
+                .forEach(buffer::add);
+    }
+}
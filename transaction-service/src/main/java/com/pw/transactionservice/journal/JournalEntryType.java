@@ -0,0 +1,8 @@
+package com.pw.transactionservice.journal;
+
+public enum JournalEntryType {
+    TOP_UP,     // External money in: TOP_UP system account -> user
+    PAYOUT,     // Money out: user -> PAYOUT system account
+    TRANSFER,   // User -> user
+    SPLIT       // One user -> several users
+}
@@ -0,0 +1,16 @@
+package com.pw.transactionservice.journal;
+
+/**
+ * One line of a journal entry. {@code amount} is signed: positive adds to the
+ * account, negative takes from it. The postings of an entry sum to zero.
+ */
+public record JournalPosting(long accountId, long amount) {
+
+    public static JournalPosting user(Long userId, long amount) {
+        return new JournalPosting(userId, amount);
+    }
+
+    public static JournalPosting system(SystemAccount account, long amount) {
+        return new JournalPosting(account.accountId(), amount);
+    }
+}
@@ -0,0 +1,95 @@
+package com.pw.transactionservice.journal;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Double-entry journal alongside the {@code transactions} legs. Every money
+ * movement is one entry, keyed by its transferId, whose postings sum to zero.
+ * <p>
+ * An entry and all of its postings are written by a single statement (a
+ * data-modifying CTE followed by one multi-row INSERT), inside the caller's
+ * transaction. The balance is checked here and again by a statement-level
+ * trigger in schema.sql, so an unbalanced entry can never be committed.
+ */
+@Service
+public class JournalService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JournalService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Money added to a user's wallet from outside the platform.
+     */
+    public void recordTopUp(Long userId, Integer amount, String transferId, String referenceId) {
+        post(JournalEntryType.TOP_UP, transferId, referenceId, List.of(
+                JournalPosting.system(SystemAccount.TOP_UP, -amount),
+                JournalPosting.user(userId, amount)));
+    }
+
+    /**
+     * Money taken out of a user's wallet and paid out of the platform.
+     */
+    public void recordPayout(Long userId, Integer amount, String transferId, String referenceId) {
+        post(JournalEntryType.PAYOUT, transferId, referenceId, List.of(
+                JournalPosting.user(userId, -amount),
+                JournalPosting.system(SystemAccount.PAYOUT, amount)));
+    }
+
+    public void recordTransfer(Long senderId, Long receiverId, Integer amount, String transferId) {
+        post(JournalEntryType.TRANSFER, transferId, null, List.of(
+                JournalPosting.user(senderId, -amount),
+                JournalPosting.user(receiverId, amount)));
+    }
+
+    /**
+     * Writes one balanced entry.
+     *
+     * @throws IllegalStateException if the postings do not sum to zero
+     */
+    public void post(JournalEntryType type, String transferId, String referenceId, List<JournalPosting> postings) {
+        if (postings.size() < 2) {
+            throw new IllegalStateException("Journal entry " + transferId + " needs at least two postings");
+        }
+        long sum = 0;
+        for (JournalPosting posting : postings) {
+            if (posting.amount() == 0) {
+                throw new IllegalStateException("Journal entry " + transferId + " has a zero posting");
+            }
+            sum += posting.amount();
+        }
+        if (sum != 0) {
+            throw new IllegalStateException("Journal entry " + transferId + " is unbalanced by " + sum);
+        }
+
+        StringBuilder sql = new StringBuilder("""
+                WITH entry AS (
+                    INSERT INTO journal_entries (transfer_id, entry_type, reference_id)
+                    VALUES (?, ?, ?)
+                    RETURNING id
+                )
+                INSERT INTO journal_postings (entry_id, line, account_id, amount)
+                SELECT entry.id, p.line, p.account_id, p.amount
+                FROM entry, (VALUES\s""");
+        List<Object> args = new ArrayList<>(3 + postings.size() * 3);
+        args.add(transferId);
+        args.add(type.name());
+        args.add(referenceId);
+        for (int i = 0; i < postings.size(); i++) {
+            JournalPosting posting = postings.get(i);
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+            args.add(i + 1);
+            args.add(posting.accountId());
+            args.add(posting.amount());
+        }
+        sql.append(") AS p (line, account_id, amount)");
+
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+}
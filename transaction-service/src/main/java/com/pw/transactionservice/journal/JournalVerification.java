@@ -0,0 +1,22 @@
+package com.pw.transactionservice.journal;
+
+import java.util.List;
+
+/**
+ * Outcome of one {@link JournalVerifier} pass.
+ *
+ * @param globalSum         sum of every posting; zero when the journal balances
+ * @param unbalancedEntries entries whose own postings do not sum to zero
+ * @param unbalancedSample  some of those entry ids
+ */
+public record JournalVerification(long entries,
+                                  long postings,
+                                  long globalSum,
+                                  long unbalancedEntries,
+                                  List<Long> unbalancedSample,
+                                  long elapsedMillis) {
+
+    public boolean balanced() {
+        return globalSum == 0 && unbalancedEntries == 0;
+    }
+}
@@ -0,0 +1,187 @@
+package com.pw.transactionservice.journal;
+
+import com.pw.transactionservice.config.JournalVerifyProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks the journal invariants over the whole {@code journal_postings}
+ * table: every entry sums to zero, and so does the table as a whole.
+ * <p>
+ * The entry_id range is cut into {@code partitions} slices scanned
+ * concurrently. Each slice is a single pass over a cursor in primary-key
+ * order, so an entry's postings arrive together and only the running sums
+ * are kept in memory. Slices never split an entry, so their results just add up.
+ */
+@Slf4j
+@Service
+public class JournalVerifier {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JournalVerifyProperties props;
+
+    private final AtomicLong lastUnbalanced = new AtomicLong();
+    private final AtomicLong lastGlobalSum = new AtomicLong();
+
+    public JournalVerifier(JdbcTemplate jdbcTemplate,
+                           DataSource dataSource,
+                           TransactionTemplate transactionTemplate,
+                           JournalVerifyProperties props,
+                           MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.props = props;
+
+        // Same DataSource, so it joins the surrounding transaction; Postgres
+        // only honours the fetch size inside one
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        cursorTemplate.setFetchSize(props.getFetchSize());
+
+        Gauge.builder("journal.verify.unbalanced.entries", lastUnbalanced, AtomicLong::get)
+                .description("Unbalanced journal entries found by the last verification")
+                .register(meterRegistry);
+        Gauge.builder("journal.verify.global.sum", lastGlobalSum, AtomicLong::get)
+                .description("Sum of all journal postings at the last verification; should be 0")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${journal.verify.cron:0 0 3 * * *}")
+    public void scheduledVerify() {
+        if (props.isEnabled()) {
+            verify();
+        }
+    }
+
+    public JournalVerification verify() {
+        long start = System.nanoTime();
+        long[] bounds = jdbcTemplate.queryForObject(
+                "SELECT coalesce(min(entry_id), 0), coalesce(max(entry_id), -1) FROM journal_postings",
+                (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        long min = bounds[0];
+        long max = bounds[1];
+
+        int partitions = (int) Math.max(1, Math.min(props.getPartitions(), max - min + 1));
+        long span = (max - min + 1 + partitions - 1) / partitions;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(partitions,
+                r -> new Thread(r, "journal-verify-" + threadIndex.getAndIncrement()));
+        Slice total = new Slice(props.getMaxReported());
+        try {
+            List<Future<Slice>> slices = new ArrayList<>(partitions);
+            for (int p = 0; p < partitions; p++) {
+                long from = min + p * span;
+                long to = Math.min(max, from + span - 1);
+                slices.add(pool.submit(() -> scan(from, to)));
+            }
+            for (Future<Slice> slice : slices) {
+                total.add(slice.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Journal verification failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Journal verification interrupted", e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        JournalVerification result = new JournalVerification(total.entries, total.postings, total.globalSum,
+                total.unbalanced, List.copyOf(total.sample), (System.nanoTime() - start) / 1_000_000);
+        lastUnbalanced.set(result.unbalancedEntries());
+        lastGlobalSum.set(result.globalSum());
+        if (result.balanced()) {
+            log.info("Journal balanced: {} entries, {} postings checked in {} ms",
+                    result.entries(), result.postings(), result.elapsedMillis());
+        } else {
+            log.error("Journal NOT balanced: global sum {}, {} unbalanced entries (e.g. {}) out of {}",
+                    result.globalSum(), result.unbalancedEntries(), result.unbalancedSample(), result.entries());
+        }
+        return result;
+    }
+
+    private Slice scan(long from, long to) {
+        Slice slice = new Slice(props.getMaxReported());
+        transactionTemplate.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            cursorTemplate.query(
+                    "SELECT entry_id, amount FROM journal_postings WHERE entry_id BETWEEN ? AND ? ORDER BY entry_id",
+                    (RowCallbackHandler) rs -> slice.accept(rs.getLong(1), rs.getLong(2)),
+                    from, to);
+        });
+        slice.finishEntry();
+        return slice;
+    }
+
+    /**
+     * Running sums of one slice; confined to the thread scanning it.
+     */
+    private static final class Slice {
+
+        private final int maxReported;
+        private final List<Long> sample = new ArrayList<>();
+        private long entries;
+        private long postings;
+        private long globalSum;
+        private long unbalanced;
+
+        private long currentEntry = Long.MIN_VALUE;
+        private long entrySum;
+
+        Slice(int maxReported) {
+            this.maxReported = maxReported;
+        }
+
+        void accept(long entryId, long amount) {
+            if (entryId != currentEntry) {
+                finishEntry();
+                currentEntry = entryId;
+                entries++;
+            }
+            entrySum += amount;
+            globalSum += amount;
+            postings++;
+        }
+
+        void finishEntry() {
+            if (currentEntry != Long.MIN_VALUE && entrySum != 0) {
+                unbalanced++;
+                if (sample.size() < maxReported) {
+                    sample.add(currentEntry);
+                }
+            }
+            currentEntry = Long.MIN_VALUE;
+            entrySum = 0;
+        }
+
+        void add(Slice other) {
+            entries += other.entries;
+            postings += other.postings;
+            globalSum += other.globalSum;
+            unbalanced += other.unbalanced;
+            for (Long id : other.sample) {
+                if (sample.size() < maxReported) {
+                    sample.add(id);
+                }
+            }
+        }
+    }
+}
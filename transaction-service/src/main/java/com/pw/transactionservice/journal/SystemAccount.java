@@ -0,0 +1,24 @@
+package com.pw.transactionservice.journal;
+
+/**
+ * Contra accounts for money entering and leaving the platform. Postings use
+ * a single account_id column: positive ids are user accounts (the userId),
+ * these reserved negative ids are system accounts.
+ */
+public enum SystemAccount {
+
+    // Funding side of credit (top-up) calls
+    TOP_UP(-1),
+    // Receiving side of debit (payout/purchase) calls
+    PAYOUT(-2);
+
+    private final long accountId;
+
+    SystemAccount(long accountId) {
+        this.accountId = accountId;
+    }
+
+    public long accountId() {
+        return accountId;
+    }
+}
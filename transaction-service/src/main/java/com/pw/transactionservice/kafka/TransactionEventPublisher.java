@@ -0,0 +1,264 @@
+package com.pw.transactionservice.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pw.transactionservice.config.TransactionEventProperties;
+import com.pw.transactionservice.event.TransactionRecordedEvent;
+import com.pw.transactionservice.model.EventEnvelope;
+import com.pw.transactionservice.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes one TRANSACTION_RECORDED event per committed transaction leg.
+ * <p>
+ * The request thread only puts the leg on a bounded queue; a single sender
+ * thread serializes and hands events to the Kafka producer, which batches and
+ * compresses them per partition. When Kafka falls behind, the producer buffer
+ * fills, the sender blocks and the queue fills up. A committing request then
+ * waits at most {@code enqueue-timeout} for space and drops the event
+ * (counted and logged) rather than holding its thread and JDBC connection
+ * while the broker is down.
+ * <p>
+ * A send that fails, synchronously or at the broker, is retried with
+ * exponential backoff until it is acknowledged. While a queue's worth of
+ * retries is pending the sender takes no new events, so the queue fills and
+ * further events are dropped. Events that cannot be serialized, that find
+ * the queue full, or that are still queued when shutdown times out are lost
+ * (and counted).
+ * <p>
+ * Events are keyed by userId so one user's events stay ordered, and the
+ * eventId is derived from the transaction id so redelivery is deduplicated
+ * downstream.
+ */
+@Slf4j
+@Service
+public class TransactionEventPublisher {
+
+    static final String EVENT_TYPE = "TRANSACTION_RECORDED";
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionEventProperties props;
+    private final BlockingQueue<Pending> queue;
+    private final DelayQueue<Retry> retries = new DelayQueue<>();
+
+    private final Counter enqueued;
+    private final Counter droppedQueueFull;
+    private final Counter droppedShutdown;
+    private final Counter published;
+    private final Counter failed;
+    private final Counter retried;
+    private final Timer publishLatency;
+
+    private volatile boolean running;
+    private Thread sender;
+
+    public TransactionEventPublisher(KafkaTemplate<String, String> kafkaTemplate,
+                                     ObjectMapper objectMapper,
+                                     TransactionEventProperties props,
+                                     MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.props = props;
+        this.queue = new ArrayBlockingQueue<>(props.getQueueCapacity());
+
+        Gauge.builder("transactions.events.queue.size", queue, BlockingQueue::size)
+                .description("Events waiting to be handed to the Kafka producer")
+                .register(meterRegistry);
+        Gauge.builder("transactions.events.queue.remaining", queue, BlockingQueue::remainingCapacity)
+                .register(meterRegistry);
+        Gauge.builder("transactions.events.retries.pending", retries, DelayQueue::size)
+                .description("Failed sends waiting to be retried")
+                .register(meterRegistry);
+        this.enqueued = Counter.builder("transactions.events.enqueued").register(meterRegistry);
+        this.droppedQueueFull = Counter.builder("transactions.events.dropped")
+                .description("Events not published: queue full past enqueue-timeout, or unsent at shutdown")
+                .tag("reason", "queue_full").register(meterRegistry);
+        this.droppedShutdown = Counter.builder("transactions.events.dropped")
+                .description("Events not published: queue full past enqueue-timeout, or unsent at shutdown")
+                .tag("reason", "shutdown").register(meterRegistry);
+        this.published = Counter.builder("transactions.events.published").register(meterRegistry);
+        this.failed = Counter.builder("transactions.events.failed")
+                .description("Events that could not be serialized").register(meterRegistry);
+        this.retried = Counter.builder("transactions.events.retried").register(meterRegistry);
+        this.publishLatency = Timer.builder("transactions.events.latency")
+                .description("Time from commit to broker acknowledgement")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!props.isEnabled()) {
+            return;
+        }
+        running = true;
+        sender = new Thread(this::sendLoop, "txn-event-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Sends what is still queued (bounded by {@code shutdown-timeout}) and flushes the producer.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (sender == null) {
+            return;
+        }
+        running = false;
+        sender.join(props.getShutdownTimeout().toMillis());
+        if (sender.isAlive()) {
+            sender.interrupt();
+            int unsent = queue.size() + retries.size();
+            droppedShutdown.increment(unsent);
+            log.warn("Stopped with {} transaction events unsent", unsent);
+        }
+        kafkaTemplate.flush();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransactionRecorded(TransactionRecordedEvent event) {
+        if (!running) {
+            return;
+        }
+        Pending pending = new Pending(event.transaction(), System.nanoTime());
+        boolean queued;
+        try {
+            queued = queue.offer(pending, props.getEnqueueTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            droppedQueueFull.increment();
+            log.error("Dropped {} for transaction {}: event queue full", EVENT_TYPE, pending.transaction().getId());
+            return;
+        }
+        enqueued.increment();
+    }
+
+    private void sendLoop() {
+        List<Pending> batch = new ArrayList<>(props.getDrainBatchSize());
+        while (running || !queue.isEmpty() || !retries.isEmpty()) {
+            try {
+                for (Retry due = retries.poll(); due != null; due = retries.poll()) {
+                    send(due.pending(), due.attempt());
+                }
+                // Too many unacknowledged events: leave new ones queued; once full, writers drop
+                if (retries.size() >= props.getQueueCapacity()) {
+                    Thread.sleep(50);
+                    continue;
+                }
+                Pending first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, props.getDrainBatchSize() - 1);
+                for (Pending pending : batch) {
+                    send(pending, 0);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(Pending pending, int attempt) {
+        Transaction txn = pending.transaction();
+        String message;
+        try {
+            message = objectMapper.writeValueAsString(toEnvelope(txn));
+        } catch (JsonProcessingException e) {
+            failed.increment();
+            log.error("Failed to serialize event for transaction {}: {}", txn.getId(), e.getMessage(), e);
+            return;
+        }
+
+        try {
+            kafkaTemplate.send(props.getTopic(), String.valueOf(txn.getUserId()), message)
+                    .whenComplete((result, ex) -> {
+                        if (ex == null) {
+                            published.increment();
+                            publishLatency.record(System.nanoTime() - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+                        } else {
+                            retry(pending, attempt, ex);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            // e.g. producer buffer still full after max.block.ms; the rest of the batch is still tried
+            retry(pending, attempt, e);
+        }
+    }
+
+    private void retry(Pending pending, int attempt, Throwable cause) {
+        long backoff = Math.min(props.getRetryBackoffMax().toNanos(),
+                props.getRetryBackoff().toNanos() << Math.min(attempt, 20));
+        retries.add(new Retry(pending, attempt + 1, System.nanoTime() + backoff));
+        retried.increment();
+        log.warn("Failed to publish {} for transaction {} (attempt {}), retrying in {} ms: {}", EVENT_TYPE,
+                pending.transaction().getId(), attempt + 1, backoff / 1_000_000, cause.getMessage());
+    }
+
+    private static EventEnvelope toEnvelope(Transaction txn) {
+        // Analytics keeps these as the ledger's view of each leg (raw_events); its money
+        // summaries count the wallet events for the same legs
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", txn.getType().name());
+        payload.put("status", txn.getStatus().name());
+        payload.put("amount", txn.getAmount());
+        payload.put("transactionId", txn.getId());
+        payload.put("transferId", txn.getTransferId());
+        if (txn.getReferenceId() != null) {
+            payload.put("referenceId", txn.getReferenceId());
+        }
+
+        return EventEnvelope.builder()
+                .eventType(EVENT_TYPE)
+                .eventId(UUID.nameUUIDFromBytes(("transaction:" + txn.getId()).getBytes(StandardCharsets.UTF_8)).toString())
+                .timestamp(txn.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant())
+                .userId(txn.getUserId())
+                .payload(payload)
+                .build();
+    }
+
+    private record Pending(Transaction transaction, long enqueuedAt) {
+    }
+
+    private record Retry(Pending pending, int attempt, long dueNanos) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Retry) other).dueNanos);
+        }
+    }
+}
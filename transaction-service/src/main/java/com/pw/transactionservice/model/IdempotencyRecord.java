@@ -0,0 +1,47 @@
+package com.pw.transactionservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Response for a request sent with an Idempotency-Key, replayed verbatim
+ * when the client retries with the same key. While the first request is
+ * still executing the record is pending: no status code or body yet.
+ */
+@Entity
+@Table(name = "idempotency_records",
+        indexes = @Index(name = "idx_idempotency_expires_at", columnList = "expiresAt"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+
+    // "<operation>:<Idempotency-Key>"
+    @Id
+    @Column(length = 200)
+    private String id;
+
+    // SHA-256 of the request body, detects a key reused for a different request
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    // null while pending
+    private Integer statusCode;
+
+    @Column(columnDefinition = "text")
+    private String responseBody;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    public boolean isPending() {
+        return statusCode == null;
+    }
+}
@@ -1,5 +1,6 @@
 package com.pw.transactionservice.model;
 
+import com.pw.transactionservice.id.SnowflakeId;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -14,8 +15,10 @@ import java.time.LocalDateTime;
 @Builder
 public class Transaction {
 
+    // Time-ordered id assigned in the application, so inserts can be JDBC-batched
+    // without a sequence round trip
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     // --- Participant ---
@@ -0,0 +1,337 @@
+package com.pw.transactionservice.reconciliation;
+
+import com.pw.transactionservice.config.ReconciliationProperties;
+import com.pw.transactionservice.resilience.WalletCallGuard;
+import com.walletservice.grpc.UserBalance;
+import com.walletservice.grpc.WalletServiceGrpc;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares every user's ledger net (successful credits minus debits, live
+ * rows plus archived totals) with their wallet-service balance.
+ * <p>
+ * The user id space is cut into {@code partitions} ranges reconciled
+ * concurrently. Within a range both sides arrive in user order: the wallets as
+ * ListBalances pages, and for each page the ledger of the users it spans as a
+ * grouped cursor over idx_transactions_user_created_id, so they are
+ * merge-joined while streaming and only one page is held. Each page is fetched
+ * before the ledger cursor opens, so no transaction or connection is held
+ * while wallet-service calls back off. Writes landing during the pass make users
+ * differ briefly; every mismatch is therefore re-read on both sides before
+ * it is reported.
+ */
+@Slf4j
+@Service
+public class ReconciliationJob {
+
+    private static final DateTimeFormatter REPORT_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final String LEDGER_SQL = """
+            SELECT user_id, sum(net) FROM (
+                SELECT user_id, sum(CASE type WHEN 'CREDIT' THEN amount WHEN 'DEBIT' THEN -amount ELSE 0 END) AS net
+                FROM transactions
+                WHERE status = 'SUCCESS' AND user_id >= ? AND user_id < ?
+                GROUP BY user_id
+                UNION ALL
+                SELECT user_id, net_amount FROM transaction_archived_totals
+                WHERE user_id >= ? AND user_id < ?
+            ) ledger
+            GROUP BY user_id
+            ORDER BY user_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletServiceGrpc.WalletServiceBlockingStub walletStub;
+    private final WalletCallGuard walletCallGuard;
+    private final ReconciliationProperties props;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final Counter usersChecked;
+    private final Counter mismatchesFound;
+    private final Timer duration;
+    private final AtomicLong lastThroughput = new AtomicLong();
+    private final AtomicLong lastMismatches = new AtomicLong();
+
+    public ReconciliationJob(JdbcTemplate jdbcTemplate,
+                             DataSource dataSource,
+                             TransactionTemplate transactionTemplate,
+                             WalletServiceGrpc.WalletServiceBlockingStub walletStub,
+                             WalletCallGuard walletCallGuard,
+                             ReconciliationProperties props,
+                             MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.walletStub = walletStub;
+        this.walletCallGuard = walletCallGuard;
+        this.props = props;
+
+        // Same DataSource, so it joins the partition's transaction, which
+        // Postgres needs to honour the fetch size
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        cursorTemplate.setFetchSize(props.getBatchSize());
+
+        this.usersChecked = Counter.builder("reconciliation.users.checked").register(meterRegistry);
+        this.mismatchesFound = Counter.builder("reconciliation.mismatches")
+                .description("Users whose ledger net and wallet balance differ after recheck")
+                .register(meterRegistry);
+        this.duration = Timer.builder("reconciliation.duration").register(meterRegistry);
+        Gauge.builder("reconciliation.throughput", lastThroughput, AtomicLong::get)
+                .description("Users reconciled per second in the last run")
+                .register(meterRegistry);
+        Gauge.builder("reconciliation.last.mismatches", lastMismatches, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${reconciliation.cron:0 0 5 * * *}")
+    public void scheduledRun() {
+        if (props.isEnabled()) {
+            run();
+        }
+    }
+
+    /**
+     * Reconciles all users; returns null if a run is already in progress.
+     */
+    public ReconciliationResult run() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Reconciliation already running");
+            return null;
+        }
+        long start = System.nanoTime();
+        List<long[]> ranges = ranges();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(ranges.size(),
+                r -> new Thread(r, "reconcile-" + threadIndex.getAndIncrement()));
+        try {
+            AtomicLong reportBudget = new AtomicLong(props.getMaxReported());
+            List<Future<PartitionResult>> futures = new ArrayList<>(ranges.size());
+            for (long[] range : ranges) {
+                futures.add(pool.submit(() -> reconcile(range[0], range[1], reportBudget)));
+            }
+
+            long checked = 0;
+            long mismatches = 0;
+            long resolved = 0;
+            List<Mismatch> reported = new ArrayList<>();
+            for (Future<PartitionResult> future : futures) {
+                PartitionResult partition = future.get();
+                checked += partition.checked;
+                mismatches += partition.mismatches;
+                resolved += partition.resolved;
+                reported.addAll(partition.reported);
+            }
+            reported.sort(Comparator.comparingLong(Mismatch::userId));
+            Path report = reported.isEmpty() ? null : writeReport(reported, mismatches);
+
+            long elapsed = System.nanoTime() - start;
+            ReconciliationResult result = new ReconciliationResult(checked, mismatches, resolved, report,
+                    elapsed / 1_000_000);
+            duration.record(elapsed, TimeUnit.NANOSECONDS);
+            mismatchesFound.increment(mismatches);
+            lastMismatches.set(mismatches);
+            lastThroughput.set(Math.round(result.usersPerSecond()));
+
+            if (mismatches == 0) {
+                log.info("Reconciliation clean: {} users in {} ms ({} users/s, {} resolved on recheck)",
+                        checked, result.elapsedMillis(), lastThroughput.get(), resolved);
+            } else {
+                log.error("Reconciliation found {} mismatched users out of {} in {} ms; report {}",
+                        mismatches, checked, result.elapsedMillis(), report);
+            }
+            return result;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Reconciliation failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconciliation interrupted", e);
+        } finally {
+            pool.shutdownNow();
+            running.set(false);
+        }
+    }
+
+    /**
+     * Equal slices of the ledger's user id span; the outer two are open-ended
+     * so wallets outside that span are still compared.
+     */
+    private List<long[]> ranges() {
+        long[] bounds = jdbcTemplate.queryForObject(
+                "SELECT coalesce(min(user_id), 0), coalesce(max(user_id), 0) FROM transactions",
+                (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        long min = bounds[0];
+        long max = bounds[1];
+        int partitions = (int) Math.max(1, Math.min(props.getPartitions(), max - min + 1));
+        long span = (max - min + partitions) / partitions;
+
+        List<long[]> ranges = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            long from = p == 0 ? Long.MIN_VALUE : min + p * span;
+            long to = p == partitions - 1 ? Long.MAX_VALUE : min + (p + 1) * span;
+            ranges.add(new long[]{from, to});
+        }
+        return ranges;
+    }
+
+    private PartitionResult reconcile(long from, long to, AtomicLong reportBudget) {
+        PartitionResult result = new PartitionResult(reportBudget);
+        WalletBalanceCursor wallets = new WalletBalanceCursor(walletStub, walletCallGuard, from, to, props.getBatchSize());
+
+        while (wallets.hasNext()) {
+            long chunkFrom = wallets.fetchedTo();
+            List<UserBalance> page = wallets.next();
+            long chunkTo = wallets.fetchedTo();
+            int[] position = {0};
+
+            transactionTemplate.executeWithoutResult(status -> {
+                status.setRollbackOnly();
+                cursorTemplate.query(LEDGER_SQL, (RowCallbackHandler) rs -> {
+                    long userId = rs.getLong(1);
+                    long net = rs.getLong(2);
+                    // Wallets with no ledger rows at all
+                    while (position[0] < page.size() && page.get(position[0]).getUserId() < userId) {
+                        UserBalance wallet = page.get(position[0]++);
+                        result.compare(wallet.getUserId(), 0, wallet.getBalance());
+                    }
+                    if (position[0] < page.size() && page.get(position[0]).getUserId() == userId) {
+                        result.compare(userId, net, page.get(position[0]++).getBalance());
+                    } else {
+                        result.compareMissingWallet(userId, net);
+                    }
+                }, chunkFrom, chunkTo, chunkFrom, chunkTo);
+            });
+            for (int i = position[0]; i < page.size(); i++) {
+                result.compare(page.get(i).getUserId(), 0, page.get(i).getBalance());
+            }
+        }
+
+        recheck(result);
+        return result;
+    }
+
+    /**
+     * Re-reads both sides of each kept mismatch and drops the ones that now agree.
+     */
+    private void recheck(PartitionResult result) {
+        List<Mismatch> confirmed = new ArrayList<>(result.reported.size());
+        for (Mismatch mismatch : result.reported) {
+            long userId = mismatch.userId();
+            long to = userId == Long.MAX_VALUE ? userId : userId + 1;
+            Long net = jdbcTemplate.query(LEDGER_SQL, rs -> rs.next() ? rs.getLong(2) : 0L, userId, to, userId, to);
+            List<UserBalance> wallet = new WalletBalanceCursor(walletStub, walletCallGuard, userId, to, 1).next();
+            Long balance = wallet.isEmpty() ? null : wallet.get(0).getBalance();
+
+            if (balance != null && balance.longValue() == net || balance == null && net == 0) {
+                result.mismatches--;
+                result.resolved++;
+            } else {
+                confirmed.add(new Mismatch(userId, net, balance));
+            }
+        }
+        result.reported = confirmed;
+    }
+
+    private Path writeReport(List<Mismatch> mismatches, long total) {
+        try {
+            Path dir = Paths.get(props.getReportDirectory());
+            Files.createDirectories(dir);
+            Path report = dir.resolve("reconciliation-" + REPORT_STAMP.format(LocalDateTime.now()) + ".csv");
+            Path temp = dir.resolve(report.getFileName() + ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                out.write("user_id,ledger_net,wallet_balance,difference");
+                out.newLine();
+                for (Mismatch m : mismatches) {
+                    long balance = m.walletBalance() != null ? m.walletBalance() : 0;
+                    out.write(m.userId() + "," + m.ledgerNet() + ","
+                            + (m.walletBalance() != null ? m.walletBalance() : "") + "," + (balance - m.ledgerNet()));
+                    out.newLine();
+                }
+                if (total > mismatches.size()) {
+                    out.write("# " + (total - mismatches.size()) + " further mismatches not listed");
+                    out.newLine();
+                }
+            }
+            Files.move(temp, report, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write reconciliation report", e);
+        }
+    }
+
+    /**
+     * @param walletBalance null if the user has no wallet
+     */
+    private record Mismatch(long userId, long ledgerNet, Long walletBalance) {
+    }
+
+    /**
+     * Counts of one range; confined to the thread reconciling it.
+     */
+    private static final class PartitionResult {
+
+        private final AtomicLong reportBudget;
+        private long checked;
+        private long mismatches;
+        private long resolved;
+        private List<Mismatch> reported = new ArrayList<>();
+
+        PartitionResult(AtomicLong reportBudget) {
+            this.reportBudget = reportBudget;
+        }
+
+        void compare(long userId, long net, long balance) {
+            checked++;
+            if (net != balance) {
+                mismatch(new Mismatch(userId, net, balance));
+            }
+        }
+
+        void compareMissingWallet(long userId, long net) {
+            checked++;
+            if (net != 0) {
+                mismatch(new Mismatch(userId, net, null));
+            }
+        }
+
+        private void mismatch(Mismatch mismatch) {
+            mismatches++;
+            // Past the shared budget only the count is kept
+            if (reportBudget.getAndDecrement() > 0) {
+                reported.add(mismatch);
+            }
+        }
+    }
+}
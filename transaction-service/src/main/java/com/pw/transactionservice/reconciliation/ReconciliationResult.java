@@ -0,0 +1,22 @@
+package com.pw.transactionservice.reconciliation;
+
+import java.nio.file.Path;
+
+/**
+ * Outcome of one reconciliation run.
+ *
+ * @param usersChecked users present on either side
+ * @param mismatches   users whose ledger net and wallet balance still differed after a recheck
+ * @param resolved     users that differed during the pass but agreed on recheck (in-flight writes)
+ * @param report       CSV of the mismatches, or null if there were none
+ */
+public record ReconciliationResult(long usersChecked,
+                                   long mismatches,
+                                   long resolved,
+                                   Path report,
+                                   long elapsedMillis) {
+
+    public double usersPerSecond() {
+        return elapsedMillis == 0 ? usersChecked : usersChecked * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,100 @@
+package com.pw.transactionservice.reconciliation;
+
+import com.pw.transactionservice.exception.WalletServiceUnavailableException;
+import com.pw.transactionservice.resilience.WalletCallGuard;
+import com.walletservice.grpc.ListBalancesRequest;
+import com.walletservice.grpc.ListBalancesResponse;
+import com.walletservice.grpc.UserBalance;
+import com.walletservice.grpc.WalletServiceGrpc;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Walks wallet-service balances of [fromUserId, toUserId) in user order, one
+ * ListBalances page at a time; only the current page is held. The server's
+ * hasMore flag, not the page length, ends the walk, since it may return fewer
+ * balances than asked for.
+ * <p>
+ * Calls go through the same circuit breaker and bulkhead as live traffic.
+ * When they reject, the cursor backs off and tries again, so the nightly job
+ * yields to user requests instead of failing or crowding them out.
+ */
+final class WalletBalanceCursor {
+
+    private static final int MAX_ATTEMPTS = 20;
+    private static final Duration INITIAL_BACKOFF = Duration.ofMillis(50);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(5);
+
+    private final WalletServiceGrpc.WalletServiceBlockingStub walletStub;
+    private final WalletCallGuard walletCallGuard;
+    private final long toUserId;
+    private final int pageSize;
+
+    private long nextFrom;
+    private boolean exhausted;
+
+    WalletBalanceCursor(WalletServiceGrpc.WalletServiceBlockingStub walletStub, WalletCallGuard walletCallGuard,
+                        long fromUserId, long toUserId, int pageSize) {
+        this.walletStub = walletStub;
+        this.walletCallGuard = walletCallGuard;
+        this.nextFrom = fromUserId;
+        this.toUserId = toUserId;
+        this.pageSize = pageSize;
+    }
+
+    boolean hasNext() {
+        return !exhausted && nextFrom < toUserId;
+    }
+
+    /**
+     * Fetches the next page, in user order.
+     */
+    List<UserBalance> next() {
+        ListBalancesRequest request = ListBalancesRequest.newBuilder()
+                .setFromUserId(nextFrom)
+                .setToUserId(toUserId)
+                .setLimit(pageSize)
+                .build();
+        ListBalancesResponse response = callWithBackoff(request);
+        List<UserBalance> page = response.getBalancesList();
+        exhausted = !response.getHasMore() || page.isEmpty();
+        if (exhausted) {
+            nextFrom = toUserId;
+        } else {
+            long last = page.get(page.size() - 1).getUserId();
+            nextFrom = last == Long.MAX_VALUE ? toUserId : last + 1;
+        }
+        return page;
+    }
+
+    /**
+     * Exclusive bound of the users fetched so far: every wallet below it has
+     * been returned by {@link #next()}.
+     */
+    long fetchedTo() {
+        return nextFrom;
+    }
+
+    private ListBalancesResponse callWithBackoff(ListBalancesRequest request) {
+        Duration backoff = INITIAL_BACKOFF;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return walletCallGuard.call("listBalances", () -> walletStub.listBalances(request));
+            } catch (WalletServiceUnavailableException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                Duration wait = e.getRetryAfter() != null && e.getRetryAfter().compareTo(backoff) > 0
+                        ? e.getRetryAfter() : backoff;
+                try {
+                    Thread.sleep(wait.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+            }
+        }
+    }
+}
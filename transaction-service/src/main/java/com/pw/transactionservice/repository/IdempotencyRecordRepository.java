@@ -0,0 +1,52 @@
+package com.pw.transactionservice.repository;
+
+import com.pw.transactionservice.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(LocalDateTime now);
+
+    /**
+     * Claims a key for one execution: inserts a pending record, or takes over
+     * one that has expired. Atomic across instances.
+     *
+     * @return 1 if the key is now held by the caller, 0 if someone else holds it
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+        INSERT INTO idempotency_records (id, request_hash, status_code, response_body, created_at, expires_at)
+        VALUES (:id, :requestHash, NULL, NULL, :now, :expiresAt)
+        ON CONFLICT (id) DO UPDATE SET
+          request_hash = EXCLUDED.request_hash,
+          status_code = NULL,
+          response_body = NULL,
+          created_at = EXCLUDED.created_at,
+          expires_at = EXCLUDED.expires_at
+        WHERE idempotency_records.expires_at <= EXCLUDED.created_at
+        """, nativeQuery = true)
+    int reserve(String id, String requestHash, LocalDateTime now, LocalDateTime expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.statusCode = :statusCode, r.responseBody = :responseBody, "
+            + "r.expiresAt = :expiresAt WHERE r.id = :id")
+    int complete(String id, Integer statusCode, String responseBody, LocalDateTime expiresAt);
+
+    // Frees a key whose execution failed, so the client can retry with it
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.statusCode IS NULL")
+    int release(String id);
+}
@@ -1,12 +1,38 @@
 package com.pw.transactionservice.repository;
 
 import com.pw.transactionservice.model.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    List<Transaction> findByUserId(Long userId);
+    // Served by idx_transactions_user_created_id; Postgres merges the partitions' index scans
+    List<Transaction> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
+
+    // Bounded on created_at so Postgres only scans the monthly partitions in range
+    @Query("""
+            SELECT t FROM Transaction t
+            WHERE t.userId = :userId AND t.createdAt >= :from AND t.createdAt < :to
+            ORDER BY t.createdAt DESC
+            """)
+    List<Transaction> findByUserIdInRange(@Param("userId") Long userId,
+                                          @Param("from") LocalDateTime from,
+                                          @Param("to") LocalDateTime to);
+
+    // The created_at bounds prune the lookup to the partitions around the id's timestamp
+    Optional<Transaction> findByIdAndCreatedAtBetween(Long id, LocalDateTime from, LocalDateTime to);
+
+    @Query("""
+            SELECT t FROM Transaction t
+            WHERE t.createdAt >= :from AND t.createdAt < :to
+            ORDER BY t.createdAt DESC
+            """)
+    List<Transaction> findInRange(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 }
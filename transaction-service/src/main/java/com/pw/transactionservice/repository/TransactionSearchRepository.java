@@ -0,0 +1,123 @@
+package com.pw.transactionservice.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pw.transactionservice.dto.TransactionSearchCriteria;
+import com.pw.transactionservice.model.Transaction;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dynamic search over {@code transactions}. Only the filters that are set
+ * become predicates, so each query shape can use one of the indexes in
+ * schema.sql, and rows come back in (created_at, id) descending order for
+ * keyset pagination.
+ */
+@Repository
+public class TransactionSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public TransactionSearchRepository(NamedParameterJdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Up to {@code limit} rows strictly after the keyset position (afterCreatedAt, afterId), newest first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Transaction> search(TransactionSearchCriteria criteria, LocalDateTime afterCreatedAt, Long afterId, int limit) {
+        Where where = where(criteria);
+        if (afterCreatedAt != null) {
+            // Row comparison, so the (.., created_at DESC, id DESC) indexes can seek to the cursor
+            where.add("(created_at, id) < (:afterCreatedAt, :afterId)", "afterCreatedAt", afterCreatedAt);
+            where.params.put("afterId", afterId);
+        }
+        Query query = entityManager.createNativeQuery(
+                "SELECT * FROM transactions" + where.sql() + " ORDER BY created_at DESC, id DESC LIMIT :limit",
+                Transaction.class);
+        where.params.forEach(query::setParameter);
+        query.setParameter("limit", limit);
+        return query.getResultList();
+    }
+
+    public long count(TransactionSearchCriteria criteria) {
+        Where where = where(criteria);
+        Query query = entityManager.createNativeQuery("SELECT count(*) FROM transactions" + where.sql());
+        where.params.forEach(query::setParameter);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    /**
+     * Row count the planner expects for the filters, from EXPLAIN; no rows are read.
+     */
+    public long estimateCount(TransactionSearchCriteria criteria) {
+        Where where = where(criteria);
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN (FORMAT JSON) SELECT 1 FROM transactions" + where.sql(), where.params, String.class);
+        try {
+            JsonNode root = objectMapper.readTree(plan);
+            return root.path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable query plan", e);
+        }
+    }
+
+    private static Where where(TransactionSearchCriteria c) {
+        Where where = new Where();
+        if (c.getUserId() != null) {
+            where.add("user_id = :userId", "userId", c.getUserId());
+        }
+        if (c.getFrom() != null) {
+            where.add("created_at >= :from", "from", c.getFrom());
+        }
+        if (c.getTo() != null) {
+            where.add("created_at < :to", "to", c.getTo());
+        }
+        if (c.getType() != null) {
+            where.add("type = :type", "type", c.getType().name());
+        }
+        if (c.getStatus() != null) {
+            where.add("status = :status", "status", c.getStatus().name());
+        }
+        if (c.getMinAmount() != null) {
+            where.add("amount >= :minAmount", "minAmount", c.getMinAmount());
+        }
+        if (c.getMaxAmount() != null) {
+            where.add("amount <= :maxAmount", "maxAmount", c.getMaxAmount());
+        }
+        if (c.getReferenceId() != null) {
+            where.add("reference_id = :referenceId", "referenceId", c.getReferenceId());
+        }
+        return where;
+    }
+
+    private static final class Where {
+
+        private final List<String> predicates = new ArrayList<>();
+        private final Map<String, Object> params = new LinkedHashMap<>();
+
+        void add(String predicate, String name, Object value) {
+            predicates.add(predicate);
+            params.put(name, value);
+        }
+
+        String sql() {
+            return predicates.isEmpty() ? "" : " WHERE " + String.join(" AND ", predicates);
+        }
+    }
+}
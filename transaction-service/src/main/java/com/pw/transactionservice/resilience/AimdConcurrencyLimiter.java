@@ -0,0 +1,70 @@
+package com.pw.transactionservice.resilience;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulkhead whose size adapts with AIMD (additive increase, multiplicative
+ * decrease), the same scheme TCP uses for its congestion window.
+ * <p>
+ * Callers that find the limit reached are rejected immediately instead of
+ * queueing, so request threads never pile up behind a slow wallet-service.
+ */
+public class AimdConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long slowCallThresholdNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    public AimdConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                  double backoffRatio, long slowCallThresholdNanos) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.slowCallThresholdNanos = slowCallThresholdNanos;
+    }
+
+    /**
+     * @return the in-flight count including this call, or -1 if rejected
+     */
+    public int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * @param inFlightAtStart value returned by {@link #tryAcquire()}
+     * @param succeeded       false for failures that indicate overload
+     * @param elapsedNanos    call duration
+     */
+    public void release(int inFlightAtStart, boolean succeeded, long elapsedNanos) {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            if (!succeeded || elapsedNanos > slowCallThresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlightAtStart >= (int) limit) {
+                // Only grow while the limit is fully used: this call took the last free slot
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
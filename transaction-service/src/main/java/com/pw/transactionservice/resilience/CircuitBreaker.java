@@ -0,0 +1,142 @@
+package com.pw.transactionservice.resilience;
+
+import java.time.Duration;
+
+/**
+ * Count-based circuit breaker.
+ * <p>
+ * CLOSED: calls pass, outcomes are recorded in a ring of the last N calls.
+ * When the failure rate crosses the threshold the breaker OPENs and rejects
+ * every call until {@code openDuration} has elapsed, then HALF_OPEN lets a
+ * few trial calls through; all succeeding closes it, any failure re-opens it.
+ * <p>
+ * Every transition starts a new generation, and each permit carries the one
+ * it was issued in. Outcomes reported with an older permit are dropped, so a
+ * call started while CLOSED that finishes during HALF_OPEN is not taken as a
+ * trial result.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenPermittedCalls;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private long openedAt;
+    private int halfOpenInFlight;
+    private int halfOpenSucceeded;
+
+    public CircuitBreaker(int slidingWindowSize, int minimumCalls, double failureRateThreshold,
+                          Duration openDuration, int halfOpenPermittedCalls) {
+        this.window = new boolean[slidingWindowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenPermittedCalls = halfOpenPermittedCalls;
+    }
+
+    /**
+     * @return a permit (the current generation) if the call may proceed, or
+     * -1 if rejected; the caller must then report the outcome with it through
+     * {@link #onSuccess(long)}, {@link #onFailure(long)} or {@link #onIgnored(long)}
+     */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return -1;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight + halfOpenSucceeded >= halfOpenPermittedCalls) {
+                return -1;
+            }
+            halfOpenInFlight++;
+        }
+        return generation;
+    }
+
+    /**
+     * @param permit value returned by {@link #tryAcquire()}
+     */
+    public synchronized void onSuccess(long permit) {
+        if (permit != generation) return;
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight > 0) halfOpenInFlight--;
+            if (++halfOpenSucceeded >= halfOpenPermittedCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * @param permit value returned by {@link #tryAcquire()}
+     */
+    public synchronized void onFailure(long permit) {
+        if (permit != generation) return;
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && windowCount >= minimumCalls
+                && (double) windowFailures / windowCount >= failureRateThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    /** Returns a permit without recording an outcome (call never reached wallet-service). */
+    public synchronized void onIgnored(long permit) {
+        if (permit == generation && state == State.HALF_OPEN && halfOpenInFlight > 0) {
+            halfOpenInFlight--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** Remaining time before trial calls are allowed, zero unless OPEN. */
+    public synchronized Duration remainingOpenTime() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, openDurationNanos - (System.nanoTime() - openedAt)));
+    }
+
+    private void record(boolean failed) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) windowFailures--;
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failed;
+        if (failed) windowFailures++;
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(State next) {
+        state = next;
+        generation++;
+        halfOpenInFlight = 0;
+        halfOpenSucceeded = 0;
+        if (next == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+        if (next == State.CLOSED) {
+            windowIndex = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.pw.transactionservice.resilience;
+
+import com.pw.transactionservice.config.WalletResilienceProperties;
+import com.pw.transactionservice.exception.WalletServiceUnavailableException;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Wraps every wallet-service gRPC call in a circuit breaker and an adaptive
+ * bulkhead. When either rejects, {@link WalletServiceUnavailableException} is
+ * thrown without touching the network.
+ */
+@Slf4j
+@Component
+public class WalletCallGuard {
+
+    // Status codes that mean wallet-service is unhealthy (as opposed to a business rejection)
+    private static final Set<Status.Code> FAILURE_CODES = EnumSet.of(
+            Status.Code.UNAVAILABLE,
+            Status.Code.DEADLINE_EXCEEDED,
+            Status.Code.RESOURCE_EXHAUSTED,
+            Status.Code.INTERNAL,
+            Status.Code.UNKNOWN);
+
+    private final CircuitBreaker circuitBreaker;
+    private final AimdConcurrencyLimiter limiter;
+
+    private final Counter circuitOpenRejections;
+    private final Counter bulkheadRejections;
+    private final Counter failures;
+
+    public WalletCallGuard(WalletResilienceProperties props, MeterRegistry meterRegistry) {
+        WalletResilienceProperties.CircuitBreaker cb = props.getCircuitBreaker();
+        this.circuitBreaker = new CircuitBreaker(cb.getSlidingWindowSize(), cb.getMinimumCalls(),
+                cb.getFailureRateThreshold(), cb.getOpenDuration(), cb.getHalfOpenPermittedCalls());
+
+        WalletResilienceProperties.Bulkhead bh = props.getBulkhead();
+        this.limiter = new AimdConcurrencyLimiter(bh.getInitialLimit(), bh.getMinLimit(), bh.getMaxLimit(),
+                bh.getBackoffRatio(), bh.getSlowCallThreshold().toNanos());
+
+        Gauge.builder("wallet.circuit.state", circuitBreaker, c -> c.getState().ordinal())
+                .description("Wallet circuit breaker state (0=CLOSED, 1=OPEN, 2=HALF_OPEN)")
+                .register(meterRegistry);
+        Gauge.builder("wallet.bulkhead.limit", limiter, AimdConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit for wallet calls")
+                .register(meterRegistry);
+        Gauge.builder("wallet.bulkhead.inflight", limiter, AimdConcurrencyLimiter::getInFlight)
+                .description("Wallet calls currently in flight")
+                .register(meterRegistry);
+
+        this.circuitOpenRejections = Counter.builder("wallet.calls.rejected")
+                .tag("reason", "circuit_open").register(meterRegistry);
+        this.bulkheadRejections = Counter.builder("wallet.calls.rejected")
+                .tag("reason", "bulkhead_full").register(meterRegistry);
+        this.failures = Counter.builder("wallet.calls.failed").register(meterRegistry);
+    }
+
+    public <T> T call(String operation, Supplier<T> call) {
+        long permit = circuitBreaker.tryAcquire();
+        if (permit < 0) {
+            circuitOpenRejections.increment();
+            throw new WalletServiceUnavailableException(
+                    "WalletService circuit is open; " + operation + " rejected",
+                    circuitBreaker.remainingOpenTime());
+        }
+
+        int inFlight = limiter.tryAcquire();
+        if (inFlight < 0) {
+            // Not a wallet-service outcome: hand the breaker permit back unrecorded
+            circuitBreaker.onIgnored(permit);
+            bulkheadRejections.increment();
+            throw new WalletServiceUnavailableException(
+                    "Too many concurrent WalletService calls; " + operation + " rejected", null);
+        }
+
+        long start = System.nanoTime();
+        boolean healthy = true;
+        try {
+            return call.get();
+        } catch (StatusRuntimeException e) {
+            healthy = !FAILURE_CODES.contains(e.getStatus().getCode());
+            throw e;
+        } catch (RuntimeException e) {
+            healthy = false;
+            throw e;
+        } finally {
+            limiter.release(inFlight, healthy, System.nanoTime() - start);
+            if (healthy) {
+                circuitBreaker.onSuccess(permit);
+            } else {
+                failures.increment();
+                circuitBreaker.onFailure(permit);
+                log.warn("WalletService {} failed; circuit state={}", operation, circuitBreaker.getState());
+            }
+        }
+    }
+}
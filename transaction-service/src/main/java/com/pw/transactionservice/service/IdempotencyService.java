@@ -0,0 +1,241 @@
+package com.pw.transactionservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pw.transactionservice.config.IdempotencyProperties;
+import com.pw.transactionservice.exception.DuplicateWalletRequestException;
+import com.pw.transactionservice.exception.IdempotencyKeyInUseException;
+import com.pw.transactionservice.exception.IdempotencyKeyMismatchException;
+import com.pw.transactionservice.exception.InsufficientBalanceException;
+import com.pw.transactionservice.exception.WalletServiceException;
+import com.pw.transactionservice.exception.WalletServiceUnavailableException;
+import com.pw.transactionservice.model.IdempotencyRecord;
+import com.pw.transactionservice.repository.IdempotencyRecordRepository;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Executes a request at most once per Idempotency-Key.
+ * <p>
+ * Before running, a request reserves its key by inserting a pending
+ * {@code idempotency_records} row; the insert is atomic across instances, so
+ * of two concurrent or racing retries only one runs and the other gets 409.
+ * The row is completed with the response on success. On failure it is deleted,
+ * so the request may be retried, only if wallet-service certainly did not
+ * apply it; credit and debit are not deduplicated by wallet-service, so after
+ * a timeout or a failed save the reservation is kept until the TTL and retries
+ * get 409 rather than moving the money twice.
+ * <p>
+ * Completed responses are kept in two tiers: a bounded in-memory LRU for the
+ * retries that arrive seconds later, and the table for the full TTL (and for
+ * other instances). A replay is served from whichever tier has it, without
+ * calling wallet-service or writing to the DB.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // Status codes wallet-service returns only after rolling the operation back
+    private static final Set<Status.Code> NOT_APPLIED_CODES = EnumSet.of(
+            Status.Code.INVALID_ARGUMENT,
+            Status.Code.NOT_FOUND,
+            Status.Code.FAILED_PRECONDITION,
+            Status.Code.ABORTED);
+
+    private final IdempotencyRecordRepository repository;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyProperties props;
+
+    // Completed records only
+    private final Map<String, IdempotencyRecord> hotTier;
+
+    public IdempotencyService(IdempotencyRecordRepository repository,
+                              ObjectMapper objectMapper,
+                              IdempotencyProperties props) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.props = props;
+        int maxEntries = props.getHotTierMaxEntries();
+        this.hotTier = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Runs {@code action} unless a response for the same operation and key is
+     * already stored, in which case that response is replayed.
+     *
+     * @param key may be null, in which case the action simply runs
+     */
+    public <T> ResponseEntity<T> execute(String operation, String key, Object request,
+                                         Class<T> responseType, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return ResponseEntity.ok(action.get());
+        }
+
+        String id = operation + ":" + key;
+        String requestHash = hash(request);
+
+        Optional<IdempotencyRecord> stored = find(id);
+        if (stored.isPresent()) {
+            return replay(stored.get(), key, requestHash, responseType);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        // A reservation lasts as long as a response would: if this instance dies
+        // mid-request the outcome is unknown, so the key is not run again
+        if (repository.reserve(id, requestHash, now, now.plus(props.getTtl())) == 0) {
+            // Taken between the lookup and the reservation
+            return find(id)
+                    .map(record -> replay(record, key, requestHash, responseType))
+                    .orElseThrow(() -> new IdempotencyKeyInUseException(key));
+        }
+
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            if (notApplied(e)) {
+                release(id);
+            } else {
+                log.warn("Outcome of Idempotency-Key {} is unknown; keeping the reservation: {}", id, e.getMessage());
+            }
+            throw e;
+        }
+        save(id, HttpStatus.OK, result);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Hourly cleanup of keys past their TTL.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval:PT1H}")
+    public void purgeExpired() {
+        try {
+            int removed = repository.deleteExpired(LocalDateTime.now());
+            log.info("Purged {} expired idempotency records", removed);
+        } catch (DataAccessException dae) {
+            log.error("Failed to purge idempotency records: {}", dae.getMessage(), dae);
+        }
+    }
+
+    private Optional<IdempotencyRecord> find(String id) {
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyRecord hot;
+        synchronized (hotTier) {
+            hot = hotTier.get(id);
+            if (hot != null && hot.getCreatedAt().plus(props.getHotTierTtl()).isBefore(now)) {
+                hotTier.remove(id);
+                hot = null;
+            }
+        }
+        if (hot != null) {
+            return Optional.of(hot);
+        }
+
+        Optional<IdempotencyRecord> cold = repository.findById(id)
+                .filter(r -> r.getExpiresAt().isAfter(now));
+        cold.filter(r -> !r.isPending()).ifPresent(this::promote);
+        return cold;
+    }
+
+    /**
+     * Replays a completed record.
+     *
+     * @throws IdempotencyKeyInUseException if the record is still pending
+     */
+    private <T> ResponseEntity<T> replay(IdempotencyRecord record, String key, String requestHash, Class<T> responseType) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            throw new IdempotencyKeyMismatchException(key);
+        }
+        if (record.isPending()) {
+            throw new IdempotencyKeyInUseException(key);
+        }
+        log.info("Replaying stored response for Idempotency-Key {}", key);
+        try {
+            T body = objectMapper.readValue(record.getResponseBody(), responseType);
+            return ResponseEntity.status(record.getStatusCode())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response is unreadable", e);
+        }
+    }
+
+    private void save(String id, HttpStatus status, Object body) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            String json = objectMapper.writeValueAsString(body);
+            repository.complete(id, status.value(), json, now.plus(props.getTtl()));
+            repository.findById(id).ifPresent(this::promote);
+        } catch (JsonProcessingException | DataAccessException e) {
+            // The operation itself succeeded. The reservation stays pending until
+            // the TTL, so retries get 409 instead of executing it a second time.
+            log.error("Failed to store idempotent response {}: {}", id, e.getMessage(), e);
+        }
+    }
+
+    private void release(String id) {
+        try {
+            repository.release(id);
+        } catch (DataAccessException e) {
+            // Retries get 409 until the reservation expires
+            log.error("Failed to release Idempotency-Key reservation {}: {}", id, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Whether wallet-service certainly did not apply the request: rejected by
+     * the guard before the call, refused by wallet-service, or invalid.
+     * Anything else (deadline exceeded, lost response, a failed save after the
+     * wallet call) may have moved money.
+     */
+    private static boolean notApplied(RuntimeException e) {
+        if (e instanceof WalletServiceUnavailableException
+                || e instanceof InsufficientBalanceException
+                || e instanceof DuplicateWalletRequestException
+                || e instanceof IllegalArgumentException) {
+            return true;
+        }
+        return e instanceof WalletServiceException
+                && e.getCause() instanceof StatusRuntimeException sre
+                && NOT_APPLIED_CODES.contains(sre.getStatus().getCode());
+    }
+
+    private void promote(IdempotencyRecord record) {
+        synchronized (hotTier) {
+            hotTier.put(record.getId(), record);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unable to fingerprint request", e);
+        }
+    }
+}
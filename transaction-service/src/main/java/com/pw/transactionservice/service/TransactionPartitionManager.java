@@ -0,0 +1,104 @@
+package com.pw.transactionservice.service;
+
+import com.pw.transactionservice.config.TransactionPartitionProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps the month-partitioned {@code transactions} table healthy: creates
+ * partitions ahead of time and detaches the ones past retention. Detached
+ * partitions stay in the database as standalone tables for archiving.
+ */
+@Slf4j
+@Service
+public class TransactionPartitionManager {
+
+    private static final String PARENT = "transactions";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionPartitionProperties props;
+
+    public TransactionPartitionManager(JdbcTemplate jdbcTemplate, TransactionPartitionProperties props) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.props = props;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    /**
+     * Daily maintenance run.
+     */
+    @Scheduled(cron = "${transactions.partitions.cron:0 0 1 * * *}")
+    public void maintain() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= props.getMonthsAhead(); i++) {
+            createPartition(current.plusMonths(i));
+        }
+        if (props.getRetentionMonths() > 0) {
+            detachOlderThan(current.minusMonths(props.getRetentionMonths()));
+        }
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PARENT + "_p" + month.format(SUFFIX);
+    }
+
+    private void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        if (exists(name)) {
+            return;
+        }
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        try {
+            jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF " + PARENT
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            log.info("Created partition {} for [{}, {})", name, from, to);
+        } catch (DataAccessException dae) {
+            // e.g. range still covered by the attached legacy partition
+            log.warn("Could not create partition {}: {}", name, dae.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private void detachOlderThan(YearMonth cutoff) {
+        List<String> partitions = jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = ?::regclass AND c.relname ~ '^transactions_p[0-9]{6}$'
+                ORDER BY c.relname
+                """, String.class, PARENT);
+
+        String cutoffName = partitionName(cutoff);
+        for (String name : partitions) {
+            // yyyyMM suffixes sort chronologically
+            if (name.compareTo(cutoffName) >= 0) {
+                break;
+            }
+            try {
+                jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + name);
+                log.info("Detached partition {} (older than {})", name, cutoff);
+            } catch (DataAccessException dae) {
+                log.error("Failed to detach partition {}: {}", name, dae.getMessage(), dae);
+            }
+        }
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+}
@@ -0,0 +1,109 @@
+package com.pw.transactionservice.service;
+
+import com.pw.transactionservice.dto.TransactionSearchCriteria;
+import com.pw.transactionservice.dto.TransactionSearchResponseDTO;
+import com.pw.transactionservice.exception.TransactionFailedException;
+import com.pw.transactionservice.model.Transaction;
+import com.pw.transactionservice.repository.TransactionSearchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Support search over live transactions (archived months are not searched).
+ * Pages are keyset-based: the cursor is the (createdAt, id) of the last row
+ * returned, so deep pages cost the same as the first one.
+ */
+@Slf4j
+@Service
+public class TransactionSearchService {
+
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 200;
+
+    // Below this planner estimate an exact COUNT(*) is cheap enough to run
+    private static final long EXACT_COUNT_THRESHOLD = 1_000;
+
+    private final TransactionSearchRepository searchRepository;
+
+    public TransactionSearchService(TransactionSearchRepository searchRepository) {
+        this.searchRepository = searchRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public TransactionSearchResponseDTO search(TransactionSearchCriteria criteria, String cursor, Integer limit) {
+        validate(criteria);
+        int pageSize = limit == null ? DEFAULT_LIMIT : limit;
+        if (pageSize < 1 || pageSize > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+
+        LocalDateTime afterCreatedAt = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] position = decodeCursor(cursor);
+            afterCreatedAt = LocalDateTime.parse(position[0]);
+            afterId = Long.valueOf(position[1]);
+        }
+
+        try {
+            // One extra row tells whether another page exists
+            List<Transaction> rows = searchRepository.search(criteria, afterCreatedAt, afterId, pageSize + 1);
+            String nextCursor = null;
+            if (rows.size() > pageSize) {
+                rows = rows.subList(0, pageSize);
+                Transaction last = rows.get(pageSize - 1);
+                nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+            }
+
+            long estimate = searchRepository.estimateCount(criteria);
+            boolean exact = estimate <= EXACT_COUNT_THRESHOLD;
+            long total = exact ? searchRepository.count(criteria) : estimate;
+
+            return TransactionSearchResponseDTO.builder()
+                    .items(rows)
+                    .nextCursor(nextCursor)
+                    .totalCount(total)
+                    .totalExact(exact)
+                    .build();
+        } catch (DataAccessException dae) {
+            log.error("Transaction search failed: {}", dae.getMessage(), dae);
+            throw new TransactionFailedException("Failed to search transactions");
+        }
+    }
+
+    private static void validate(TransactionSearchCriteria c) {
+        if (c.getFrom() != null && c.getTo() != null && !c.getFrom().isBefore(c.getTo())) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (c.getMinAmount() != null && c.getMaxAmount() != null && c.getMinAmount() > c.getMaxAmount()) {
+            throw new IllegalArgumentException("minAmount must not exceed maxAmount");
+        }
+    }
+
+    static String encodeCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            LocalDateTime.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
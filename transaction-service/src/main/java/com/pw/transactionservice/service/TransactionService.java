@@ -1,47 +1,101 @@
 package com.pw.transactionservice.service;
 
+import com.pw.transactionservice.archive.TransactionArchive;
+import com.pw.transactionservice.cache.RecentTransactionCache;
+import com.pw.transactionservice.dto.SplitTransferRequestDTO;
+import com.pw.transactionservice.dto.SplitTransferResponseDTO;
+import com.pw.transactionservice.event.TransactionRecordedEvent;
+import com.pw.transactionservice.exception.DuplicateWalletRequestException;
 import com.pw.transactionservice.exception.InsufficientBalanceException;
 import com.pw.transactionservice.exception.TransactionFailedException;
 import com.pw.transactionservice.exception.TransactionNotFoundException;
 import com.pw.transactionservice.exception.WalletServiceException;
+import com.pw.transactionservice.exception.WalletServiceUnavailableException;
+import com.pw.transactionservice.id.SnowflakeIdGenerator;
+import com.pw.transactionservice.journal.JournalEntryType;
+import com.pw.transactionservice.journal.JournalPosting;
+import com.pw.transactionservice.journal.JournalService;
 import com.pw.transactionservice.model.Transaction;
 import com.pw.transactionservice.model.TransactionStatus;
 import com.pw.transactionservice.model.TransactionType;
 import com.pw.transactionservice.repository.TransactionRepository;
+import com.pw.transactionservice.resilience.WalletCallGuard;
+import com.walletservice.grpc.BatchTransferRequest;
+import com.walletservice.grpc.TransferLeg;
 import com.walletservice.grpc.TransferRequest;
 import com.walletservice.grpc.WalletOperationRequest;
 import com.walletservice.grpc.WalletResponse;
 import com.walletservice.grpc.WalletServiceGrpc;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Optional;
 
 @Slf4j
 @Service
 public class TransactionService {
 
+    // WalletResponse.message when transfer/batchTransfer sees a requestId it already applied
+    private static final String DUPLICATE_TRANSFER_MESSAGE = "Duplicate transfer request";
+
+    // created_at vs. the id's timestamp: set just before the id, plus the JDBC time zone shift
+    private static final Duration ID_TIME_SLACK = Duration.ofDays(1);
+
     private final TransactionRepository transactionRepository;
     private final WalletServiceGrpc.WalletServiceBlockingStub walletStub;
+    private final WalletCallGuard walletCallGuard;
+    private final TransactionArchive transactionArchive;
+    private final RecentTransactionCache recentTransactionCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JournalService journalService;
+    private final SnowflakeIdGenerator idGenerator;
+    private final TransactionTemplate transactionTemplate;
 
     public TransactionService(TransactionRepository transactionRepository,
-                              WalletServiceGrpc.WalletServiceBlockingStub walletStub) {
+                              WalletServiceGrpc.WalletServiceBlockingStub walletStub,
+                              WalletCallGuard walletCallGuard,
+                              TransactionArchive transactionArchive,
+                              RecentTransactionCache recentTransactionCache,
+                              ApplicationEventPublisher eventPublisher,
+                              JournalService journalService,
+                              SnowflakeIdGenerator idGenerator,
+                              TransactionTemplate transactionTemplate) {
         this.transactionRepository = transactionRepository;
         this.walletStub = walletStub;
+        this.walletCallGuard = walletCallGuard;
+        this.transactionArchive = transactionArchive;
+        this.recentTransactionCache = recentTransactionCache;
+        this.eventPublisher = eventPublisher;
+        this.journalService = journalService;
+        this.idGenerator = idGenerator;
+        this.transactionTemplate = transactionTemplate;
     }
 
     /**
      * Transfer money between users (atomic)
+     *
+     * @param idempotencyKey client supplied key, forwarded as the wallet requestId; may be null
      */
     @Transactional
-    public WalletResponse transfer(Long senderId, Long receiverId, Integer amount) {
+    public WalletResponse transfer(Long senderId, Long receiverId, Integer amount, String idempotencyKey) {
         WalletResponse response;
-        String transferId = UUID.randomUUID().toString();
-        String requestId = UUID.randomUUID().toString();
+        String transferId = idGenerator.nextStringId();
+        String requestId = idempotencyKey != null ? idempotencyKey : idGenerator.nextStringId();
 
         TransactionStatus status;
 
@@ -54,16 +108,25 @@ public class TransactionService {
                     .build();
 
             log.info("Calling WalletService gRPC transfer: sender={}, receiver={}, amount={}", senderId, receiverId, amount);
-            response = walletStub.transfer(request);
+            response = walletCallGuard.call("transfer", () -> walletStub.transfer(request));
             log.info("gRPC transfer response: {}", response.toString());
             if (!response.getSuccess()) {
+                if (isDuplicate(response)) {
+                    throw new DuplicateWalletRequestException(requestId);
+                }
                 throw new InsufficientBalanceException("WalletService failed transfer due to insufficient balance");
             }
             status = TransactionStatus.SUCCESS;
 
+        } catch (DuplicateWalletRequestException e) {
+            log.warn("Transfer not applied: {}", e.getMessage());
+            throw e;
         } catch (InsufficientBalanceException e) {
             log.error("Transfer failed due to insufficient balance: {}", e.getMessage());
             throw new InsufficientBalanceException("Sender has insufficient balance for the transfer");
+        } catch (WalletServiceUnavailableException e) {
+            log.warn("Transfer rejected without calling WalletService: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("gRPC transfer failed: {}", e.getMessage(), e);
             throw new WalletServiceException("WalletService unavailable or transfer failed", e);
@@ -79,7 +142,7 @@ public class TransactionService {
                     .createdAt(LocalDateTime.now())
                     .updatedAt(LocalDateTime.now())
                     .build();
-            transactionRepository.save(debit);
+            recorded(transactionRepository.save(debit));
 
             Transaction credit = Transaction.builder()
                     .userId(receiverId)
@@ -90,7 +153,8 @@ public class TransactionService {
                     .createdAt(LocalDateTime.now())
                     .updatedAt(LocalDateTime.now())
                     .build();
-            transactionRepository.save(credit);
+            recorded(transactionRepository.save(credit));
+            journalService.recordTransfer(senderId, receiverId, amount, transferId);
 
             return response;
 
@@ -101,25 +165,147 @@ public class TransactionService {
     }
 
     /**
-     * Debit wallet
+     * Pay several recipients from one sender. wallet-service checks the total
+     * against the sender once and applies every leg in a single transaction;
+     * the legs are then inserted as one JDBC batch under a shared transferId.
+     *
+     * @param idempotencyKey client supplied key, forwarded as the wallet requestId; may be null
      */
-    public Transaction debit(Long userId, Integer amount, String referenceId) {
-        String transferId = UUID.randomUUID().toString();
+    @Transactional
+    public SplitTransferResponseDTO splitTransfer(Long senderId, List<SplitTransferRequestDTO.Recipient> recipients,
+                                                  String referenceId, String idempotencyKey) {
+        String transferId = idGenerator.nextStringId();
+        String requestId = idempotencyKey != null ? idempotencyKey : idGenerator.nextStringId();
+
+        long total = 0;
+        BatchTransferRequest.Builder builder = BatchTransferRequest.newBuilder()
+                .setFromUserId(senderId)
+                .setRequestId(requestId);
+        for (SplitTransferRequestDTO.Recipient recipient : recipients) {
+            if (recipient.getReceiverId().equals(senderId)) {
+                throw new IllegalArgumentException("Sender cannot be one of the recipients");
+            }
+            total += recipient.getAmount();
+            builder.addLegs(TransferLeg.newBuilder()
+                    .setToUserId(recipient.getReceiverId())
+                    .setAmount(recipient.getAmount()));
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Total split amount is too large");
+        }
+        if (referenceId != null) {
+            builder.setReferenceId(referenceId);
+        }
+        BatchTransferRequest request = builder.build();
+
+        WalletResponse response;
+        try {
+            log.info("Calling WalletService gRPC batchTransfer: sender={}, recipients={}, total={}", senderId, recipients.size(), total);
+            response = walletCallGuard.call("batchTransfer", () -> walletStub.batchTransfer(request));
+            if (!response.getSuccess()) {
+                if (isDuplicate(response)) {
+                    throw new DuplicateWalletRequestException(requestId);
+                }
+                throw new InsufficientBalanceException("WalletService failed batch transfer due to insufficient balance");
+            }
+        } catch (DuplicateWalletRequestException e) {
+            log.warn("Split transfer not applied: {}", e.getMessage());
+            throw e;
+        } catch (InsufficientBalanceException e) {
+            log.error("Split transfer failed due to insufficient balance: {}", e.getMessage());
+            throw new InsufficientBalanceException("Sender has insufficient balance for the split transfer");
+        } catch (WalletServiceUnavailableException e) {
+            log.warn("Split transfer rejected without calling WalletService: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("gRPC batchTransfer failed: {}", e.getMessage(), e);
+            throw new WalletServiceException("WalletService unavailable or split transfer failed", e);
+        }
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<Transaction> legs = new ArrayList<>(recipients.size() * 2);
+            // One journal entry: the sender's total against each recipient's share
+            List<JournalPosting> postings = new ArrayList<>(recipients.size() + 1);
+            postings.add(JournalPosting.user(senderId, -total));
+            for (SplitTransferRequestDTO.Recipient recipient : recipients) {
+                legs.add(leg(senderId, recipient.getAmount(), TransactionType.DEBIT, transferId, referenceId, now));
+                legs.add(leg(recipient.getReceiverId(), recipient.getAmount(), TransactionType.CREDIT, transferId, referenceId, now));
+                postings.add(JournalPosting.user(recipient.getReceiverId(), recipient.getAmount()));
+            }
+            // Flushed as batched INSERTs (hibernate.jdbc.batch_size) since Snowflake ids are assigned before the INSERT
+            List<Transaction> saved = transactionRepository.saveAll(legs);
+            saved.forEach(this::recorded);
+            journalService.post(JournalEntryType.SPLIT, transferId, referenceId, postings);
+
+            return SplitTransferResponseDTO.builder()
+                    .transferId(transferId)
+                    .totalAmount((int) total)
+                    .senderBalance(response.getBalance())
+                    .legs(saved)
+                    .build();
+
+        } catch (DataAccessException dae) {
+            log.error("Database error while saving split transfer transactions: {}", dae.getMessage(), dae);
+            throw new TransactionFailedException("Failed to save split transfer transactions");
+        }
+    }
+
+    // wallet-service dedupes transfer and batchTransfer (not credit/debit) by requestId
+    private static boolean isDuplicate(WalletResponse response) {
+        return DUPLICATE_TRANSFER_MESSAGE.equals(response.getMessage());
+    }
+
+    private static Transaction leg(Long userId, Integer amount, TransactionType type, String transferId,
+                                   String referenceId, LocalDateTime now) {
+        return Transaction.builder()
+                .userId(userId)
+                .amount(amount)
+                .type(type)
+                .status(TransactionStatus.SUCCESS)
+                .transferId(transferId)
+                .referenceId(referenceId)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+
+    /**
+     * Debit wallet. The leg and its journal entry are written in a short
+     * transaction after the wallet call, so no connection is held while
+     * waiting on wallet-service.
+     *
+     * @param idempotencyKey client supplied key, forwarded as the wallet requestId; may be null
+     */
+    public Transaction debit(Long userId, Integer amount, String referenceId, String idempotencyKey) {
+        String transferId = idGenerator.nextStringId();
+        String requestId = idempotencyKey != null ? idempotencyKey : idGenerator.nextStringId();
         TransactionStatus status;
 
         try {
-            WalletOperationRequest request = WalletOperationRequest.newBuilder()
+            WalletOperationRequest.Builder builder = WalletOperationRequest.newBuilder()
                     .setUserId(userId)
                     .setAmount(amount)
-                    .build();
+                    .setRequestId(requestId);
+            if (referenceId != null) {
+                builder.setReferenceId(referenceId);
+            }
+            WalletOperationRequest request = builder.build();
 
             log.info("Calling WalletService gRPC debit: user={}, amount={}", userId, amount);
-            WalletResponse response = walletStub.debit(request);
+            WalletResponse response = walletCallGuard.call("debit", () -> walletStub.debit(request));
             if (!response.getSuccess()) {
-                throw new WalletServiceException("WalletService failed debit operation", null);
+                // The only business rejection of debit
+                throw new InsufficientBalanceException("WalletService refused debit: " + response.getMessage());
             }
             status = TransactionStatus.SUCCESS;
 
+        } catch (InsufficientBalanceException e) {
+            log.error("Debit failed due to insufficient balance: {}", e.getMessage());
+            throw e;
+        } catch (WalletServiceUnavailableException e) {
+            log.warn("Debit rejected without calling WalletService: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("gRPC debit failed: {}", e.getMessage(), e);
             throw new WalletServiceException("WalletService unavailable or debit failed", e);
@@ -136,7 +322,11 @@ public class TransactionService {
                     .createdAt(LocalDateTime.now())
                     .updatedAt(LocalDateTime.now())
                     .build();
-            return transactionRepository.save(txn);
+            return transactionTemplate.execute(tx -> {
+                Transaction saved = recorded(transactionRepository.save(txn));
+                journalService.recordPayout(userId, amount, transferId, referenceId);
+                return saved;
+            });
 
         } catch (DataAccessException dae) {
             log.error("Database error while saving debit transaction: {}", dae.getMessage(), dae);
@@ -145,25 +335,37 @@ public class TransactionService {
     }
 
     /**
-     * Credit wallet
+     * Credit wallet. The leg and its journal entry are written in a short
+     * transaction after the wallet call, so no connection is held while
+     * waiting on wallet-service.
+     *
+     * @param idempotencyKey client supplied key, forwarded as the wallet requestId; may be null
      */
-    public Transaction credit(Long userId, Integer amount, String referenceId) {
-        String transferId = UUID.randomUUID().toString();
+    public Transaction credit(Long userId, Integer amount, String referenceId, String idempotencyKey) {
+        String transferId = idGenerator.nextStringId();
+        String requestId = idempotencyKey != null ? idempotencyKey : idGenerator.nextStringId();
         TransactionStatus status;
 
         try {
-            WalletOperationRequest request = WalletOperationRequest.newBuilder()
+            WalletOperationRequest.Builder builder = WalletOperationRequest.newBuilder()
                     .setUserId(userId)
                     .setAmount(amount)
-                    .build();
+                    .setRequestId(requestId);
+            if (referenceId != null) {
+                builder.setReferenceId(referenceId);
+            }
+            WalletOperationRequest request = builder.build();
 
             log.info("Calling WalletService gRPC credit: user={}, amount={}", userId, amount);
-            WalletResponse response = walletStub.credit(request);
+            WalletResponse response = walletCallGuard.call("credit", () -> walletStub.credit(request));
             if (!response.getSuccess()) {
                 throw new WalletServiceException("WalletService failed credit operation", null);
             }
             status = TransactionStatus.SUCCESS;
 
+        } catch (WalletServiceUnavailableException e) {
+            log.warn("Credit rejected without calling WalletService: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("gRPC credit failed: {}", e.getMessage(), e);
             throw new WalletServiceException("WalletService unavailable or credit failed", e);
@@ -180,7 +382,11 @@ public class TransactionService {
                     .createdAt(LocalDateTime.now())
                     .updatedAt(LocalDateTime.now())
                     .build();
-            return transactionRepository.save(txn);
+            return transactionTemplate.execute(tx -> {
+                Transaction saved = recorded(transactionRepository.save(txn));
+                journalService.recordTopUp(userId, amount, transferId, referenceId);
+                return saved;
+            });
 
         } catch (DataAccessException dae) {
             log.error("Database error while saving credit transaction: {}", dae.getMessage(), dae);
@@ -189,31 +395,136 @@ public class TransactionService {
     }
 
     /**
-     * Get transactions by user
+     * Get transactions by user in [from, to), so only the matching monthly
+     * partitions are scanned; {@code to} defaults to now. Months already moved
+     * to the archive are merged in, newest first.
+     *
+     * @throws IllegalArgumentException if from is null
      */
-    public List<Transaction> getTransactionsByUser(Long userId) {
+    public List<Transaction> getTransactionsByUser(Long userId, LocalDateTime from, LocalDateTime to) {
+        if (from == null) {
+            throw new IllegalArgumentException("from is required (to defaults to now); "
+                    + "pass limit alone for the latest transactions, or page through /transactions/search");
+        }
+        List<Transaction> live;
         try {
-            return transactionRepository.findByUserId(userId);
+            live = transactionRepository.findByUserIdInRange(userId, from,
+                    to != null ? to : LocalDateTime.now().plusDays(1));
         } catch (DataAccessException dae) {
             log.error("Failed to fetch transactions for user {}: {}", userId, dae.getMessage(), dae);
             throw new TransactionFailedException("Failed to fetch user transactions");
         }
+        if (transactionArchive.isEmpty()) {
+            return live;
+        }
+
+        List<Transaction> archived;
+        try {
+            archived = transactionArchive.findByUserId(userId, from, to != null ? to : LocalDateTime.MAX);
+        } catch (UncheckedIOException e) {
+            log.error("Failed to read archived transactions for user {}: {}", userId, e.getMessage(), e);
+            throw new TransactionFailedException("Failed to fetch archived user transactions");
+        }
+        return archived.isEmpty() ? live : merge(live, archived, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The user's {@code limit} most recent transactions, newest first. Pages no
+     * larger than the recent-transactions ring are usually served from memory.
+     */
+    public List<Transaction> getRecentTransactions(Long userId, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        Optional<List<Transaction>> cached = recentTransactionCache.get(userId, limit);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        boolean cacheable = recentTransactionCache.isEnabled() && limit <= recentTransactionCache.capacity();
+        int pageSize = cacheable ? recentTransactionCache.capacity() : limit;
+        long writeStamp = recentTransactionCache.writeStamp(userId);
+
+        List<Transaction> recent;
+        try {
+            recent = transactionRepository.findByUserIdOrderByCreatedAtDesc(userId, PageRequest.of(0, pageSize));
+        } catch (DataAccessException dae) {
+            log.error("Failed to fetch recent transactions for user {}: {}", userId, dae.getMessage(), dae);
+            throw new TransactionFailedException("Failed to fetch user transactions");
+        }
+        if (recent.size() < pageSize && !transactionArchive.isEmpty()) {
+            // Short on live rows: the rest of the page may already be archived
+            try {
+                recent = merge(recent, transactionArchive.findByUserId(userId, LocalDateTime.MIN, LocalDateTime.MAX), pageSize);
+            } catch (UncheckedIOException e) {
+                log.error("Failed to read archived transactions for user {}: {}", userId, e.getMessage(), e);
+                throw new TransactionFailedException("Failed to fetch archived user transactions");
+            }
+        }
+
+        if (cacheable) {
+            recentTransactionCache.load(userId, recent, recent.size() < pageSize, writeStamp);
+        }
+        return recent.size() > limit ? recent.subList(0, limit) : recent;
     }
 
     /**
-     * Get single transaction
+     * Announces a persisted leg; listeners (recent cache, Kafka publisher) run after commit.
+     */
+    private Transaction recorded(Transaction txn) {
+        eventPublisher.publishEvent(new TransactionRecordedEvent(txn));
+        return txn;
+    }
+
+    // Newest first, keyed by id: a month being archived can briefly exist in both places
+    private static List<Transaction> merge(List<Transaction> live, List<Transaction> archived, int limit) {
+        Map<Long, Transaction> merged = new LinkedHashMap<>();
+        archived.forEach(t -> merged.put(t.getId(), t));
+        live.forEach(t -> merged.put(t.getId(), t));
+        return merged.values().stream()
+                .sorted(Comparator.comparing(Transaction::getCreatedAt).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Get single transaction. Its id carries its creation time, so only the
+     * partitions around it are searched, then the archived months around it.
      */
     public Transaction getTransactionById(Long transactionId) {
-        return transactionRepository.findById(transactionId)
-                .orElseThrow(() -> new TransactionNotFoundException(transactionId));
+        long issuedAt = SnowflakeIdGenerator.timestampOf(transactionId);
+        if (issuedAt < SnowflakeIdGenerator.EPOCH + ID_TIME_SLACK.toMillis()) {
+            // Sequence ids from before time-ordered ids carry no time
+            return transactionRepository.findById(transactionId)
+                    .orElseThrow(() -> new TransactionNotFoundException(transactionId));
+        }
+        LocalDateTime created = LocalDateTime.ofInstant(Instant.ofEpochMilli(issuedAt), ZoneId.systemDefault());
+        LocalDateTime from = created.minus(ID_TIME_SLACK);
+        LocalDateTime to = created.plus(ID_TIME_SLACK);
+        Optional<Transaction> found = transactionRepository.findByIdAndCreatedAtBetween(transactionId, from, to);
+        if (found.isEmpty() && !transactionArchive.isEmpty()) {
+            try {
+                found = transactionArchive.findById(transactionId, from, to);
+            } catch (UncheckedIOException e) {
+                log.error("Failed to read archived transaction {}: {}", transactionId, e.getMessage(), e);
+                throw new TransactionFailedException("Failed to fetch archived transaction");
+            }
+        }
+        return found.orElseThrow(() -> new TransactionNotFoundException(transactionId));
     }
 
     /**
-     * Get all transactions
+     * All transactions in [from, to), newest first; {@code to} defaults to now
+     *
+     * @throws IllegalArgumentException if from is null
      */
-    public List<Transaction> getAllTransactions() {
+    public List<Transaction> getAllTransactions(LocalDateTime from, LocalDateTime to) {
+        if (from == null) {
+            throw new IllegalArgumentException("from is required (to defaults to now); "
+                    + "page through /transactions/search for the full history");
+        }
         try {
-            return transactionRepository.findAll();
+            return transactionRepository.findInRange(from, to != null ? to : LocalDateTime.now().plusDays(1));
         } catch (DataAccessException dae) {
             log.error("Failed to fetch all transactions: {}", dae.getMessage(), dae);
             throw new TransactionFailedException("Failed to fetch all transactions");
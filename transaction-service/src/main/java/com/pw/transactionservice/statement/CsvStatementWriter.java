@@ -0,0 +1,64 @@
+package com.pw.transactionservice.statement;
+
+import com.pw.transactionservice.model.Transaction;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One CSV file for a whole partition. Each user's block starts with an
+ * OPENING row, lists their transactions with the running balance and ends
+ * with a CLOSING row carrying the totals.
+ */
+final class CsvStatementWriter implements StatementWriter {
+
+    private static final String HEADER =
+            "user_id,row_type,created_at,transaction_id,type,status,amount,balance,total_credits,total_debits,transfer_id,reference_id";
+
+    private final BufferedWriter out;
+
+    CsvStatementWriter(Path file) throws IOException {
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        out.write(HEADER);
+        out.newLine();
+    }
+
+    @Override
+    public void begin(StatementTotals totals) throws IOException {
+        out.write(totals.userId() + ",OPENING,,,,,," + totals.openingBalance() + ",,,,");
+        out.newLine();
+    }
+
+    @Override
+    public void row(Transaction txn, StatementTotals totals) throws IOException {
+        out.write(totals.userId() + ",TRANSACTION," + txn.getCreatedAt() + "," + txn.getId() + ","
+                + txn.getType() + "," + txn.getStatus() + "," + txn.getAmount() + "," + totals.balance() + ",,,"
+                + escape(txn.getTransferId()) + "," + escape(txn.getReferenceId()));
+        out.newLine();
+    }
+
+    @Override
+    public void end(StatementTotals totals) throws IOException {
+        out.write(totals.userId() + ",CLOSING,,,,,," + totals.balance() + ","
+                + totals.credits() + "," + totals.debits() + ",,");
+        out.newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
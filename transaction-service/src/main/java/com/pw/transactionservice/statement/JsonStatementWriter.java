@@ -0,0 +1,67 @@
+package com.pw.transactionservice.statement;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.pw.transactionservice.model.Transaction;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * One JSON Lines file for a whole partition, a statement object per user.
+ * The transactions array is written incrementally through the streaming
+ * generator, so a user with millions of rows costs no more heap than one with ten.
+ */
+final class JsonStatementWriter implements StatementWriter {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonGenerator json;
+
+    JsonStatementWriter(Path file) throws IOException {
+        this.json = FACTORY.createGenerator(file.toFile(), JsonEncoding.UTF8);
+        // Root values separated by newlines, nothing else pretty-printed
+        json.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+    }
+
+    @Override
+    public void begin(StatementTotals totals) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("userId", totals.userId());
+        json.writeNumberField("openingBalance", totals.openingBalance());
+        json.writeArrayFieldStart("transactions");
+    }
+
+    @Override
+    public void row(Transaction txn, StatementTotals totals) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", txn.getId());
+        json.writeStringField("createdAt", txn.getCreatedAt().toString());
+        json.writeStringField("type", txn.getType().name());
+        json.writeStringField("status", txn.getStatus().name());
+        json.writeNumberField("amount", txn.getAmount());
+        json.writeNumberField("balance", totals.balance());
+        json.writeStringField("transferId", txn.getTransferId());
+        if (txn.getReferenceId() != null) {
+            json.writeStringField("referenceId", txn.getReferenceId());
+        }
+        json.writeEndObject();
+    }
+
+    @Override
+    public void end(StatementTotals totals) throws IOException {
+        json.writeEndArray();
+        json.writeNumberField("transactionCount", totals.count());
+        json.writeNumberField("totalCredits", totals.credits());
+        json.writeNumberField("totalDebits", totals.debits());
+        json.writeNumberField("closingBalance", totals.balance());
+        json.writeEndObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+}
@@ -0,0 +1,33 @@
+package com.pw.transactionservice.statement;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public enum StatementFormat {
+
+    CSV("csv") {
+        @Override
+        StatementWriter open(Path file) throws IOException {
+            return new CsvStatementWriter(file);
+        }
+    },
+    // JSON Lines: one statement object per user
+    JSON("jsonl") {
+        @Override
+        StatementWriter open(Path file) throws IOException {
+            return new JsonStatementWriter(file);
+        }
+    };
+
+    private final String extension;
+
+    StatementFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    abstract StatementWriter open(Path file) throws IOException;
+}
@@ -0,0 +1,312 @@
+package com.pw.transactionservice.statement;
+
+import com.pw.transactionservice.archive.TransactionArchive;
+import com.pw.transactionservice.config.StatementProperties;
+import com.pw.transactionservice.model.Transaction;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Writes every user's statement for a month.
+ * <p>
+ * Users are split into {@code partitions} by {@code user_id mod partitions}
+ * and each partition runs on its own thread and connection. A partition is one
+ * pass over two cursors that are both ordered by user_id descending: the
+ * month's rows (created_at ascending within a user, a backward scan of
+ * idx_transactions_user_created_id) and the users' opening balances. They are
+ * merge-joined user by user while the balance and totals are carried forward
+ * row by row, so heap use does not depend on how many rows a user has.
+ * <p>
+ * Opening balances are the previous month's closing balances from
+ * {@code statement_balances}, for each partition recorded as complete in
+ * {@code statement_partitions} with the same partition count. For any other
+ * partition (the very first run, a failed partition, a changed partition
+ * count) they are summed instead from the live rows before the month plus
+ * {@code transaction_archived_totals} for archived months.
+ */
+@Slf4j
+@Service
+public class StatementGenerator {
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionArchive archive;
+    private final StatementProperties props;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public StatementGenerator(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              TransactionArchive archive,
+                              StatementProperties props) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.archive = archive;
+        this.props = props;
+    }
+
+    /**
+     * Early on the 1st, for the month that just ended.
+     */
+    @Scheduled(cron = "${transactions.statements.cron:0 0 4 1 * *}")
+    public void generateLastMonth() {
+        if (props.isEnabled()) {
+            generate(YearMonth.now().minusMonths(1));
+        }
+    }
+
+    /**
+     * Generates (or regenerates) all statements for {@code month}. Returns
+     * false if the run did not complete; files of finished partitions are kept.
+     */
+    public boolean generate(YearMonth month) {
+        if (archive.contains(month)) {
+            log.warn("Statements for {} not generated: the month is archived", month);
+            return false;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Statements for {} not generated: another run is in progress", month);
+            return false;
+        }
+        int partitions = props.getPartitions();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(partitions,
+                r -> new Thread(r, "statement-" + threadIndex.getAndIncrement()));
+        try {
+            long start = System.nanoTime();
+            Path dir = Paths.get(props.getDirectory()).resolve(MONTH.format(month));
+            Files.createDirectories(dir);
+            Set<Integer> carried = completedPartitions(month.minusMonths(1), partitions);
+
+            List<Future<long[]>> results = new ArrayList<>(partitions);
+            for (int p = 0; p < partitions; p++) {
+                int partition = p;
+                boolean carryForward = carried.contains(partition);
+                results.add(pool.submit(() -> generatePartition(month, partition, carryForward, dir)));
+            }
+
+            long users = 0;
+            long rows = 0;
+            boolean complete = true;
+            for (int p = 0; p < partitions; p++) {
+                try {
+                    long[] counts = results.get(p).get();
+                    users += counts[0];
+                    rows += counts[1];
+                } catch (ExecutionException e) {
+                    complete = false;
+                    log.error("Statement partition {} for {} failed: {}", p, month,
+                            e.getCause().getMessage(), e.getCause());
+                }
+            }
+            log.info("Generated statements for {}: {} users, {} transactions, {} partitions{} in {} ms",
+                    month, users, rows, partitions, complete ? "" : " (incomplete)",
+                    (System.nanoTime() - start) / 1_000_000);
+            return complete;
+        } catch (IOException e) {
+            log.error("Failed to generate statements for {}: {}", month, e.getMessage(), e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pool.shutdownNow();
+            running.set(false);
+        }
+    }
+
+    /**
+     * Streams one partition into its statement files and records closing
+     * balances in the same transaction. Files are written under a temp name and
+     * renamed just before the commit; rerunning a month overwrites both.
+     *
+     * @return {users, transactions}
+     */
+    private long[] generatePartition(YearMonth month, int partition, boolean carryForward, Path dir) {
+        String from = month.atDay(1).toString();
+        String to = month.plusMonths(1).atDay(1).toString();
+        int partitions = props.getPartitions();
+        String inPartition = "mod(user_id, " + partitions + ") = " + partition;
+        int statementMonth = Integer.parseInt(MONTH.format(month));
+
+        String rowsSql = "SELECT * FROM transactions"
+                + " WHERE created_at >= '" + from + "' AND created_at < '" + to + "' AND " + inPartition
+                + " ORDER BY user_id DESC, created_at, id";
+        String openingSql = carryForward
+                ? "SELECT user_id, closing_balance FROM statement_balances"
+                + " WHERE statement_month = " + Integer.parseInt(MONTH.format(month.minusMonths(1)))
+                + " AND " + inPartition + " ORDER BY user_id DESC"
+                // One statement, so the archiver cannot move rows between the two sources under it
+                : "SELECT user_id, sum(net) FROM ("
+                + "SELECT user_id, CASE type WHEN 'CREDIT' THEN amount WHEN 'DEBIT' THEN -amount ELSE 0 END AS net"
+                + " FROM transactions WHERE created_at < '" + from + "' AND status = 'SUCCESS' AND " + inPartition
+                + " UNION ALL SELECT user_id, net_amount FROM transaction_archived_totals WHERE " + inPartition
+                + ") opening GROUP BY user_id ORDER BY user_id DESC";
+
+        List<Path> temps = new ArrayList<>();
+        List<Path> targets = new ArrayList<>();
+        for (StatementFormat format : props.getFormats()) {
+            String name = "statements-" + MONTH.format(month) + "-p" + String.format("%03d", partition) + "." + format.extension();
+            targets.add(dir.resolve(name));
+            temps.add(dir.resolve(name + ".tmp"));
+        }
+
+        try {
+            return transactionTemplate.execute(status -> {
+                long users = 0;
+                long rowCount = 0;
+                List<StatementWriter> writers = new ArrayList<>();
+                List<Object[]> balances = new ArrayList<>(props.getBalanceBatchSize());
+
+                try (Stream<Transaction> rowStream = stream(rowsSql, Transaction.class);
+                     Stream<Object[]> openingStream = stream(openingSql, null)) {
+                    for (StatementFormat format : props.getFormats()) {
+                        writers.add(format.open(temps.get(writers.size())));
+                    }
+
+                    Iterator<Transaction> rowIt = rowStream.iterator();
+                    Iterator<Object[]> openingIt = openingStream.iterator();
+                    Transaction row = rowIt.hasNext() ? rowIt.next() : null;
+                    Object[] opening = openingIt.hasNext() ? openingIt.next() : null;
+
+                    while (row != null || opening != null) {
+                        // Both cursors run in descending user order, so the larger id is next
+                        long userId = Math.max(
+                                row != null ? row.getUserId() : Long.MIN_VALUE,
+                                opening != null ? ((Number) opening[0]).longValue() : Long.MIN_VALUE);
+                        long openingBalance = 0;
+                        if (opening != null && ((Number) opening[0]).longValue() == userId) {
+                            openingBalance = ((Number) opening[1]).longValue();
+                            opening = openingIt.hasNext() ? openingIt.next() : null;
+                        }
+
+                        StatementTotals totals = new StatementTotals(userId, openingBalance);
+                        for (StatementWriter writer : writers) {
+                            writer.begin(totals);
+                        }
+                        while (row != null && row.getUserId() == userId) {
+                            totals.apply(row);
+                            for (StatementWriter writer : writers) {
+                                writer.row(row, totals);
+                            }
+                            entityManager.detach(row);
+                            rowCount++;
+                            row = rowIt.hasNext() ? rowIt.next() : null;
+                        }
+                        for (StatementWriter writer : writers) {
+                            writer.end(totals);
+                        }
+                        users++;
+
+                        balances.add(new Object[]{statementMonth, userId, totals.balance()});
+                        if (balances.size() >= props.getBalanceBatchSize()) {
+                            saveClosingBalances(balances);
+                        }
+                    }
+                    saveClosingBalances(balances);
+                    jdbcTemplate.update("INSERT INTO statement_partitions (statement_month, partitions, partition_no)"
+                            + " VALUES (?, ?, ?) ON CONFLICT DO NOTHING", statementMonth, partitions, partition);
+                    for (StatementWriter writer : writers) {
+                        writer.close();
+                    }
+                    writers.clear();
+                    for (int i = 0; i < temps.size(); i++) {
+                        Files.move(temps.get(i), targets.get(i),
+                                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    closeQuietly(writers);
+                }
+                return new long[]{users, rowCount};
+            });
+        } catch (RuntimeException e) {
+            deleteQuietly(temps);
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Stream<T> stream(String sql, Class<T> entity) {
+        var query = entity != null
+                ? entityManager.createNativeQuery(sql, entity)
+                : entityManager.createNativeQuery(sql);
+        return query.setHint(HibernateHints.HINT_FETCH_SIZE, props.getFetchSize())
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    private void saveClosingBalances(List<Object[]> balances) {
+        if (balances.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO statement_balances (statement_month, user_id, closing_balance)
+                VALUES (?, ?, ?)
+                ON CONFLICT (statement_month, user_id) DO UPDATE SET closing_balance = EXCLUDED.closing_balance
+                """, balances);
+        balances.clear();
+    }
+
+    /**
+     * Partitions of {@code month} whose closing balances were all committed by
+     * a run with the same partition count.
+     */
+    private Set<Integer> completedPartitions(YearMonth month, int partitions) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT partition_no FROM statement_partitions WHERE statement_month = ? AND partitions = ?",
+                Integer.class, Integer.parseInt(MONTH.format(month)), partitions));
+    }
+
+    private void closeQuietly(List<StatementWriter> writers) {
+        for (StatementWriter writer : writers) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Could not close statement writer: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void deleteQuietly(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.pw.transactionservice.statement;
+
+import com.pw.transactionservice.model.Transaction;
+import com.pw.transactionservice.model.TransactionStatus;
+import com.pw.transactionservice.model.TransactionType;
+
+/**
+ * Running balance and totals of one user's statement. Only SUCCESS legs move
+ * the balance; failed and pending ones are listed but not counted.
+ */
+final class StatementTotals {
+
+    private final long userId;
+    private final long openingBalance;
+    private long balance;
+    private long credits;
+    private long debits;
+    private int count;
+
+    StatementTotals(long userId, long openingBalance) {
+        this.userId = userId;
+        this.openingBalance = openingBalance;
+        this.balance = openingBalance;
+    }
+
+    void apply(Transaction txn) {
+        count++;
+        if (txn.getStatus() != TransactionStatus.SUCCESS) {
+            return;
+        }
+        if (txn.getType() == TransactionType.CREDIT) {
+            credits += txn.getAmount();
+            balance += txn.getAmount();
+        } else if (txn.getType() == TransactionType.DEBIT) {
+            debits += txn.getAmount();
+            balance -= txn.getAmount();
+        }
+    }
+
+    long userId() {
+        return userId;
+    }
+
+    long openingBalance() {
+        return openingBalance;
+    }
+
+    long balance() {
+        return balance;
+    }
+
+    long credits() {
+        return credits;
+    }
+
+    long debits() {
+        return debits;
+    }
+
+    int count() {
+        return count;
+    }
+}
@@ -0,0 +1,23 @@
+package com.pw.transactionservice.statement;
+
+import com.pw.transactionservice.model.Transaction;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes the statements of many users to one file, one row at a time, so
+ * nothing per user is held in memory. Calls come as
+ * {@code begin, row*, end} for each user.
+ */
+interface StatementWriter extends Closeable {
+
+    void begin(StatementTotals totals) throws IOException;
+
+    /**
+     * @param totals already include {@code txn}
+     */
+    void row(Transaction txn, StatementTotals totals) throws IOException;
+
+    void end(StatementTotals totals) throws IOException;
+}
@@ -0,0 +1,153 @@
+-- Executed as a single statement (see spring.sql.init.separator) so that
+-- dollar-quoted DO blocks are passed to Postgres intact.
+
+-- A plain (non-partitioned) transactions table from earlier releases is kept
+-- as-is and attached below as the partition holding all historical rows.
+-- Partitions may not own an identity column, so its ids move to the shared
+-- sequence, and its primary key must include the partition key.
+DO $$
+DECLARE
+    pk_name TEXT;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class c
+               JOIN pg_namespace n ON n.oid = c.relnamespace
+               WHERE c.relname = 'transactions' AND c.relkind = 'r'
+                 AND n.nspname = current_schema()) THEN
+        ALTER TABLE transactions RENAME TO transactions_legacy;
+        ALTER TABLE transactions_legacy ALTER COLUMN id DROP IDENTITY IF EXISTS;
+        ALTER TABLE transactions_legacy ALTER COLUMN id DROP DEFAULT;
+
+        SELECT conname INTO pk_name FROM pg_constraint
+        WHERE conrelid = 'transactions_legacy'::regclass AND contype = 'p';
+        IF pk_name IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE transactions_legacy DROP CONSTRAINT %I', pk_name);
+        END IF;
+        ALTER TABLE transactions_legacy ADD CONSTRAINT transactions_legacy_pkey PRIMARY KEY (id, created_at);
+    END IF;
+END $$;
+
+CREATE SEQUENCE IF NOT EXISTS transactions_id_seq;
+-- Only the column default for rows inserted outside the application; the
+-- application assigns time-ordered ids (SnowflakeIdGenerator), which start
+-- far above anything this sequence hands out, so the two never collide
+ALTER SEQUENCE transactions_id_seq INCREMENT BY 50;
+
+-- Transaction legs, range-partitioned by month on created_at.
+-- The partition key must be part of the primary key.
+CREATE TABLE IF NOT EXISTS transactions (
+    id           BIGINT       NOT NULL DEFAULT nextval('transactions_id_seq'),
+    user_id      BIGINT       NOT NULL,
+    amount       INTEGER      NOT NULL,
+    type         VARCHAR(20)  NOT NULL,
+    status       VARCHAR(20)  NOT NULL,
+    transfer_id  VARCHAR(100) NOT NULL,
+    reference_id VARCHAR(100),
+    created_at   TIMESTAMP(6) NOT NULL,
+    updated_at   TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE transactions_id_seq OWNED BY transactions.id;
+
+DO $$
+DECLARE
+    upper_bound TIMESTAMP := date_trunc('month', now()) + INTERVAL '1 month';
+BEGIN
+    IF to_regclass('transactions_legacy') IS NOT NULL THEN
+        IF NOT EXISTS (SELECT 1 FROM pg_inherits WHERE inhrelid = to_regclass('transactions_legacy')) THEN
+            PERFORM setval('transactions_id_seq',
+                           GREATEST((SELECT COALESCE(MAX(id), 0) FROM transactions_legacy), 1));
+            EXECUTE format(
+                'ALTER TABLE transactions ATTACH PARTITION transactions_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+                upper_bound);
+        END IF;
+    END IF;
+END $$;
+
+-- Catches rows outside every monthly partition; kept empty by TransactionPartitionManager
+CREATE TABLE IF NOT EXISTS transactions_default PARTITION OF transactions DEFAULT;
+
+-- Partitioned indexes, created on every partition automatically.
+-- The (.., created_at DESC, id DESC) ones match the search ordering, so a
+-- keyset page is a single index seek; id breaks ties between equal timestamps.
+DROP INDEX IF EXISTS idx_transactions_user_created;
+CREATE INDEX IF NOT EXISTS idx_transactions_user_created_id ON transactions (user_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_transfer_id ON transactions (transfer_id);
+
+-- Search without a user: date-range browsing
+CREATE INDEX IF NOT EXISTS idx_transactions_created_id ON transactions (created_at DESC, id DESC);
+-- Support mostly chases FAILED/PENDING legs, a small fraction of all rows
+CREATE INDEX IF NOT EXISTS idx_transactions_unsettled ON transactions (status, created_at DESC, id DESC)
+    WHERE status <> 'SUCCESS';
+-- Lookups by external reference; most legs have none
+CREATE INDEX IF NOT EXISTS idx_transactions_reference ON transactions (reference_id)
+    WHERE reference_id IS NOT NULL;
+
+-- Closing balance of each user's monthly statement (statement_month is yyyyMM);
+-- the next month's statements open from it instead of re-summing history
+CREATE TABLE IF NOT EXISTS statement_balances (
+    statement_month INTEGER NOT NULL,
+    user_id         BIGINT  NOT NULL,
+    closing_balance BIGINT  NOT NULL,
+    PRIMARY KEY (statement_month, user_id)
+);
+
+-- Partitions (user_id mod partitions) whose statements and closing balances
+-- for a month were committed; only those carry forward to the next month
+CREATE TABLE IF NOT EXISTS statement_partitions (
+    statement_month INTEGER NOT NULL,
+    partitions      INTEGER NOT NULL,
+    partition_no    INTEGER NOT NULL,
+    PRIMARY KEY (statement_month, partitions, partition_no)
+);
+
+-- Double-entry journal: one entry per money movement, keyed by transferId,
+-- whose postings sum to zero. account_id is the userId for user accounts and
+-- a negative id for system accounts (see SystemAccount).
+CREATE TABLE IF NOT EXISTS journal_entries (
+    id           BIGINT       GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    transfer_id  VARCHAR(100) NOT NULL UNIQUE,
+    entry_type   VARCHAR(20)  NOT NULL,
+    reference_id VARCHAR(100),
+    created_at   TIMESTAMPTZ  NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS journal_postings (
+    entry_id   BIGINT  NOT NULL REFERENCES journal_entries (id),
+    line       INTEGER NOT NULL,
+    account_id BIGINT  NOT NULL,
+    amount     BIGINT  NOT NULL CHECK (amount <> 0),
+    PRIMARY KEY (entry_id, line)
+);
+
+-- Each INSERT must leave every entry it touches balanced. JournalService
+-- writes all postings of an entry in one statement, so a statement-level
+-- check over the inserted rows is enough.
+CREATE OR REPLACE FUNCTION journal_postings_balanced() RETURNS trigger AS $$
+DECLARE
+    unbalanced BIGINT;
+BEGIN
+    SELECT entry_id INTO unbalanced FROM new_postings
+    GROUP BY entry_id HAVING sum(amount) <> 0 LIMIT 1;
+    IF unbalanced IS NOT NULL THEN
+        RAISE EXCEPTION 'journal entry % does not balance', unbalanced USING ERRCODE = 'check_violation';
+    END IF;
+    RETURN NULL;
+END $$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE TRIGGER journal_postings_balanced
+    AFTER INSERT ON journal_postings
+    REFERENCING NEW TABLE AS new_postings
+    FOR EACH STATEMENT EXECUTE FUNCTION journal_postings_balanced();
+
+-- Per-user net (successful credits minus debits) of rows moved to the archive,
+-- so ledger totals stay complete without reading segment files
+CREATE TABLE IF NOT EXISTS transaction_archived_totals (
+    user_id    BIGINT PRIMARY KEY,
+    net_amount BIGINT NOT NULL
+);
+
+-- Idempotency records are created by Hibernate; since keys are reserved
+-- before execution, a pending record has no status code or body yet
+ALTER TABLE IF EXISTS idempotency_records ALTER COLUMN status_code DROP NOT NULL;
+ALTER TABLE IF EXISTS idempotency_records ALTER COLUMN response_body DROP NOT NULL;
@@ -0,0 +1,175 @@
+package com.pw.transactionservice.archive;
+
+import com.pw.transactionservice.config.TransactionArchiveProperties;
+import com.pw.transactionservice.model.Transaction;
+import com.pw.transactionservice.model.TransactionStatus;
+import com.pw.transactionservice.model.TransactionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentRoundTripTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2025, 3);
+    private static final LocalDateTime MIN = LocalDateTime.MIN;
+    private static final LocalDateTime MAX = LocalDateTime.MAX;
+
+    @TempDir
+    Path directory;
+
+    private List<Transaction> rows;
+
+    @BeforeEach
+    void generateMonth() {
+        Random random = new Random(42);
+        rows = new ArrayList<>();
+        long id = 1_000_000;
+        for (int i = 0; i < 10_000; i++) {
+            LocalDateTime created = MONTH.atDay(1).atStartOfDay()
+                    .plusSeconds(random.nextInt(28 * 24 * 3600))
+                    .plusNanos(random.nextInt(1_000_000) * 1_000L);
+            rows.add(Transaction.builder()
+                    .id(id += 1 + random.nextInt(1000))
+                    .userId(1 + (long) random.nextInt(300))
+                    .amount(1 + random.nextInt(100_000))
+                    .type(random.nextBoolean() ? TransactionType.CREDIT : TransactionType.DEBIT)
+                    .status(TransactionStatus.values()[random.nextInt(TransactionStatus.values().length)])
+                    .transferId("tr-" + random.nextInt(5_000))
+                    .referenceId(random.nextInt(4) == 0 ? null : "ref-é-" + i)
+                    .createdAt(created)
+                    .updatedAt(created.plusSeconds(random.nextInt(60)))
+                    .build());
+        }
+        rows.sort(Comparator.comparing(Transaction::getUserId).thenComparing(Transaction::getCreatedAt));
+    }
+
+    @Test
+    void writtenMonthReadsBackRowForRow() throws IOException {
+        TransactionArchive archive = archive();
+        archive.register(MONTH, write(3_000, 500));
+        archive.close();
+
+        TransactionArchive reloaded = archive();
+        reloaded.load();
+        try {
+            assertEquals(List.of(MONTH), reloaded.months());
+            assertEquals(rows.size(), reloaded.rowCount(MONTH));
+
+            List<Transaction> read = new ArrayList<>();
+            for (long userId = 1; userId <= 300; userId++) {
+                read.addAll(reloaded.findByUserId(userId, MIN, MAX));
+            }
+            read.sort(Comparator.comparing(Transaction::getUserId).thenComparing(Transaction::getCreatedAt));
+            assertEquals(rows.size(), read.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertSameRow(rows.get(i), read.get(i));
+            }
+            assertTrue(reloaded.findByUserId(301L, MIN, MAX).isEmpty());
+        } finally {
+            reloaded.close();
+        }
+    }
+
+    @Test
+    void rangeFilterAndIdLookup() throws IOException {
+        TransactionArchive archive = archive();
+        archive.register(MONTH, write(rows.size(), 256));
+        try {
+            long userId = rows.get(rows.size() / 2).getUserId();
+            LocalDateTime from = MONTH.atDay(10).atStartOfDay();
+            LocalDateTime to = MONTH.atDay(20).atStartOfDay();
+            List<Transaction> expected = rows.stream()
+                    .filter(t -> t.getUserId() == userId)
+                    .filter(t -> !t.getCreatedAt().isBefore(from) && t.getCreatedAt().isBefore(to))
+                    .toList();
+            List<Transaction> actual = new ArrayList<>(archive.findByUserId(userId, from, to));
+            actual.sort(Comparator.comparing(Transaction::getCreatedAt));
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameRow(expected.get(i), actual.get(i));
+            }
+
+            for (int i = 0; i < rows.size(); i += 997) {
+                Transaction row = rows.get(i);
+                Transaction found = archive.findById(row.getId(),
+                        row.getCreatedAt().minusDays(1), row.getCreatedAt().plusDays(1)).orElseThrow();
+                assertSameRow(row, found);
+            }
+            assertTrue(archive.findById(1L, MONTH.atDay(1).atStartOfDay(), MONTH.atDay(2).atStartOfDay()).isEmpty());
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    void monthWithWrongManifestCountIsNotLoaded() throws IOException {
+        TransactionArchive archive = archive();
+        archive.register(MONTH, write(rows.size(), 1024));
+        archive.close();
+
+        Path manifest = TransactionArchive.manifest(directory, MONTH);
+        String line = Files.readString(manifest).trim();
+        Files.writeString(manifest, line.substring(0, line.lastIndexOf(' ') + 1) + (rows.size() - 1) + "\n");
+
+        TransactionArchive reloaded = archive();
+        reloaded.load();
+        assertTrue(reloaded.isEmpty());
+        assertEquals(0, reloaded.rowCount(MONTH));
+    }
+
+    @Test
+    void partsWithoutManifestAreIgnored() throws IOException {
+        write(rows.size(), 1024);
+
+        TransactionArchive reloaded = archive();
+        reloaded.load();
+        assertTrue(reloaded.isEmpty());
+    }
+
+    private TransactionArchive archive() {
+        TransactionArchiveProperties props = new TransactionArchiveProperties();
+        props.setDirectory(directory.toString());
+        return new TransactionArchive(props);
+    }
+
+    // Splits the month into parts of at most rowsPerPart rows, as the archiver rolls over by size
+    private List<Path> write(int rowsPerPart, int groupSize) throws IOException {
+        List<Path> parts = new ArrayList<>();
+        for (int start = 0; start < rows.size(); start += rowsPerPart) {
+            Path part = directory.resolve(TransactionArchive.fileName(MONTH, parts.size()));
+            try (SegmentWriter writer = new SegmentWriter(part, groupSize)) {
+                for (Transaction row : rows.subList(start, Math.min(rows.size(), start + rowsPerPart))) {
+                    writer.append(row);
+                }
+                writer.finish();
+                assertEquals(Math.min(rowsPerPart, rows.size() - start), writer.rowCount());
+            }
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    private static void assertSameRow(Transaction expected, Transaction actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getAmount(), actual.getAmount());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getTransferId(), actual.getTransferId());
+        assertEquals(expected.getReferenceId(), actual.getReferenceId());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+    }
+}
@@ -1,24 +1,72 @@
 package com.pw.userservice.config;
 
+import com.walletservice.grpc.WalletServiceGrpc;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.grpc.MetricCollectingClientInterceptor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import com.walletservice.grpc.WalletServiceGrpc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
+@EnableConfigurationProperties(WalletGrpcProperties.class)
 public class GrpcClientConfig {
 
     @Bean
-    public ManagedChannel walletChannel() {
-        return ManagedChannelBuilder
-                .forAddress("wallet-service", 9001) // hostname + port of WalletService
+    public ManagedChannel walletChannel(WalletGrpcProperties props, MeterRegistry meterRegistry) {
+        ManagedChannel channel = ManagedChannelBuilder
+                .forTarget(props.getTarget()) // dns:/// or static:// target of WalletService replicas
                 .usePlaintext()
+                .disableServiceConfigLookUp()
+                .defaultServiceConfig(serviceConfig(props))
+                .keepAliveTime(props.getKeepAliveTime().toMillis(), TimeUnit.MILLISECONDS)
+                .keepAliveTimeout(props.getKeepAliveTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .keepAliveWithoutCalls(props.isKeepAliveWithoutCalls())
+                .idleTimeout(props.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .intercept(new MetricCollectingClientInterceptor(meterRegistry))
                 .build();
+
+        Gauge.builder("wallet.grpc.channel.state", channel, ch -> ch.getState(false).ordinal())
+                .description("Connectivity state of the wallet-service channel (0=CONNECTING, 1=READY, 2=TRANSIENT_FAILURE, 3=IDLE, 4=SHUTDOWN)")
+                .tag("target", props.getTarget())
+                .register(meterRegistry);
+
+        return channel;
     }
 
     @Bean
     public WalletServiceGrpc.WalletServiceBlockingStub walletStub(ManagedChannel walletChannel) {
         return WalletServiceGrpc.newBlockingStub(walletChannel);
     }
+
+    /**
+     * Builds the gRPC service config: load-balancing policy plus a default
+     * deadline for the whole WalletService and per-method overrides.
+     */
+    private Map<String, Object> serviceConfig(WalletGrpcProperties props) {
+        List<Map<String, Object>> methodConfig = new ArrayList<>();
+        methodConfig.add(Map.of(
+                "name", List.of(Map.of("service", WalletServiceGrpc.SERVICE_NAME)),
+                "timeout", toGrpcDuration(props.getDefaultDeadline())));
+
+        props.getDeadlines().forEach((method, timeout) -> methodConfig.add(Map.of(
+                "name", List.of(Map.of("service", WalletServiceGrpc.SERVICE_NAME, "method", method)),
+                "timeout", toGrpcDuration(timeout))));
+
+        return Map.of(
+                "loadBalancingConfig", List.of(Map.of(props.getLoadBalancingPolicy(), Map.of())),
+                "methodConfig", methodConfig);
+    }
+
+    private static String toGrpcDuration(Duration d) {
+        return String.format("%d.%09ds", d.getSeconds(), d.getNano());
+    }
 }
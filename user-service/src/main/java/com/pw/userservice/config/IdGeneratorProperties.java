@@ -0,0 +1,26 @@
+package com.pw.userservice.config;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Node part of the time-ordered ids issued by this process.
+ */
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "ids")
+public class IdGeneratorProperties {
+
+    // 0-1023; must differ between every running instance of every service.
+    // No default, so an instance started without IDS_NODE_ID fails instead of sharing one
+    @NotNull(message = "must be set, e.g. with IDS_NODE_ID")
+    @Min(0)
+    @Max(1023)
+    private Integer nodeId;
+}
@@ -0,0 +1,38 @@
+package com.pw.userservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Connection settings for the wallet-service gRPC channel.
+ * <p>
+ * {@code target} accepts any gRPC target URI, e.g.
+ * {@code dns:///wallet-service:9001} (all A records of a headless service) or
+ * {@code static://wallet-1:9001,wallet-2:9001} (fixed replica list).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "wallet.grpc")
+public class WalletGrpcProperties {
+
+    private String target = "dns:///wallet-service:9001";
+
+    private String loadBalancingPolicy = "round_robin";
+
+    // --- Connection management ---
+    private Duration keepAliveTime = Duration.ofSeconds(30);
+    private Duration keepAliveTimeout = Duration.ofSeconds(10);
+    private boolean keepAliveWithoutCalls = false;
+    private Duration idleTimeout = Duration.ofMinutes(5);
+
+    // --- Deadlines ---
+    private Duration defaultDeadline = Duration.ofSeconds(5);
+
+    // Per-method overrides keyed by RPC name (e.g. GetWallet=2s)
+    private Map<String, Duration> deadlines = new LinkedHashMap<>();
+}
@@ -1,5 +1,6 @@
 package com.pw.userservice.grpc;
 
+import com.pw.userservice.id.SnowflakeIdGenerator;
 import com.pw.userservice.model.User;
 import com.walletservice.grpc.CreateWalletRequest;
 import com.walletservice.grpc.WalletResponse;
@@ -10,14 +11,13 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.UUID;
-
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class WalletGrpcService {
 
     private final WalletServiceGrpc.WalletServiceBlockingStub walletStub;
+    private final SnowflakeIdGenerator idGenerator;
 
     public void createWallet(User user) {
         try {
@@ -28,7 +28,7 @@ public class WalletGrpcService {
             CreateWalletRequest walletRequest = CreateWalletRequest.newBuilder()
                     .setUserId(user.getId())
                     .setWalletType(user.getWalletType())
-                    .setRequestId(UUID.randomUUID().toString())
+                    .setRequestId(idGenerator.nextStringId())
                     .build();
 
             WalletResponse response = walletStub.createWallet(walletRequest);
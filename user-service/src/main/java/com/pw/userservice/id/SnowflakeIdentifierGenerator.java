@@ -0,0 +1,32 @@
+package com.pw.userservice.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+
+/**
+ * Hibernate side of {@link SnowflakeId}. Hibernate creates it through the
+ * Spring bean container, which supplies the application's generator.
+ */
+public class SnowflakeIdentifierGenerator implements BeforeExecutionGenerator {
+
+    private final SnowflakeIdGenerator idGenerator;
+
+    public SnowflakeIdentifierGenerator(SnowflakeIdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return idGenerator.nextId();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
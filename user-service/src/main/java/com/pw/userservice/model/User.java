@@ -3,6 +3,7 @@ package com.pw.userservice.model;
 import com.userservice.grpc.AccountStatus;
 import com.userservice.grpc.UserType;
 import com.walletservice.grpc.WalletType;
+import com.pw.userservice.id.SnowflakeId;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -23,8 +24,9 @@ import java.time.LocalDateTime;
 @Builder
 public class User {
 
+    // Assigned before insert, so saves can be JDBC-batched (IDENTITY cannot)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     // Basic Information
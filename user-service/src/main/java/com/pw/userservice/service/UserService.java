@@ -5,6 +5,7 @@ import com.pw.userservice.dto.UserResponseDTO;
 import com.pw.userservice.dto.UserUpdateRequestDTO;
 import com.pw.userservice.exception.UserNotFoundException;
 import com.pw.userservice.grpc.WalletGrpcService;
+import com.pw.userservice.id.SnowflakeIdGenerator;
 import com.pw.userservice.kafka.KafkaEventProducer;
 import com.pw.userservice.model.EventEnvelope;
 import com.pw.userservice.model.User;
@@ -21,7 +22,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,6 +32,7 @@ public class UserService {
     private final UserRepository userRepository;
     private final WalletGrpcService walletGrpcService;
     private final KafkaEventProducer kafkaEventProducer;
+    private final SnowflakeIdGenerator idGenerator;
     /**
      * Creates a new user and triggers wallet creation via gRPC.
      * Rolls back automatically on runtime exceptions.
@@ -59,7 +60,7 @@ public class UserService {
             User saved = userRepository.save(user);
             log.info("User created successfully with id: {}", saved.getId());
             EventEnvelope event = new EventEnvelope();
-            event.setEventId(UUID.randomUUID().toString());
+            event.setEventId(idGenerator.nextStringId());
             event.setEventType("USER_CREATED");
             event.setTimestamp(Instant.now());
             event.setUserId(saved.getId());
@@ -1,9 +1,12 @@
 package com.pw.walletservice;
 
+import com.pw.walletservice.config.IdGeneratorProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
+@EnableConfigurationProperties(IdGeneratorProperties.class)
 public class WalletServiceApplication {
 
     public static void main(String[] args) {
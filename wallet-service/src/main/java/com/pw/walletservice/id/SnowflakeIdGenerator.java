@@ -0,0 +1,56 @@
+package com.pw.walletservice.id;
+
+import com.pw.walletservice.config.IdGeneratorProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered 64-bit ids: 41 bits of milliseconds since {@link #EPOCH},
+ * 10 bits of node id and a 12-bit sequence within the millisecond.
+ * <p>
+ * Ids from one node are strictly increasing and need no coordination, so
+ * entities get their key before the INSERT (which lets Hibernate batch) and
+ * new rows land on the right-hand edge of the primary key index. The last
+ * issued (millisecond, sequence) pair is advanced with a CAS; when the
+ * sequence runs out or the clock steps back, the next id borrows the
+ * following millisecond instead of blocking.
+ */
+@Component
+public class SnowflakeIdGenerator {
+
+    // 2025-01-01T00:00:00Z
+    public static final long EPOCH = 1_735_689_600_000L;
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeBits;
+
+    // (millis since EPOCH << SEQUENCE_BITS) | sequence of the last id issued
+    private final AtomicLong last = new AtomicLong();
+
+    public SnowflakeIdGenerator(IdGeneratorProperties props) {
+        int nodeId = props.getNodeId();
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("ids.node-id must be between 0 and " + MAX_NODE_ID + ", was " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    public long nextId() {
+        long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        long stamp = last.updateAndGet(prev -> Math.max(prev + 1, now));
+        return (stamp & ~SEQUENCE_MASK) << NODE_BITS | nodeBits | (stamp & SEQUENCE_MASK);
+    }
+
+    /**
+     * {@link #nextId()} in decimal, for correlation ids carried as strings.
+     */
+    public String nextStringId() {
+        return Long.toString(nextId());
+    }
+}
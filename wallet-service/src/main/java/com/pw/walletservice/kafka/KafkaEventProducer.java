@@ -27,8 +27,10 @@ public class KafkaEventProducer {
             // Serialize the event envelope to JSON
             String message = objectMapper.writeValueAsString(event);
 
-            // Send the message with eventId as the key
-            kafkaTemplate.send(topic, event.getEventId(), message);
+            // Key by user so all of a user's events land on one partition, in
+            // order; events without a user fall back to their eventId
+            String key = event.getUserId() != null ? event.getUserId().toString() : event.getEventId();
+            kafkaTemplate.send(topic, key, message);
 
             log.info("Sent event {} to topic {}", event.getEventId(), topic);
         } catch (JsonProcessingException e) {
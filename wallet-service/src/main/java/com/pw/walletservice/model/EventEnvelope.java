@@ -8,7 +8,7 @@ import java.util.Map;
  * Example JSON:
  * {
  *   "eventType": "WALLET_CREDITED",
- *   "eventId": "uuid",
+ *   "eventId": "1234567890123456789",
  *   "timestamp": "2025-08-31T12:30:00Z",
  *   "userId": 101,
  *   "payload": { "amount": 200, "balanceAfter": 800, "requestId": "..." }
@@ -1,5 +1,6 @@
 package com.pw.walletservice.model;
 
+import com.pw.walletservice.id.SnowflakeId;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -23,8 +24,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 public class Wallet {
+    // Assigned before insert, so saves can be JDBC-batched (IDENTITY cannot)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     @Column(name = "user_id", nullable = false)
@@ -2,11 +2,30 @@ package com.pw.walletservice.repository;
 
 import com.pw.walletservice.model.Wallet;
 import com.pw.walletservice.model.WalletType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface WalletRepository extends JpaRepository<Wallet, Long> {
     Optional<Wallet> findByUserId(Long userId);
     Optional<Wallet> findByRequestId(String requestId);
+    List<Wallet> findAllByUserIdIn(Collection<Long> userIds);
+
+    // Range scan of uk_wallet_user_type in user order; only the two columns are read
+    @Query("SELECT w.userId AS userId, w.balance AS balance FROM Wallet w"
+            + " WHERE w.userId >= :fromUserId AND w.userId < :toUserId ORDER BY w.userId")
+    List<UserBalanceView> findBalances(@Param("fromUserId") Long fromUserId,
+                                       @Param("toUserId") Long toUserId,
+                                       Pageable pageable);
+
+    interface UserBalanceView {
+        Long getUserId();
+
+        Integer getBalance();
+    }
 }
@@ -1,5 +1,6 @@
 package com.pw.walletservice.service;
 
+import com.pw.walletservice.id.SnowflakeIdGenerator;
 import com.pw.walletservice.kafka.KafkaEventProducer;
 import com.pw.walletservice.model.EventEnvelope;
 import com.walletservice.grpc.*;
@@ -19,6 +20,7 @@ import com.pw.walletservice.repository.WalletRepository;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.TransactionSystemException;
 
 import java.time.Instant;
@@ -30,8 +32,12 @@ import java.util.*;
 @RequiredArgsConstructor
 public class WalletGrpcService extends WalletServiceGrpc.WalletServiceImplBase {
 
+    // Upper bound on one ListBalances page (about 20 bytes per entry on the wire)
+    private static final int MAX_BALANCE_PAGE = 10_000;
+
     private final WalletRepository walletRepository;
     private final KafkaEventProducer kafkaEventProducer;
+    private final SnowflakeIdGenerator idGenerator;
 
     @Override
     public void getTransactions(TransactionHistoryRequest request, StreamObserver<TransactionHistoryResponse> responseObserver) {
@@ -64,7 +70,7 @@ public class WalletGrpcService extends WalletServiceGrpc.WalletServiceImplBase {
                     .setSuccess(true)
                     .setMessage("Wallet created successfully")
                     .setBalance(0)
-                    .setRequestId(UUID.randomUUID().toString())
+                    .setRequestId(idGenerator.nextStringId())
                     .setUpdatedAt(Instant.now().toString())
                     .build();
 
@@ -161,10 +167,10 @@ public class WalletGrpcService extends WalletServiceGrpc.WalletServiceImplBase {
             map.put("amount", String.valueOf(request.getAmount()));
 
             EventEnvelope event = new EventEnvelope();
-            event.setEventId(UUID.randomUUID().toString());
+            event.setEventId(idGenerator.nextStringId());
             event.setEventType("WALLET_CREDITED");
             event.setTimestamp(Instant.now());
-            event.setUserId(saved.getId());
+            event.setUserId(saved.getUserId());
             event.setPayload(map);
 
             kafkaEventProducer.sendEvent("wallet-events", event);
@@ -232,10 +238,10 @@ public class WalletGrpcService extends WalletServiceGrpc.WalletServiceImplBase {
             map.put("amount", String.valueOf(request.getAmount()));
 
             EventEnvelope event = new EventEnvelope();
-            event.setEventId(UUID.randomUUID().toString());
+            event.setEventId(idGenerator.nextStringId());
             event.setEventType("WALLET_DEBITED");
             event.setTimestamp(Instant.now());
-            event.setUserId(saved.getId());
+            event.setUserId(saved.getUserId());
             event.setPayload(map);
 
             kafkaEventProducer.sendEvent("wallet-events", event);
@@ -343,7 +349,7 @@ public class WalletGrpcService extends WalletServiceGrpc.WalletServiceImplBase {
             map.put("success", Boolean.TRUE);
 
             EventEnvelope event = new EventEnvelope();
-            event.setEventId(UUID.randomUUID().toString());
+            event.setEventId(idGenerator.nextStringId());
             event.setEventType("WALLET_FAILED");
             event.setTimestamp(Instant.now());
             event.setUserId(fromWallet.getUserId());
@@ -365,6 +371,184 @@ public class WalletGrpcService extends WalletServiceGrpc.WalletServiceImplBase {
         }
     }
 
+    @Override
+    @Transactional
+    public void batchTransfer(BatchTransferRequest request, StreamObserver<WalletResponse> responseObserver) {
+        try {
+            if (request.getLegsCount() == 0) {
+                throw new IllegalArgumentException("At least one transfer leg is required");
+            }
+
+            // Net credit per recipient; a recipient may appear in several legs
+            Map<Long, Integer> credits = new LinkedHashMap<>();
+            int total = 0;
+            for (TransferLeg leg : request.getLegsList()) {
+                if (leg.getAmount() <= 0) {
+                    throw new IllegalArgumentException("Transfer amount must be greater than zero");
+                }
+                if (leg.getToUserId() == request.getFromUserId()) {
+                    throw new IllegalArgumentException("Sender cannot be a recipient");
+                }
+                total = Math.addExact(total, leg.getAmount());
+                credits.merge(leg.getToUserId(), leg.getAmount(), Integer::sum);
+            }
+
+            // Duplicate request check
+            Optional<Wallet> existing = walletRepository.findByRequestId(request.getRequestId());
+            if (existing.isPresent()) {
+                log.info("Duplicate batch transfer request detected for requestId={}", request.getRequestId());
+                Wallet wallet = existing.get();
+
+                WalletResponse duplicateResponse = WalletResponse.newBuilder()
+                        .setSuccess(false)
+                        .setMessage("Duplicate transfer request")
+                        .setBalance(wallet.getBalance())
+                        .setRequestId(wallet.getRequestId())
+                        .setUpdatedAt(wallet.getUpdatedAt().toString())
+                        .build();
+
+                responseObserver.onNext(duplicateResponse);
+                responseObserver.onCompleted();
+                return;
+            }
+
+            // Fetch sender and all recipients in one query
+            Set<Long> userIds = new HashSet<>(credits.keySet());
+            userIds.add(request.getFromUserId());
+            Map<Long, Wallet> wallets = new HashMap<>();
+            for (Wallet wallet : walletRepository.findAllByUserIdIn(userIds)) {
+                wallets.put(wallet.getUserId(), wallet);
+            }
+
+            Wallet fromWallet = wallets.get(request.getFromUserId());
+            if (fromWallet == null) {
+                throw new EntityNotFoundException("Source wallet not found for userId=" + request.getFromUserId());
+            }
+            for (Long toUserId : credits.keySet()) {
+                if (!wallets.containsKey(toUserId)) {
+                    throw new EntityNotFoundException("Target wallet not found for userId=" + toUserId);
+                }
+            }
+
+            log.info("Batch transferring {} from user {} to {} recipients", total, fromWallet.getUserId(), credits.size());
+            // Check balance once against the total
+            if (fromWallet.getBalance() < total) {
+                WalletResponse insufficientResponse = WalletResponse.newBuilder()
+                        .setSuccess(false)
+                        .setMessage("Insufficient balance for transfer")
+                        .setBalance(fromWallet.getBalance())
+                        .setRequestId(request.getRequestId())
+                        .setUpdatedAt(Instant.now().toString())
+                        .build();
+
+                responseObserver.onNext(insufficientResponse);
+                responseObserver.onCompleted();
+                return;
+            }
+
+            // Perform all legs; the version check on each wallet makes a concurrent change abort the whole batch
+            LocalDateTime now = LocalDateTime.now();
+            fromWallet.setBalance(fromWallet.getBalance() - total);
+            fromWallet.setRequestId(request.getRequestId());
+            fromWallet.setUpdatedAt(now);
+            for (Map.Entry<Long, Integer> credit : credits.entrySet()) {
+                Wallet toWallet = wallets.get(credit.getKey());
+                toWallet.setBalance(toWallet.getBalance() + credit.getValue());
+                toWallet.setUpdatedAt(now);
+            }
+            walletRepository.saveAll(wallets.values());
+            walletRepository.flush();
+
+            log.info("Batch transfer complete: {} from user {} to {} recipients", total, fromWallet.getUserId(), credits.size());
+
+            WalletResponse response = WalletResponse.newBuilder()
+                    .setSuccess(true)
+                    .setMessage("Batch transfer successful")
+                    .setBalance(fromWallet.getBalance()) // Returning source wallet balance
+                    .setRequestId(request.getRequestId())
+                    .setUpdatedAt(Instant.now().toString())
+                    .build();
+
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+
+            // The batch is already acknowledged; a Kafka failure must not roll it back
+            try {
+                for (TransferLeg leg : request.getLegsList()) {
+                    // payload: { fromUserId, toUserId, amount, success }
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("amount", String.valueOf(leg.getAmount()));
+                    map.put("fromUserId", String.valueOf(fromWallet.getUserId()));
+                    map.put("toUserId", String.valueOf(leg.getToUserId()));
+                    map.put("success", Boolean.TRUE);
+
+                    EventEnvelope event = new EventEnvelope();
+                    event.setEventId(idGenerator.nextStringId());
+                    event.setEventType("WALLET_TRANSFER");
+                    event.setTimestamp(Instant.now());
+                    event.setUserId(fromWallet.getUserId());
+                    event.setPayload(map);
+
+                    kafkaEventProducer.sendEvent("wallet-events", event);
+                }
+                log.info("Published {} transfer events to Kafka for batch from user wallet={}", request.getLegsCount(), fromWallet.getUserId());
+            } catch (RuntimeException e) {
+                log.error("Failed to publish batch transfer events for user wallet={}: {}", fromWallet.getUserId(), e.getMessage(), e);
+            }
+
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            handleError("Invalid batch transfer request: " + e.getMessage(), e, responseObserver, Status.INVALID_ARGUMENT, request.getFromUserId(), legTotal(request));
+        } catch (EntityNotFoundException e) {
+            handleError("Wallet not found: " + e.getMessage(), e, responseObserver, Status.NOT_FOUND, request.getFromUserId(), legTotal(request));
+        } catch (OptimisticLockingFailureException e) {
+            handleError("Concurrent transfer conflict", e, responseObserver, Status.ABORTED, request.getFromUserId(), legTotal(request));
+        } catch (DataIntegrityViolationException e) {
+            handleError("Data integrity violation during batch transfer", e, responseObserver, Status.FAILED_PRECONDITION, request.getFromUserId(), legTotal(request));
+        } catch (Exception e) {
+            handleError("Unexpected error during batch transfer", e, responseObserver, Status.INTERNAL, request.getFromUserId(), legTotal(request));
+        }
+    }
+
+    /**
+     * One page of balances for reconciliation; read-only, no events.
+     */
+    @Override
+    public void listBalances(ListBalancesRequest request, StreamObserver<ListBalancesResponse> responseObserver) {
+        try {
+            if (request.getLimit() <= 0 || request.getFromUserId() >= request.getToUserId()) {
+                throw new IllegalArgumentException("A positive limit and fromUserId < toUserId are required");
+            }
+            int limit = Math.min(request.getLimit(), MAX_BALANCE_PAGE);
+            // One extra row tells the caller whether to ask again
+            List<WalletRepository.UserBalanceView> page = walletRepository.findBalances(
+                    request.getFromUserId(), request.getToUserId(), PageRequest.of(0, limit + 1));
+
+            ListBalancesResponse.Builder response = ListBalancesResponse.newBuilder()
+                    .setHasMore(page.size() > limit);
+            for (WalletRepository.UserBalanceView view : page.subList(0, Math.min(limit, page.size()))) {
+                response.addBalances(UserBalance.newBuilder()
+                        .setUserId(view.getUserId())
+                        .setBalance(view.getBalance()));
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+
+        } catch (IllegalArgumentException e) {
+            handleError("Invalid argument when listing balances", e, responseObserver, Status.INVALID_ARGUMENT);
+
+        } catch (DataAccessException e) {
+            handleError("Database error while listing balances", e, responseObserver, Status.UNAVAILABLE);
+
+        } catch (Exception e) {
+            handleError("Unexpected error while listing balances", e, responseObserver, Status.INTERNAL);
+        }
+    }
+
+    private static int legTotal(BatchTransferRequest request) {
+        long total = request.getLegsList().stream().mapToLong(TransferLeg::getAmount).sum();
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, total));
+    }
+
     // ---------- Common Exception Handler ----------
     private <T> void handleError(String message, Exception e, StreamObserver<T> responseObserver) {
         handleError(message, e, responseObserver, Status.INTERNAL);
@@ -391,7 +575,7 @@ public class WalletGrpcService extends WalletServiceGrpc.WalletServiceImplBase {
         map.put("success", Boolean.FALSE);
 
         EventEnvelope event = new EventEnvelope();
-        event.setEventId(UUID.randomUUID().toString());
+        event.setEventId(idGenerator.nextStringId());
         event.setEventType("WALLET_FAILED");
         event.setTimestamp(Instant.now());
         event.setUserId(userId);